@@ -0,0 +1,87 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.event;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A listener publishing the last event received in a volatile field. The
+ * listener may be called on the dispatcher thread, so the benchmarks read
+ * the event and consume it on their own thread.
+ *
+ * @author Christophe Labouisse
+ */
+public class BenchmarkListener {
+
+    /**
+     * The {@link #listen(Object)} method.
+     */
+    static final Method LISTEN_METHOD;
+
+    static {
+        try {
+            LISTEN_METHOD = BenchmarkListener.class.getDeclaredMethod("listen", Object.class);
+        } catch (final NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Field lastEvent.
+     */
+    private volatile Object lastEvent;
+
+    /**
+     * Number of events received.
+     */
+    private final AtomicLong received = new AtomicLong();
+
+    /**
+     * @return the last event received.
+     */
+    public final Object getLastEvent() {
+        return lastEvent;
+    }
+
+    /**
+     * @return the number of events received.
+     */
+    public final long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * Method listen.
+     * @param event Object
+     */
+    public void listen(final Object event) {
+        lastEvent = event;
+        received.incrementAndGet();
+    }
+}
@@ -0,0 +1,149 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.event;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of sending one event to one subscriber with the various
+ * dispatcher implementations.
+ *
+ * @author Christophe Labouisse
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatcherBenchmark {
+
+    /**
+     * A dispatcher calling the listener directly, the lower bound for any
+     * dispatcher.
+     */
+    static final class ManualDispatcher extends DispatcherAdapter {
+
+        /**
+         * Constructor for ManualDispatcher.
+         */
+        ManualDispatcher() {
+            super(null);
+        }
+
+        /**
+         * Method sendEventToSubscriber.
+         * @param subscriber Object
+         * @param eventData Object
+         * @see net.ggtools.grand.ui.event.Dispatcher#sendEventToSubscriber(java.lang.Object, java.lang.Object)
+         */
+        public void sendEventToSubscriber(final Object subscriber, final Object eventData) {
+            ((BenchmarkListener) subscriber).listen(eventData);
+        }
+    }
+
+    /**
+     * Field eventData.
+     */
+    private final Object eventData = "Test data";
+
+    /**
+     * Field handleDispatcher.
+     */
+    private Dispatcher handleDispatcher;
+
+    /**
+     * Field manualDispatcher.
+     */
+    private Dispatcher manualDispatcher;
+
+    /**
+     * Field simpleDispatcher.
+     */
+    private Dispatcher simpleDispatcher;
+
+    /**
+     * Field subscriber.
+     */
+    private BenchmarkListener subscriber;
+
+    /**
+     * Method setUp.
+     * @throws Exception if the listener method cannot be found.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        subscriber = new BenchmarkListener();
+        final Method method = BenchmarkListener.LISTEN_METHOD;
+        manualDispatcher = new ManualDispatcher();
+        simpleDispatcher = new SimpleDispatcher(null, method);
+        handleDispatcher = new MethodHandleDispatcher(null, method);
+    }
+
+    /**
+     * Method handle.
+     * @return the event received by the subscriber.
+     */
+    @Benchmark
+    public Object handle() {
+        handleDispatcher.sendEventToSubscriber(subscriber, eventData);
+        return subscriber.getLastEvent();
+    }
+
+    /**
+     * Method manual.
+     * @return the event received by the subscriber.
+     */
+    @Benchmark
+    public Object manual() {
+        manualDispatcher.sendEventToSubscriber(subscriber, eventData);
+        return subscriber.getLastEvent();
+    }
+
+    /**
+     * Method reflection.
+     * @return the event received by the subscriber.
+     */
+    @Benchmark
+    public Object reflection() {
+        simpleDispatcher.sendEventToSubscriber(subscriber, eventData);
+        return subscriber.getLastEvent();
+    }
+}
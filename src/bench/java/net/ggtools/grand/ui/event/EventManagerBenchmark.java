@@ -0,0 +1,172 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.event;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link EventManager#dispatchEvent(Object, Dispatcher)} from the
+ * call to the delivery to every subscriber, in synchronous and asynchronous
+ * modes with a growing number of weakly referenced subscribers.
+ *
+ * @author Christophe Labouisse
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventManagerBenchmark {
+
+    /**
+     * Field asynchronous.
+     */
+    @Param({"false", "true"})
+    private boolean asynchronous;
+
+    /**
+     * Field numSubscribers.
+     */
+    @Param({"1", "10", "100"})
+    private int numSubscribers;
+
+    /**
+     * Field dispatcher.
+     */
+    private Dispatcher dispatcher;
+
+    /**
+     * Field eventManager.
+     */
+    private EventManager eventManager;
+
+    /**
+     * Field expected.
+     */
+    private long expected;
+
+    /**
+     * Strong references to the subscribers as the manager only keeps weak
+     * ones.
+     */
+    private BenchmarkListener[] subscribers;
+
+    /**
+     * Method setUp.
+     * @throws InterruptedException if interrupted while waiting for the
+     *             subscriptions.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        eventManager = new EventManager("Benchmark");
+        eventManager.setDefaultDispatchAsynchronous(asynchronous);
+        dispatcher = eventManager.createDispatcher(BenchmarkListener.LISTEN_METHOD);
+        subscribers = new BenchmarkListener[numSubscribers];
+        for (int i = 0; i < numSubscribers; i++) {
+            subscribers[i] = new BenchmarkListener();
+            eventManager.subscribe(subscribers[i]);
+        }
+
+        // Subscriptions are asynchronous, wait until an event gets through.
+        final BenchmarkListener last = subscribers[numSubscribers - 1];
+        final boolean async = eventManager.isDefaultDispatchAsynchronous();
+        eventManager.setDefaultDispatchAsynchronous(true);
+        while (last.getReceived() == 0) {
+            dispatcher.dispatch("Warmup");
+            Thread.sleep(1);
+        }
+        eventManager.setDefaultDispatchAsynchronous(async);
+        while (last.getReceived() != subscribers[0].getReceived()) {
+            Thread.sleep(1);
+        }
+        expected = last.getReceived();
+    }
+
+    /**
+     * Method tearDown.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        eventManager.clear();
+        eventManager.shutdown();
+    }
+
+    /**
+     * Dispatches one event and waits until the last subscriber got it.
+     * @return the event received by the last subscriber.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object latency() {
+        final BenchmarkListener last = subscribers[numSubscribers - 1];
+        expected++;
+        dispatcher.dispatch("Latency");
+        while (last.getReceived() < expected) {
+            Thread.yield();
+        }
+        return last.getLastEvent();
+    }
+
+    /**
+     * Dispatches events without waiting for their delivery. The manager's
+     * queue is drained at the end of each iteration.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void throughput() {
+        expected++;
+        dispatcher.dispatch("Throughput");
+    }
+
+    /**
+     * Waits for the delivery of the events queued by the iteration.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @TearDown(Level.Iteration)
+    public void drainQueue() throws InterruptedException {
+        final BenchmarkListener last = subscribers[numSubscribers - 1];
+        while (last.getReceived() < expected) {
+            Thread.sleep(1);
+        }
+    }
+}
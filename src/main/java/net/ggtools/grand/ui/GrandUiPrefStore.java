@@ -115,6 +115,8 @@ public class GrandUiPrefStore extends ComplexPreferenceStore {
      */
     private void setDefaults() {
         setDefault(PreferenceKeys.MAX_RECENT_FILES_PREFS_KEY, 4);
+        setDefault(PreferenceKeys.AUTO_RELOAD_PREFS_KEY, true);
+        setDefault(PreferenceKeys.AUTO_RELOAD_KEEP_LAYOUT_PREFS_KEY, false);
         GraphPreferencePage.setDefaults(this);
         NodesPreferencePage.setDefaults(this);
         LinksPreferencePage.setDefaults(this);
@@ -28,7 +28,10 @@
 
 package net.ggtools.grand.ui.actions;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 import net.ggtools.grand.ui.graph.GraphControllerProvider;
 import net.ggtools.grand.ui.image.ImageSaver;
@@ -58,6 +61,13 @@ public class ExportGraphAction extends GraphControllerAction {
      */
     private static final Log LOG = LogFactory.getLog(ExportGraphAction.class);
 
+    /**
+     * Field STREAMED_EXTENSION, the extension of the images written by
+     * stripes rather than in a single image.
+     * (value is {@value #STREAMED_EXTENSION})
+     */
+    private static final String STREAMED_EXTENSION = ".png";
+
     /**
      * Creates a new ReloadGraphAction object.
      *
@@ -92,6 +102,10 @@ public class ExportGraphAction extends GraphControllerAction {
         final String fileName = dialog.open();
         LOG.debug("Dialog returned " + fileName);
         if (fileName != null) {
+            if (fileName.toLowerCase().endsWith(STREAMED_EXTENSION)) {
+                exportByStripes(parentShell, fileName);
+                return;
+            }
             Image image = null;
             try {
                 image = getGraphController().createImageForGraph();
@@ -108,4 +122,32 @@ public class ExportGraphAction extends GraphControllerAction {
             }
         }
     }
+
+    /**
+     * Exports the graph without creating an image for the whole graph.
+     *
+     * @param parentShell Shell
+     * @param fileName String
+     */
+    private void exportByStripes(final Shell parentShell, final String fileName) {
+        OutputStream out = null;
+        boolean written = false;
+        try {
+            out = new FileOutputStream(fileName);
+            written = getGraphController().writeGraphAsPng(out);
+        } catch (final IOException e) {
+            ExceptionDialog.openException(parentShell, "Cannot export image", e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (final IOException e) {
+                    LOG.warn("Got exception saving image", e);
+                }
+            }
+        }
+        if (!written && (out != null) && !new File(fileName).delete()) {
+            LOG.warn("Cannot remove incomplete export " + fileName);
+        }
+    }
 }
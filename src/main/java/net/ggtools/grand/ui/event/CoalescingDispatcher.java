@@ -0,0 +1,115 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.event;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A dispatcher coalescing the events dispatched asynchronously: only the
+ * latest event pending delivery is kept, so a burst of events results in a
+ * single delivery of the last payload.
+ *
+ * @author Christophe Labouisse
+ */
+class CoalescingDispatcher implements Dispatcher {
+
+    /**
+     * Marker for a pending <code>null</code> event.
+     */
+    private static final Object NULL_EVENT = new Object();
+
+    /**
+     * Field delegate.
+     */
+    private final Dispatcher delegate;
+
+    /**
+     * Field eventManager.
+     */
+    private final EventManager eventManager;
+
+    /**
+     * The event waiting to be delivered, <code>null</code> if none.
+     */
+    private final AtomicReference<Object> pendingEvent = new AtomicReference<Object>();
+
+    /**
+     * Constructor for CoalescingDispatcher.
+     * @param eventManager EventManager
+     * @param delegate the dispatcher actually sending the events.
+     */
+    CoalescingDispatcher(final EventManager eventManager, final Dispatcher delegate) {
+        this.eventManager = eventManager;
+        this.delegate = delegate;
+    }
+
+    /**
+     * Replaces the pending event and queues a delivery if none is pending.
+     * @param eventData Object
+     * @see net.ggtools.grand.ui.event.Dispatcher#dispatch(Object)
+     */
+    public final void dispatch(final Object eventData) {
+        if (eventManager.isDefaultDispatchAsynchronous()) {
+            final Object pending = (eventData == null) ? NULL_EVENT : eventData;
+            if (pendingEvent.getAndSet(pending) == null) {
+                eventManager.dispatchCoalescedEvent(this);
+            }
+        } else {
+            eventManager.dispatchEvent(eventData, this);
+        }
+    }
+
+    /**
+     * Method sendEventToSubscriber.
+     * @param subscriber Object
+     * @param eventData Object
+     * @see net.ggtools.grand.ui.event.Dispatcher#sendEventToSubscriber(java.lang.Object, java.lang.Object)
+     */
+    public final void sendEventToSubscriber(final Object subscriber, final Object eventData) {
+        delegate.sendEventToSubscriber(subscriber, eventData);
+    }
+
+    /**
+     * Gets the pending event, allowing new events to be queued.
+     *
+     * @return Object
+     */
+    final Object takePendingEvent() {
+        final Object pending = pendingEvent.getAndSet(null);
+        return (pending == NULL_EVENT) ? null : pending;
+    }
+
+    /**
+     * Method toString.
+     * @return String
+     */
+    @Override
+    public final String toString() {
+        return "Coalescing " + delegate;
+    }
+}
@@ -36,6 +36,13 @@ import java.lang.reflect.Method;
  * @author Christophe Labouisse
  */
 abstract class DispatcherFactory {
+    /**
+     * Name of the system property selecting the factory: either
+     * <code>methodhandle</code> (the default) or <code>reflection</code>.
+     * (value is {@value #FACTORY_PROPERTY})
+     */
+    static final String FACTORY_PROPERTY = "net.ggtools.grand.ui.event.dispatcherFactory";
+
     /**
      * Field instance.
      */
@@ -52,9 +59,13 @@ abstract class DispatcherFactory {
      *
      * @return DispatcherFactory
      */
-    static final DispatcherFactory getInstance() {
+    static final synchronized DispatcherFactory getInstance() {
         if (instance == null) {
-            instance = new SimpleDispatcherFactory();
+            if ("reflection".equals(System.getProperty(FACTORY_PROPERTY))) {
+                instance = new SimpleDispatcherFactory();
+            } else {
+                instance = new MethodHandleDispatcherFactory();
+            }
         }
 
         return instance;
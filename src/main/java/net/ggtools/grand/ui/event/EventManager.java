@@ -25,56 +25,76 @@
  * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
  * POSSIBILITY OF SUCH DAMAGE.
  */
-
 package net.ggtools.grand.ui.event;
 
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 /**
+ * Dispatches events to weakly referenced subscribers.
+ * <p>
+ * Events are posted to a lock-free multiple producers/single consumer queue
+ * processed by a dispatcher thread. Subscribers are kept in a copy on write
+ * array so dispatching an event does not take any lock. Setting the
+ * <code>net.ggtools.grand.ui.event.virtualThreads</code> system property to
+ * <code>true</code> runs the dispatcher on a virtual thread when the JVM
+ * supports them.
+ * </p>
+ *
  * @author Christophe Labouisse
  */
 public class EventManager implements Runnable {
 
     /**
+     * An entry in the event queue: either an action or an event to dispatch.
+     *
      * @author Christophe Labouisse
      */
-    private final class DispatchEventAction implements Runnable {
+    private static final class QueueNode {
+        /**
+         * Updater for the next field.
+         */
+        private static final AtomicReferenceFieldUpdater<QueueNode, QueueNode> NEXT_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(QueueNode.class, QueueNode.class, "next");
+
+        /**
+         * Field action.
+         */
+        private Runnable action;
 
         /**
          * Field dispatcher.
          */
-        private final Dispatcher dispatcher;
+        private Dispatcher dispatcher;
+
+        /**
+         * Value of the clear counter when the node was queued.
+         */
+        private final int epoch;
 
         /**
          * Field event.
          */
-        private final Object event;
+        private Object event;
 
         /**
-         * Constructor for DispatchEventAction.
-         * @param event Object
-         * @param dispatcher Dispatcher
+         * Field next.
          */
-        public DispatchEventAction(final Object event, final Dispatcher dispatcher) {
-            this.event = event;
-            this.dispatcher = dispatcher;
-        }
+        private volatile QueueNode next;
 
         /**
-         * Dispatch one event.
-         *
-         * @see EventManager#dispatchOneEvent(Object, Dispatcher)
-         * @see java.lang.Runnable#run()
+         * Constructor for QueueNode.
+         * @param epoch int
          */
-        public void run() {
-            dispatchOneEvent(event, dispatcher);
+        private QueueNode(final int epoch) {
+            this.epoch = epoch;
         }
     }
 
@@ -138,6 +158,49 @@ public class EventManager implements Runnable {
      */
     private static final Log LOG = LogFactory.getLog(EventManager.class);
 
+    /**
+     * Field NO_SUBSCRIBERS.
+     */
+    private static final WeakReference<?>[] NO_SUBSCRIBERS = new WeakReference<?>[0];
+
+    /**
+     * Name of the system property enabling virtual dispatcher threads.
+     * (value is {@value #VIRTUAL_THREADS_PROPERTY})
+     */
+    public static final String VIRTUAL_THREADS_PROPERTY =
+            "net.ggtools.grand.ui.event.virtualThreads";
+
+    /**
+     * Creates the dispatcher thread, a virtual one if enabled and supported.
+     *
+     * @param runnable Runnable
+     * @param threadName String
+     * @return Thread
+     */
+    private static Thread createDispatcherThread(final Runnable runnable,
+            final String threadName) {
+        if (Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY)) {
+            try {
+                // Use reflection as virtual threads are not available in the
+                // target JRE.
+                final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builderClass.getMethod("name", String.class).invoke(builder, threadName);
+                return (Thread) builderClass.getMethod("unstarted", Runnable.class).invoke(
+                        builder, runnable);
+            } catch (final Exception e) {
+                LOG.warn("Virtual threads not available, using a platform thread", e);
+            }
+        }
+        return new Thread(runnable, threadName);
+    }
+
+    /**
+     * Number of calls to {@link #clear()}, nodes queued before the last clear
+     * are discarded.
+     */
+    private final AtomicInteger clearCount = new AtomicInteger();
+
     /**
      * Field defaultDispatchAsynchronous.
      */
@@ -154,21 +217,37 @@ public class EventManager implements Runnable {
     private final Thread dispatcherThread;
 
     /**
-     * Field eventQueue.
+     * Last node of the queue, producers append after it.
+     */
+    private final AtomicReference<QueueNode> queueHead;
+
+    /**
+     * Node preceding the first node to process, only used by the dispatcher
+     * thread.
      */
-    private final LinkedList<Runnable> eventQueue = new LinkedList<Runnable>();
+    private QueueNode queueTail;
 
     /**
-     * Field listenerList.
+     * Copy on write array of the subscribers.
      */
-    private final List<WeakReference<Object>> listenerList =
-            new LinkedList<WeakReference<Object>>();
+    private final AtomicReference<WeakReference<?>[]> subscribers =
+            new AtomicReference<WeakReference<?>[]>(NO_SUBSCRIBERS);
 
     /**
      * Field name.
      */
     private final String name;
 
+    /**
+     * Set by {@link #shutdown()} to stop the dispatcher thread.
+     */
+    private volatile boolean stopped = false;
+
+    /**
+     * Set by the dispatcher thread when waiting for events.
+     */
+    private volatile boolean waiting = false;
+
     /**
      * Creates a event dispatcher. The created dispatcher will have the
      * "Anonymous" name and will log the dispatching process.
@@ -185,7 +264,9 @@ public class EventManager implements Runnable {
      */
     public EventManager(final String name) {
         this.name = name;
-        dispatcherThread = new Thread(this, "Dispatcher thread " + name);
+        queueTail = new QueueNode(0);
+        queueHead = new AtomicReference<QueueNode>(queueTail);
+        dispatcherThread = createDispatcherThread(this, "Dispatcher thread " + name);
         dispatcherThread.start();
         dispatcherFactory = DispatcherFactory.getInstance();
     }
@@ -197,14 +278,8 @@ public class EventManager implements Runnable {
         if (LOG.isInfoEnabled()) {
             LOG.info("Clearing event manager");
         }
-        synchronized (eventQueue) {
-            eventQueue.clear();
-        }
-
-        synchronized (listenerList) {
-            listenerList.clear();
-        }
-
+        clearCount.incrementAndGet();
+        subscribers.set(NO_SUBSCRIBERS);
     }
 
     /**
@@ -216,6 +291,18 @@ public class EventManager implements Runnable {
         return dispatcherFactory.createDispatcher(this, method);
     }
 
+    /**
+     * Creates a new dispatcher coalescing the events sent asynchronously: if
+     * several events are dispatched before the first one is delivered, the
+     * subscribers will only receive the last one.
+     *
+     * @param method method to call on invocation
+     * @return a new dispatcher.
+     */
+    public final Dispatcher createCoalescingDispatcher(final Method method) {
+        return new CoalescingDispatcher(this, createDispatcher(method));
+    }
+
     /**
      * @return String
      */
@@ -236,38 +323,41 @@ public class EventManager implements Runnable {
      */
     public final void run() {
         // Main loop.
-        while (true) {
-            Runnable nextEvent;
+        while (!stopped) {
+            QueueNode nextNode = queueTail.next;
 
             // Process the events in queue.
-            do {
-                nextEvent = null;
-
-                // In order to avoid deadlocks, we only synchronize to the
-                // eventQueue
-                // when getting the next event.
-                synchronized (eventQueue) {
-                    if (!eventQueue.isEmpty()) {
-                        nextEvent = eventQueue.removeFirst();
-                    }
+            while (nextNode != null) {
+                // Let the previous node be garbage collected.
+                queueTail = nextNode;
+                final Runnable action = nextNode.action;
+                final Dispatcher dispatcher = nextNode.dispatcher;
+                Object event = nextNode.event;
+                nextNode.action = null;
+                nextNode.dispatcher = null;
+                nextNode.event = null;
+
+                if (dispatcher instanceof CoalescingDispatcher) {
+                    // Always take the event so new ones get queued.
+                    event = ((CoalescingDispatcher) dispatcher).takePendingEvent();
                 }
 
-                // Run should not be called from a synchronized section.
-                if (nextEvent != null) {
-                    nextEvent.run();
+                if (nextNode.epoch == clearCount.get()) {
+                    if (action != null) {
+                        action.run();
+                    } else {
+                        dispatchOneEvent(event, dispatcher);
+                    }
                 }
-            } while (nextEvent != null);
+                nextNode = queueTail.next;
+            }
 
-            try {
-                synchronized (eventQueue) {
-                    // Wait for more events to come.
-                    eventQueue.wait();
-                }
-            } catch (final InterruptedException e) {
-                if (LOG.isTraceEnabled()) {
-                    LOG.trace("Event queue watch interrupted");
-                }
+            // Wait for more events to come.
+            waiting = true;
+            if ((queueTail.next == null) && !stopped) {
+                LockSupport.park(this);
             }
+            waiting = false;
         }
     }
 
@@ -281,15 +371,28 @@ public class EventManager implements Runnable {
         this.defaultDispatchAsynchronous = defaultDispatchAsynchronous;
     }
 
+    /**
+     * Stops the dispatcher thread once the event being dispatched, if any,
+     * is delivered. The events and actions still in the queue are never
+     * processed.
+     */
+    public final void shutdown() {
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Shutting down event manager " + name);
+        }
+        stopped = true;
+        LockSupport.unpark(dispatcherThread);
+    }
+
     /**
      * Add a new listener.
      *
      * @param listener Object
      */
     public final void subscribe(final Object listener) {
-        synchronized (eventQueue) {
-            eventQueue.add(new SubscriptionAction(listener));
-        }
+        final QueueNode node = new QueueNode(clearCount.get());
+        node.action = new SubscriptionAction(listener);
+        enqueue(node);
     }
 
     /**
@@ -297,9 +400,9 @@ public class EventManager implements Runnable {
      * @param listener Object
      */
     public final void unSubscribe(final Object listener) {
-        synchronized (eventQueue) {
-            eventQueue.add(new UnsubscriptionAction(listener));
-        }
+        final QueueNode node = new QueueNode(clearCount.get());
+        node.action = new UnsubscriptionAction(listener);
+        enqueue(node);
     }
 
     /**
@@ -311,10 +414,10 @@ public class EventManager implements Runnable {
      */
     private void asynchronousDispatchEvent(final Object event,
             final Dispatcher dispatcher) {
-        synchronized (eventQueue) {
-            eventQueue.add(new DispatchEventAction(event, dispatcher));
-            eventQueue.notify();
-        }
+        final QueueNode node = new QueueNode(clearCount.get());
+        node.event = event;
+        node.dispatcher = dispatcher;
+        enqueue(node);
     }
 
     /**
@@ -328,30 +431,28 @@ public class EventManager implements Runnable {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Start dispatching to " + dispatcher);
         }
-        synchronized (listenerList) {
-            for (final Iterator<WeakReference<Object>> iterator = listenerList.iterator(); iterator.hasNext();) {
-                final WeakReference<Object> weakReference = iterator.next();
-                final Object subscriber = weakReference.get();
-
-                if (subscriber != null) {
-                    if (LOG.isTraceEnabled()) {
-                        LOG.trace("Dispatching " + eventData + " to " + subscriber);
-                    }
-                    dispatcher.sendEventToSubscriber(subscriber, eventData);
-                } else {
-                    // Remove the listener since it has been garbage collected.
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Removing weak reference " + weakReference);
-                    }
-                    iterator.remove();
+        boolean hasCollected = false;
+        for (final WeakReference<?> weakReference : subscribers.get()) {
+            final Object subscriber = weakReference.get();
+
+            if (subscriber != null) {
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Dispatching " + eventData + " to " + subscriber);
                 }
+                dispatcher.sendEventToSubscriber(subscriber, eventData);
+            } else {
+                hasCollected = true;
             }
         }
+
+        if (hasCollected) {
+            // Remove the listeners garbage collected.
+            removeSubscribers(null);
+        }
     }
 
     /**
-     * Add a new subscriber to the dispatch list. This method will do nothing if
-     * the subscriber is already in the list.
+     * Add a new subscriber to the dispatch list.
      *
      * @param listener Object
      */
@@ -360,9 +461,14 @@ public class EventManager implements Runnable {
             LOG.debug(name + " subscribing " + listener);
         }
 
-        synchronized (listenerList) {
-            listenerList.add(new WeakReference<Object>(listener));
-        }
+        WeakReference<?>[] current;
+        WeakReference<?>[] updated;
+        do {
+            current = subscribers.get();
+            updated = new WeakReference<?>[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = new WeakReference<Object>(listener);
+        } while (!subscribers.compareAndSet(current, updated));
     }
 
     /**
@@ -376,16 +482,58 @@ public class EventManager implements Runnable {
             LOG.debug(name + " unsubscribing " + listener);
         }
 
-        synchronized (listenerList) {
-            for (final Iterator<WeakReference<Object>> iterator = listenerList.iterator(); iterator.hasNext();) {
-                final WeakReference<Object> weakRef = iterator.next();
+        removeSubscribers(listener);
+    }
+
+    /**
+     * Appends a node to the queue and wakes the dispatcher thread up if
+     * needed.
+     *
+     * @param node QueueNode
+     */
+    private void enqueue(final QueueNode node) {
+        final QueueNode previous = queueHead.getAndSet(node);
+        QueueNode.NEXT_UPDATER.set(previous, node);
+        if (waiting) {
+            LockSupport.unpark(dispatcherThread);
+        }
+    }
 
-                if (weakRef.get() == listener) {
-                    iterator.remove();
-                    break;
+    /**
+     * Removes the first reference to a subscriber and all the references to
+     * garbage collected subscribers.
+     *
+     * @param listener
+     *            the subscriber to remove or <code>null</code> to only
+     *            remove the garbage collected ones.
+     */
+    private void removeSubscribers(final Object listener) {
+        WeakReference<?>[] current;
+        WeakReference<?>[] updated;
+        do {
+            current = subscribers.get();
+            updated = new WeakReference<?>[current.length];
+            int size = 0;
+            boolean listenerFound = false;
+            for (final WeakReference<?> weakRef : current) {
+                final Object subscriber = weakRef.get();
+                if (subscriber == null) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Removing weak reference " + weakRef);
+                    }
+                } else if (!listenerFound && (subscriber == listener)) {
+                    listenerFound = true;
+                } else {
+                    updated[size++] = weakRef;
                 }
             }
-        }
+            if (size == current.length) {
+                return;
+            }
+            final WeakReference<?>[] trimmed = new WeakReference<?>[size];
+            System.arraycopy(updated, 0, trimmed, 0, size);
+            updated = trimmed;
+        } while (!subscribers.compareAndSet(current, updated));
     }
 
     /**
@@ -399,6 +547,15 @@ public class EventManager implements Runnable {
         dispatchOneEvent(event, dispatcher);
     }
 
+    /**
+     * Queues the delivery of the pending event of a coalescing dispatcher.
+     *
+     * @param dispatcher CoalescingDispatcher
+     */
+    final void dispatchCoalescedEvent(final CoalescingDispatcher dispatcher) {
+        asynchronousDispatchEvent(null, dispatcher);
+    }
+
     /**
      * Dispatch an event. The dispatching will be either synchronous or
      * asynchronous depending of the <code>defaultDispatchAsynchronous</code>
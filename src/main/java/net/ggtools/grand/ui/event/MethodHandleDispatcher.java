@@ -0,0 +1,94 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.event;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A dispatcher using a {@link MethodHandle} built once for the listener
+ * method. Unlike {@link SimpleDispatcher} there are no access checks nor
+ * argument array allocation on each call.
+ *
+ * @author Christophe Labouisse
+ */
+class MethodHandleDispatcher extends DispatcherAdapter implements Dispatcher {
+    /**
+     * Field log.
+     */
+    private static final Log LOG = LogFactory.getLog(MethodHandleDispatcher.class);
+
+    /**
+     * Erased type of the handles: <code>void (Object, Object)</code>.
+     */
+    private static final MethodType DISPATCH_TYPE =
+            MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * Field handle.
+     */
+    private final MethodHandle handle;
+
+    /**
+     * Constructor for MethodHandleDispatcher.
+     * @param manager EventManager
+     * @param method Method
+     * @throws IllegalAccessException if the method cannot be accessed.
+     */
+    MethodHandleDispatcher(final EventManager manager, final Method method)
+            throws IllegalAccessException {
+        super(manager);
+        handle = MethodHandles.publicLookup().unreflect(method).asType(DISPATCH_TYPE);
+    }
+
+    /**
+     * Method sendEventToSubscriber.
+     * @param subscriber Object
+     * @param eventData Object
+     * @see net.ggtools.grand.ui.event.Dispatcher#sendEventToSubscriber(java.lang.Object, java.lang.Object)
+     */
+    public void sendEventToSubscriber(final Object subscriber,
+            final Object eventData) {
+        try {
+            handle.invokeExact(subscriber, eventData);
+        } catch (final RuntimeException e) {
+            LOG.error(getEventManager().getName() + " dispatchOneEvent", e);
+            throw e;
+        } catch (final Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            LOG.error(getEventManager().getName() + " dispatchOneEvent", e);
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.event;
+
+import java.lang.reflect.Method;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Factory creating {@link net.ggtools.grand.ui.event.MethodHandleDispatcher}
+ * and falling back to {@link net.ggtools.grand.ui.event.SimpleDispatcher}
+ * when the listener method cannot be accessed through a public lookup.
+ *
+ * @author Christophe Labouisse
+ */
+class MethodHandleDispatcherFactory extends DispatcherFactory {
+    /**
+     * Field log.
+     */
+    private static final Log LOG = LogFactory.getLog(MethodHandleDispatcherFactory.class);
+
+    /**
+     * Method createDispatcher.
+     * @param eventManager EventManager
+     * @param method Method
+     * @return Dispatcher
+     * @see net.ggtools.grand.ui.event.DispatcherFactory#createDispatcher(net.ggtools.grand.ui.event.EventManager,
+     *      java.lang.reflect.Method)
+     */
+    @Override
+    Dispatcher createDispatcher(final EventManager eventManager,
+            final Method method) {
+        try {
+            return new MethodHandleDispatcher(eventManager, method);
+        } catch (final IllegalAccessException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Cannot get a method handle for " + method
+                        + ", using reflection", e);
+            }
+            return new SimpleDispatcher(eventManager, method);
+        }
+    }
+
+}
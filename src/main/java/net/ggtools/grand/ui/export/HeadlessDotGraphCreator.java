@@ -0,0 +1,139 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.export;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.ggtools.grand.graph.Graph;
+import net.ggtools.grand.ui.graph.DotGraphCreator;
+import net.ggtools.grand.ui.graph.GraphStyleDefaults;
+
+import sf.jzgraph.IEdge;
+import sf.jzgraph.IVertex;
+
+/**
+ * A {@link DotGraphCreator} which does not need a display: labels are
+ * measured with AWT and the styles are taken from {@link HeadlessStyles}.
+ * Rather than colors, vertices and edges get their style index in the
+ * {@link #STYLE_ATTR} attribute.
+ *
+ * @author Christophe Labouisse
+ */
+class HeadlessDotGraphCreator extends DotGraphCreator {
+    /**
+     * Field STYLE_ATTR.
+     * (value is {@value #STYLE_ATTR})
+     */
+    static final String STYLE_ATTR = "headless.style";
+
+    /**
+     * Field FONT.
+     */
+    private static final Font FONT = new Font(HeadlessStyles.FONT_FAMILY, Font.PLAIN,
+            HeadlessStyles.FONT_SIZE);
+
+    /**
+     * Field RENDER_CONTEXT.
+     */
+    private static final FontRenderContext RENDER_CONTEXT =
+            new FontRenderContext(null, true, true);
+
+    /**
+     * Constructor for HeadlessDotGraphCreator.
+     * @param graph Graph
+     * @param useBusRouting boolean
+     */
+    HeadlessDotGraphCreator(final Graph graph, final boolean useBusRouting) {
+        super(graph, useBusRouting);
+    }
+
+    /**
+     * Computes the extents of a text in the node font.
+     *
+     * @param text String
+     * @return Rectangle2D
+     */
+    static Rectangle2D getTextExtents(final String text) {
+        return FONT.getStringBounds(text, RENDER_CONTEXT);
+    }
+
+    /**
+     * Method setBusThresholds.
+     * @param vertex IVertex
+     * @see net.ggtools.grand.ui.graph.DotGraphCreator#setBusThresholds(sf.jzgraph.IVertex)
+     */
+    @Override
+    protected final void setBusThresholds(final IVertex vertex) {
+        vertex.setAttr("inthreshold", GraphStyleDefaults.BUS_IN_THRESHOLD);
+        vertex.setAttr("outthreshold", GraphStyleDefaults.BUS_OUT_THRESHOLD);
+    }
+
+    /**
+     * Method setEdgeStyle.
+     * @param edge IEdge
+     * @param linkType int
+     * @see net.ggtools.grand.ui.graph.DotGraphCreator#setEdgeStyle(sf.jzgraph.IEdge, int)
+     */
+    @Override
+    protected final void setEdgeStyle(final IEdge edge, final int linkType) {
+        edge.setAttr(STYLE_ATTR, linkType);
+    }
+
+    /**
+     * Method setVertexSizes.
+     * @param verticesByName Map&lt;String,IVertex&gt;
+     * @see net.ggtools.grand.ui.graph.DotGraphCreator#setVertexSizes(java.util.Map)
+     */
+    @Override
+    protected final void setVertexSizes(final Map<String, IVertex> verticesByName) {
+        for (final Entry<String, IVertex> entry : verticesByName.entrySet()) {
+            final Rectangle2D extents = getTextExtents(entry.getKey());
+            final IVertex vertex = entry.getValue();
+            vertex.setAttr(MINWIDTH_ATTR,
+                    Math.max((int) Math.ceil(extents.getWidth()), MIN_NODE_WIDTH));
+            vertex.setAttr(MINHEIGHT_ATTR,
+                    Math.max((int) Math.ceil(extents.getHeight()), MIN_NODE_HEIGHT));
+        }
+    }
+
+    /**
+     * Method setVertexStyle.
+     * @param vertex IVertex
+     * @param nodeType int
+     * @see net.ggtools.grand.ui.graph.DotGraphCreator#setVertexStyle(sf.jzgraph.IVertex, int)
+     */
+    @Override
+    protected final void setVertexStyle(final IVertex vertex, final int nodeType) {
+        vertex.setAttr(SHAPE_ATTR, HeadlessStyles.NODE_SHAPES[nodeType]);
+        vertex.setAttr(STYLE_ATTR, nodeType);
+    }
+}
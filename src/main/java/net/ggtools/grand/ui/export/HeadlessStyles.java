@@ -0,0 +1,112 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.export;
+
+import net.ggtools.grand.ui.graph.GraphStyleDefaults;
+
+/**
+ * Styles used when exporting without a display. They are read from
+ * {@link GraphStyleDefaults}, like the defaults of the node and link
+ * preference pages, and indexed by the same <code>NODE_*</code> and
+ * <code>LINK_*</code> constants.
+ *
+ * @author Christophe Labouisse
+ */
+final class HeadlessStyles {
+    /**
+     * Field FONT_FAMILY.
+     * (value is {@value #FONT_FAMILY})
+     */
+    static final String FONT_FAMILY = "SansSerif";
+
+    /**
+     * Field FONT_SIZE, in pixels.
+     * (value is {@value #FONT_SIZE})
+     */
+    static final int FONT_SIZE = 14;
+
+    /**
+     * Field LINK_COLORS.
+     */
+    static final String[] LINK_COLORS = new String[GraphStyleDefaults.LINK_TYPE_COUNT];
+
+    /**
+     * Field LINK_LINE_WIDTHS.
+     */
+    static final int[] LINK_LINE_WIDTHS = new int[GraphStyleDefaults.LINK_TYPE_COUNT];
+
+    /**
+     * Field NODE_FG_COLORS.
+     */
+    static final String[] NODE_FG_COLORS = new String[GraphStyleDefaults.NODE_TYPE_COUNT];
+
+    /**
+     * Field NODE_FILL_COLORS.
+     */
+    static final String[] NODE_FILL_COLORS = new String[GraphStyleDefaults.NODE_TYPE_COUNT];
+
+    /**
+     * Field NODE_LINE_WIDTHS.
+     */
+    static final int[] NODE_LINE_WIDTHS = new int[GraphStyleDefaults.NODE_TYPE_COUNT];
+
+    /**
+     * Field NODE_SHAPES.
+     */
+    static final String[] NODE_SHAPES = new String[GraphStyleDefaults.NODE_TYPE_COUNT];
+
+    static {
+        for (int type = 0; type < GraphStyleDefaults.LINK_TYPE_COUNT; type++) {
+            LINK_COLORS[type] = toSvgColor(GraphStyleDefaults.getLinkColor(type));
+            LINK_LINE_WIDTHS[type] = GraphStyleDefaults.getLinkLineWidth(type);
+        }
+        for (int type = 0; type < GraphStyleDefaults.NODE_TYPE_COUNT; type++) {
+            NODE_FG_COLORS[type] = toSvgColor(GraphStyleDefaults.getNodeFgColor(type));
+            NODE_FILL_COLORS[type] = toSvgColor(GraphStyleDefaults.getNodeFillColor(type));
+            NODE_LINE_WIDTHS[type] = GraphStyleDefaults.getNodeLineWidth(type);
+            NODE_SHAPES[type] = GraphStyleDefaults.getNodeShape(type);
+        }
+    }
+
+    /**
+     * Private constructor.
+     */
+    private HeadlessStyles() {
+    }
+
+    /**
+     * Converts a default color to a SVG color.
+     *
+     * @param color
+     *            a <code>0xRRGGBB</code> color.
+     * @return the color as <code>#rrggbb</code>.
+     */
+    private static String toSvgColor(final int color) {
+        return String.format("#%06x", color & 0xffffff);
+    }
+}
@@ -0,0 +1,321 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.export;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.ggtools.grand.exceptions.GrandException;
+import net.ggtools.grand.filters.GraphFilter;
+import net.ggtools.grand.filters.IsolatedNodeFilter;
+import net.ggtools.grand.filters.MissingNodeFilter;
+import net.ggtools.grand.filters.PrefixedNodeFilter;
+import net.ggtools.grand.graph.Graph;
+import net.ggtools.grand.ui.graph.FilterChainModel;
+import net.ggtools.grand.ui.graph.GraphModel;
+import net.ggtools.grand.ui.graph.LayoutCache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import sf.jzgraph.IDotGraph;
+
+/**
+ * Command line tool exporting the graphs of build files as SVG documents
+ * without opening a display. Several files are processed in parallel.
+ * <p>
+ * Usage: <code>SvgExporter [options] build.xml...</code> with the
+ * following options:
+ * </p>
+ * <ul>
+ * <li><code>-o dir</code>: the output directory, defaults to the current
+ * directory,</li>
+ * <li><code>-j threads</code>: the number of files processed in parallel,
+ * defaults to the number of processors,</li>
+ * <li><code>-Dname=value</code>: a property passed to the build files,</li>
+ * <li><code>-bus</code>: use bus routing,</li>
+ * <li><code>-noisolated</code>, <code>-nomissing</code>,
+ * <code>-noprefixed</code>: filter out the isolated, missing or prefixed
+ * nodes.</li>
+ * </ul>
+ * <p>
+ * The graphs are drawn with the default styles of the application, the
+ * user's preferences are not read.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+public final class SvgExporter {
+    /**
+     * Field EXTENSION.
+     * (value is {@value #EXTENSION})
+     */
+    private static final String EXTENSION = ".svg";
+
+    /**
+     * Field LOG.
+     */
+    private static final Log LOG = LogFactory.getLog(SvgExporter.class);
+
+    /**
+     * Field USAGE.
+     * (value is {@value #USAGE})
+     */
+    private static final String USAGE = "Usage: SvgExporter [-o dir] [-j threads] "
+            + "[-Dname=value]... [-bus] [-noisolated] [-nomissing] [-noprefixed] build.xml...";
+
+    /**
+     * Field filterIsolated.
+     */
+    private boolean filterIsolated = false;
+
+    /**
+     * Field filterMissing.
+     */
+    private boolean filterMissing = false;
+
+    /**
+     * Field filterPrefixed.
+     */
+    private boolean filterPrefixed = false;
+
+    /**
+     * Field inputFiles.
+     */
+    private final List<File> inputFiles = new ArrayList<File>();
+
+    /**
+     * Field outputDir.
+     */
+    private File outputDir = new File(".");
+
+    /**
+     * Field properties.
+     */
+    private final Properties properties = new Properties();
+
+    /**
+     * Field threads.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Field useBusRouting.
+     */
+    private boolean useBusRouting = false;
+
+    /**
+     * Private constructor.
+     */
+    private SvgExporter() {
+    }
+
+    /**
+     * Method main.
+     * @param args String[]
+     */
+    public static void main(final String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        final SvgExporter exporter = new SvgExporter();
+        if (!exporter.parseArguments(args)) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        System.exit(exporter.run() ? 0 : 1);
+    }
+
+    /**
+     * Builds the name of the output file for a build file. The whole path
+     * is used so build files with the same name do not collide.
+     *
+     * @param file File
+     * @return File
+     */
+    private File getOutputFile(final File file) {
+        String name = file.getAbsoluteFile().toURI().normalize().getPath();
+        if (name.endsWith(".xml")) {
+            name = name.substring(0, name.length() - ".xml".length());
+        }
+        name = name.replaceAll("^/+", "").replaceAll("[^A-Za-z0-9._-]+", "_");
+        return new File(outputDir, name + EXTENSION);
+    }
+
+    /**
+     * Exports a single build file.
+     *
+     * @param file File
+     * @return the created file.
+     * @throws GrandException if the build file cannot be read.
+     * @throws IOException if the SVG file cannot be written.
+     */
+    private File export(final File file) throws GrandException, IOException {
+        final GraphModel graphModel = new GraphModel();
+        graphModel.openFile(file, properties);
+
+        final FilterChainModel filterChain = new FilterChainModel(graphModel);
+        for (final GraphFilter filter : createFilters()) {
+            filterChain.addFilterLast(filter);
+        }
+        filterChain.filterGraph();
+        final Graph graph = filterChain.getGraph();
+        if (graph == null) {
+            throw new GrandException("Cannot filter graph of " + file);
+        }
+
+        final IDotGraph dotGraph = new HeadlessDotGraphCreator(graph, useBusRouting).getGraph();
+        LayoutCache.getInstance().layout(dotGraph);
+
+        final File outputFile = getOutputFile(file);
+        final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+                outputFile), "UTF-8"));
+        try {
+            new SvgWriter(dotGraph, out).write();
+        } finally {
+            out.close();
+        }
+        return outputFile;
+    }
+
+    /**
+     * Creates the filters asked on the command line. Filters keep some
+     * state so each file gets its own instances.
+     *
+     * @return List&lt;GraphFilter&gt;
+     */
+    private List<GraphFilter> createFilters() {
+        final List<GraphFilter> filters = new ArrayList<GraphFilter>();
+        if (filterMissing) {
+            filters.add(new MissingNodeFilter());
+        }
+        if (filterPrefixed) {
+            filters.add(new PrefixedNodeFilter());
+        }
+        if (filterIsolated) {
+            filters.add(new IsolatedNodeFilter());
+        }
+        return filters;
+    }
+
+    /**
+     * Parses the command line.
+     *
+     * @param args String[]
+     * @return <code>false</code> if the command line is not valid.
+     */
+    private boolean parseArguments(final String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if ("-o".equals(arg) && i + 1 < args.length) {
+                outputDir = new File(args[++i]);
+            } else if ("-j".equals(arg) && i + 1 < args.length) {
+                try {
+                    threads = Integer.parseInt(args[++i]);
+                } catch (final NumberFormatException e) {
+                    return false;
+                }
+                if (threads < 1) {
+                    return false;
+                }
+            } else if (arg.startsWith("-D") && arg.length() > 2) {
+                final int index = arg.indexOf('=');
+                if (index < 0) {
+                    properties.setProperty(arg.substring(2), "");
+                } else {
+                    properties.setProperty(arg.substring(2, index), arg.substring(index + 1));
+                }
+            } else if ("-bus".equals(arg)) {
+                useBusRouting = true;
+            } else if ("-noisolated".equals(arg)) {
+                filterIsolated = true;
+            } else if ("-nomissing".equals(arg)) {
+                filterMissing = true;
+            } else if ("-noprefixed".equals(arg)) {
+                filterPrefixed = true;
+            } else if (arg.startsWith("-")) {
+                return false;
+            } else {
+                inputFiles.add(new File(arg));
+            }
+        }
+        return !inputFiles.isEmpty();
+    }
+
+    /**
+     * Exports all the files.
+     *
+     * @return <code>true</code> if all the files were exported.
+     */
+    private boolean run() {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("Cannot create output directory " + outputDir);
+            return false;
+        }
+
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(threads, inputFiles.size()));
+        final List<Future<File>> results = new ArrayList<Future<File>>();
+        for (final File file : inputFiles) {
+            results.add(executor.submit(new Callable<File>() {
+                public File call() throws Exception {
+                    return export(file);
+                }
+            }));
+        }
+        executor.shutdown();
+
+        boolean success = true;
+        for (int i = 0; i < results.size(); i++) {
+            final File file = inputFiles.get(i);
+            try {
+                final File outputFile = results.get(i).get();
+                System.out.println(file + " -> " + outputFile);
+            } catch (final ExecutionException e) {
+                success = false;
+                System.err.println(file + ": " + e.getCause().getMessage());
+                LOG.error("Cannot export " + file, e.getCause());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                return false;
+            }
+        }
+        return success;
+    }
+}
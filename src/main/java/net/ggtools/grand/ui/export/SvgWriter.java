@@ -0,0 +1,482 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.export;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import net.ggtools.grand.ui.graph.DotGraphAttributes;
+import net.ggtools.grand.ui.graph.LayoutRoute;
+
+import sf.jzgraph.IDotGraph;
+import sf.jzgraph.IEdge;
+import sf.jzgraph.IVertex;
+
+/**
+ * Writes a laid out graph created by {@link HeadlessDotGraphCreator} as a
+ * SVG document. The rendering follows the one of the graph view: same
+ * shapes, colors, arrows and bus connections.
+ *
+ * @author Christophe Labouisse
+ */
+class SvgWriter implements DotGraphAttributes {
+    /**
+     * Field ARROW_HALF_WIDTH, same as the default draw2d decoration.
+     * (value is {@value #ARROW_HALF_WIDTH})
+     */
+    private static final double ARROW_HALF_WIDTH = 3.0;
+
+    /**
+     * Field ARROW_LENGTH, same as the default draw2d decoration.
+     * (value is {@value #ARROW_LENGTH})
+     */
+    private static final double ARROW_LENGTH = 7.0;
+
+    /**
+     * Field BUS_COLORS, in the order of {@link #BUS_IDS}.
+     */
+    private static final String[] BUS_COLORS = {"#ff0000", "#0000ff", "#0000ff", "#ff0000"};
+
+    /**
+     * Field BUS_IDS.
+     */
+    private static final String[] BUS_IDS = {"inbus", "outbus", "tobus", "frombus"};
+
+    /**
+     * Field BUS_LINE_WIDTHS, in the order of {@link #BUS_IDS}.
+     */
+    private static final int[] BUS_LINE_WIDTHS = {2, 2, 1, 1};
+
+    /**
+     * Field LABEL_PADDING.
+     * (value is {@value #LABEL_PADDING})
+     */
+    private static final int LABEL_PADDING = 2;
+
+    /**
+     * Field MARGIN, the margin around the graph.
+     * (value is {@value #MARGIN})
+     */
+    private static final int MARGIN = 24;
+
+    /**
+     * Field PATH_FLATNESS.
+     * (value is {@value #PATH_FLATNESS})
+     */
+    private static final double PATH_FLATNESS = 1.0;
+
+    /**
+     * Field dotGraph.
+     */
+    private final IDotGraph dotGraph;
+
+    /**
+     * Field out.
+     */
+    private final Writer out;
+
+    /**
+     * Constructor for SvgWriter.
+     * @param dotGraph a laid out graph.
+     * @param out Writer
+     */
+    SvgWriter(final IDotGraph dotGraph, final Writer out) {
+        this.dotGraph = dotGraph;
+        this.out = out;
+    }
+
+    /**
+     * Writes the whole document.
+     *
+     * @throws IOException if the document cannot be written.
+     */
+    void write() throws IOException {
+        final Rectangle2D bounds = computeBounds();
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" width=\""
+                + format(bounds.getWidth()) + "\" height=\"" + format(bounds.getHeight())
+                + "\" viewBox=\"" + format(bounds.getX()) + " " + format(bounds.getY()) + " "
+                + format(bounds.getWidth()) + " " + format(bounds.getHeight()) + "\">\n");
+        out.write("<title>" + escape(dotGraph.getName()) + "</title>\n");
+        out.write("<g font-family=\"" + HeadlessStyles.FONT_FAMILY + ",sans-serif\" font-size=\""
+                + HeadlessStyles.FONT_SIZE + "px\">\n");
+
+        for (final Object obj : dotGraph.allVertices()) {
+            writeBuses((IVertex) obj);
+        }
+        for (final Object obj : dotGraph.allEdges()) {
+            writeEdge((IEdge) obj);
+        }
+        for (final Object obj : dotGraph.allVertices()) {
+            writeVertex((IVertex) obj);
+        }
+
+        out.write("</g>\n</svg>\n");
+        out.flush();
+    }
+
+    /**
+     * Computes the area covered by the graph, including the margin.
+     *
+     * @return Rectangle2D
+     */
+    private Rectangle2D computeBounds() {
+        Rectangle2D bounds = null;
+        for (final Object obj : dotGraph.allVertices()) {
+            final Rectangle2D vertexBounds = (Rectangle2D) ((IVertex) obj).getAttr(_BOUNDS_ATTR);
+            if (vertexBounds != null) {
+                if (bounds == null) {
+                    bounds = (Rectangle2D) vertexBounds.clone();
+                } else {
+                    bounds.add(vertexBounds);
+                }
+            }
+        }
+        for (final Object obj : dotGraph.allEdges()) {
+            final Object route = ((IEdge) obj).getAttr(POSITION_ATTR);
+            if (route != null) {
+                final Rectangle2D edgeBounds = LayoutRoute.valueOf(route).getPath().getBounds2D();
+                if (bounds == null) {
+                    bounds = edgeBounds;
+                } else {
+                    bounds.add(edgeBounds);
+                }
+            }
+        }
+        if (bounds == null) {
+            bounds = new Rectangle2D.Double();
+        }
+        return new Rectangle2D.Double(Math.floor(bounds.getX()) - MARGIN,
+                Math.floor(bounds.getY()) - MARGIN, Math.ceil(bounds.getWidth()) + 2 * MARGIN,
+                Math.ceil(bounds.getHeight()) + 2 * MARGIN);
+    }
+
+    /**
+     * Escapes a text for use in XML content or attributes.
+     *
+     * @param text String
+     * @return String
+     */
+    private static String escape(final String text) {
+        if (text == null) {
+            return "";
+        }
+        final StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+            case '<':
+                sb.append("&lt;");
+                break;
+            case '>':
+                sb.append("&gt;");
+                break;
+            case '&':
+                sb.append("&amp;");
+                break;
+            case '"':
+                sb.append("&quot;");
+                break;
+            default:
+                if (c < ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    // Not allowed in XML 1.0.
+                    sb.append(' ');
+                } else {
+                    sb.append(c);
+                }
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats a coordinate.
+     *
+     * @param value double
+     * @return String
+     */
+    private static String format(final double value) {
+        final long rounded = Math.round(value);
+        if (Math.abs(value - rounded) < 0.005) {
+            return Long.toString(rounded);
+        }
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    /**
+     * Reads a style index set by {@link HeadlessDotGraphCreator}.
+     *
+     * @param value the value of the style attribute.
+     * @param count the number of styles.
+     * @param defaultStyle the style to use if the value is not valid.
+     * @return int
+     */
+    private static int getStyle(final Object value, final int count, final int defaultStyle) {
+        if (value instanceof Integer) {
+            final int style = ((Integer) value).intValue();
+            if (style >= 0 && style < count) {
+                return style;
+            }
+        }
+        return defaultStyle;
+    }
+
+    /**
+     * Converts a shape to SVG path data.
+     *
+     * @param shape Shape
+     * @return String
+     */
+    private static String toPathData(final Shape shape) {
+        final StringBuilder sb = new StringBuilder();
+        final double[] coords = new double[6];
+        for (final PathIterator ite = shape.getPathIterator(null); !ite.isDone(); ite.next()) {
+            switch (ite.currentSegment(coords)) {
+            case PathIterator.SEG_MOVETO:
+                sb.append('M').append(format(coords[0])).append(',').append(format(coords[1]));
+                break;
+            case PathIterator.SEG_LINETO:
+                sb.append('L').append(format(coords[0])).append(',').append(format(coords[1]));
+                break;
+            case PathIterator.SEG_QUADTO:
+                sb.append('Q').append(format(coords[0])).append(',').append(format(coords[1]))
+                        .append(' ').append(format(coords[2])).append(',')
+                        .append(format(coords[3]));
+                break;
+            case PathIterator.SEG_CUBICTO:
+                sb.append('C').append(format(coords[0])).append(',').append(format(coords[1]))
+                        .append(' ').append(format(coords[2])).append(',')
+                        .append(format(coords[3])).append(' ').append(format(coords[4]))
+                        .append(',').append(format(coords[5]));
+                break;
+            case PathIterator.SEG_CLOSE:
+                sb.append('Z');
+                break;
+            default:
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Flattens a route into a polyline, ending at the route's end point if
+     * there is one.
+     *
+     * @param route LayoutRoute
+     * @return List&lt;Point2D&gt;
+     */
+    private static List<Point2D> toPolyline(final LayoutRoute route) {
+        final List<Point2D> points = new ArrayList<Point2D>();
+        final double[] coords = new double[6];
+        for (final PathIterator ite = new FlatteningPathIterator(route.getPath().getPathIterator(
+                new AffineTransform()), PATH_FLATNESS); !ite.isDone(); ite.next()) {
+            final int segType = ite.currentSegment(coords);
+            if (segType == PathIterator.SEG_MOVETO || segType == PathIterator.SEG_LINETO) {
+                points.add(new Point2D.Double(coords[0], coords[1]));
+            }
+        }
+        if (route.getEndPt() != null) {
+            points.add(route.getEndPt());
+        }
+        return points;
+    }
+
+    /**
+     * Writes an arrow head at the end of a polyline.
+     *
+     * @param points List&lt;Point2D&gt;
+     * @param color String
+     * @throws IOException if the document cannot be written.
+     */
+    private void writeArrow(final List<Point2D> points, final String color)
+            throws IOException {
+        final Point2D tip = points.get(points.size() - 1);
+        Point2D from = null;
+        for (int i = points.size() - 2; i >= 0 && from == null; i--) {
+            if (!points.get(i).equals(tip)) {
+                from = points.get(i);
+            }
+        }
+        if (from == null) {
+            return;
+        }
+        final double dx = tip.getX() - from.getX();
+        final double dy = tip.getY() - from.getY();
+        final double length = Math.sqrt(dx * dx + dy * dy);
+        final double ux = dx / length;
+        final double uy = dy / length;
+        final double baseX = tip.getX() - ux * ARROW_LENGTH;
+        final double baseY = tip.getY() - uy * ARROW_LENGTH;
+        out.write("<path d=\"M" + format(tip.getX()) + "," + format(tip.getY()) + "L"
+                + format(baseX - uy * ARROW_HALF_WIDTH) + ","
+                + format(baseY + ux * ARROW_HALF_WIDTH) + "L"
+                + format(baseX + uy * ARROW_HALF_WIDTH) + ","
+                + format(baseY - ux * ARROW_HALF_WIDTH) + "Z\" fill=\"" + color
+                + "\" stroke=\"" + color + "\"/>\n");
+    }
+
+    /**
+     * Writes the bus connections of a vertex.
+     *
+     * @param vertex IVertex
+     * @throws IOException if the document cannot be written.
+     */
+    private void writeBuses(final IVertex vertex) throws IOException {
+        for (int i = 0; i < BUS_IDS.length; i++) {
+            if (vertex.hasAttr(BUS_IDS[i])) {
+                final List<Point2D> points =
+                        toPolyline(LayoutRoute.valueOf(vertex.getAttr(BUS_IDS[i])));
+                writePolyline(points, BUS_COLORS[i], BUS_LINE_WIDTHS[i]);
+                // Only the bus going to the node has an arrow.
+                if ("frombus".equals(BUS_IDS[i])) {
+                    writeArrow(points, BUS_COLORS[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes an edge with its arrow and its label.
+     *
+     * @param edge IEdge
+     * @throws IOException if the document cannot be written.
+     */
+    private void writeEdge(final IEdge edge) throws IOException {
+        final Object route = edge.getAttr(POSITION_ATTR);
+        if (route == null) {
+            return;
+        }
+        final int style = getStyle(edge.getAttr(HeadlessDotGraphCreator.STYLE_ATTR),
+                HeadlessStyles.LINK_COLORS.length, 0);
+        final String color = HeadlessStyles.LINK_COLORS[style];
+        final List<Point2D> points = toPolyline(LayoutRoute.valueOf(route));
+        if (points.size() < 2) {
+            return;
+        }
+
+        out.write("<g>\n<title>" + escape(edge.getTail().getName()) + " -&gt; "
+                + escape(edge.getHead().getName()) + "</title>\n");
+        writePolyline(points, color, HeadlessStyles.LINK_LINE_WIDTHS[style]);
+        writeArrow(points, color);
+
+        final String name = edge.getName();
+        if (name != null && !"".equals(name)) {
+            // Same location as draw2d's MidpointLocator.
+            final int segment = (points.size() - 1) / 2;
+            final Point2D p1 = points.get(segment);
+            final Point2D p2 = points.get(segment + 1);
+            final double x = (p1.getX() + p2.getX()) / 2;
+            final double y = (p1.getY() + p2.getY()) / 2;
+            final Rectangle2D extents = HeadlessDotGraphCreator.getTextExtents(name);
+            final double width = extents.getWidth() + 2 * LABEL_PADDING;
+            final double height = extents.getHeight() + 2 * LABEL_PADDING;
+            out.write("<rect x=\"" + format(x - width / 2) + "\" y=\"" + format(y - height / 2)
+                    + "\" width=\"" + format(width) + "\" height=\"" + format(height)
+                    + "\" fill=\"#ffffff\" stroke=\"#000000\"/>\n");
+            writeText(name, x, y);
+        }
+        out.write("</g>\n");
+    }
+
+    /**
+     * Writes a polyline.
+     *
+     * @param points List&lt;Point2D&gt;
+     * @param color String
+     * @param lineWidth int
+     * @throws IOException if the document cannot be written.
+     */
+    private void writePolyline(final List<Point2D> points, final String color,
+            final int lineWidth) throws IOException {
+        final StringBuilder sb = new StringBuilder("<polyline points=\"");
+        for (int i = 0; i < points.size(); i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            final Point2D point = points.get(i);
+            sb.append(format(point.getX())).append(',').append(format(point.getY()));
+        }
+        sb.append("\" fill=\"none\" stroke=\"").append(color).append("\" stroke-width=\"")
+                .append(lineWidth).append("\"/>\n");
+        out.write(sb.toString());
+    }
+
+    /**
+     * Writes a text centered on a point.
+     *
+     * @param text String
+     * @param x double
+     * @param y double
+     * @throws IOException if the document cannot be written.
+     */
+    private void writeText(final String text, final double x, final double y)
+            throws IOException {
+        out.write("<text x=\"" + format(x) + "\" y=\"" + format(y)
+                + "\" text-anchor=\"middle\" dominant-baseline=\"central\">" + escape(text)
+                + "</text>\n");
+    }
+
+    /**
+     * Writes a node with its label and its description.
+     *
+     * @param vertex IVertex
+     * @throws IOException if the document cannot be written.
+     */
+    private void writeVertex(final IVertex vertex) throws IOException {
+        final Shape shape = (Shape) vertex.getAttr(_SHAPE_ATTR);
+        final Rectangle2D bounds = (Rectangle2D) vertex.getAttr(_BOUNDS_ATTR);
+        if (shape == null || bounds == null) {
+            return;
+        }
+        final int style = getStyle(vertex.getAttr(HeadlessDotGraphCreator.STYLE_ATTR),
+                HeadlessStyles.NODE_SHAPES.length, HeadlessStyles.NODE_SHAPES.length - 1);
+
+        out.write("<g>\n");
+        final String description = vertex.getAttrString(DESCRIPTION_ATTR);
+        if (description != null) {
+            out.write("<title>" + escape(description) + "</title>\n");
+        }
+        out.write("<path d=\"" + toPathData(shape) + "\" fill=\""
+                + HeadlessStyles.NODE_FILL_COLORS[style] + "\" stroke=\""
+                + HeadlessStyles.NODE_FG_COLORS[style] + "\" stroke-width=\""
+                + HeadlessStyles.NODE_LINE_WIDTHS[style] + "\"/>\n");
+        writeText(vertex.getName(), bounds.getCenterX(), bounds.getCenterY());
+        out.write("</g>\n");
+    }
+}
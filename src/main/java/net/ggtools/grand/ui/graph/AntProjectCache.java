@@ -0,0 +1,609 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import net.ggtools.grand.ant.AntProject;
+import net.ggtools.grand.ant.AntTargetNode;
+import net.ggtools.grand.ant.SubantTaskLink;
+import net.ggtools.grand.exceptions.GrandException;
+import net.ggtools.grand.graph.Graph;
+import net.ggtools.grand.graph.Link;
+import net.ggtools.grand.graph.Node;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Singleton class caching parsed Ant projects.
+ * <p>
+ * Projects are keyed by the canonical path of the build file and the user
+ * properties used to load it. Each entry records the modification time,
+ * size and content digest of every file the project depends on (the build
+ * file itself, imported files, files declaring targets and the build files
+ * called by subant); an entry is only reused when none of these files has
+ * changed. The cache is shared by all the graph
+ * models, the least recently used projects being evicted first. A project
+ * requested while it is being parsed is not parsed twice: the callers wait
+ * for the ongoing parsing.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+public final class AntProjectCache {
+
+    /**
+     * Default number of projects kept in the cache.
+     * (value is {@value #DEFAULT_CAPACITY})
+     */
+    public static final int DEFAULT_CAPACITY = 8;
+
+    /**
+     * Prefix of the properties set by Ant for each imported file.
+     */
+    private static final String ANT_FILE_PREFIX = "ant.file.";
+
+    /**
+     * Prefix of the properties set by Ant for the type of each imported file.
+     */
+    private static final String ANT_FILE_TYPE_PREFIX = "ant.file.type.";
+
+    /**
+     * Field BUFFER_SIZE, the size of the buffer used to digest files.
+     * (value is {@value #BUFFER_SIZE})
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Field DIGEST_ALGORITHM.
+     * (value is {@value #DIGEST_ALGORITHM})
+     */
+    private static final String DIGEST_ALGORITHM = "MD5";
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(AntProjectCache.class);
+
+    /**
+     * Field SUBANT_DEFAULT_FILE, the build file used by subant when none
+     * is specified.
+     * (value is {@value #SUBANT_DEFAULT_FILE})
+     */
+    private static final String SUBANT_DEFAULT_FILE = "build.xml";
+
+    /**
+     * Field instance.
+     */
+    private static AntProjectCache instance;
+
+    /**
+     * Key of a cache entry.
+     */
+    private static final class Key {
+        /**
+         * Field path.
+         */
+        private final String path;
+
+        /**
+         * Field properties.
+         */
+        private final Map<Object, Object> properties;
+
+        /**
+         * Constructor for Key.
+         * @param path String
+         * @param properties Properties
+         */
+        private Key(final String path, final Properties properties) {
+            this.path = path;
+            if (properties == null) {
+                this.properties = Collections.emptyMap();
+            } else {
+                this.properties = new HashMap<Object, Object>(properties);
+            }
+        }
+
+        /**
+         * Method equals.
+         * @param obj Object
+         * @return boolean
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return path.equals(other.path) && properties.equals(other.properties);
+        }
+
+        /**
+         * Method hashCode.
+         * @return int
+         */
+        @Override
+        public int hashCode() {
+            return path.hashCode() * 31 + properties.hashCode();
+        }
+    }
+
+    /**
+     * A cached project along with the state of the files it depends on.
+     */
+    private static final class CachedProject {
+        /**
+         * Field project.
+         */
+        private final AntProject project;
+
+        /**
+         * State of each file, keyed by file.
+         */
+        private final Map<File, FileState> fileStates;
+
+        /**
+         * Constructor for CachedProject.
+         * @param project AntProject
+         * @param fileStates Map&lt;File, FileState&gt;
+         */
+        private CachedProject(final AntProject project, final Map<File, FileState> fileStates) {
+            this.project = project;
+            this.fileStates = fileStates;
+        }
+
+        /**
+         * Checks if all the files are unchanged.
+         * @return boolean
+         */
+        private boolean isUpToDate() {
+            for (final Map.Entry<File, FileState> fileState : fileStates.entrySet()) {
+                final File file = fileState.getKey();
+                if (!fileState.getValue().matches(file)) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(file + " has changed");
+                    }
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The state of a file: its modification time, its size and a digest of
+     * its content. The digest catches the changes keeping the size within
+     * the resolution of the modification time.
+     */
+    private static final class FileState {
+        /**
+         * Field digest, <code>null</code> if the file does not exist.
+         */
+        private final byte[] digest;
+
+        /**
+         * Field lastModified.
+         */
+        private final long lastModified;
+
+        /**
+         * Field length.
+         */
+        private final long length;
+
+        /**
+         * Records the current state of a file.
+         * @param file File
+         */
+        private FileState(final File file) {
+            lastModified = file.lastModified();
+            length = file.length();
+            digest = digest(file);
+        }
+
+        /**
+         * Checks if a file is still in this state.
+         * @param file File
+         * @return boolean
+         */
+        private boolean matches(final File file) {
+            if ((file.lastModified() != lastModified) || (file.length() != length)) {
+                return false;
+            }
+            final byte[] current = digest(file);
+            if (current == null) {
+                return (digest == null) && !file.exists();
+            }
+            return Arrays.equals(current, digest);
+        }
+    }
+
+    /**
+     * Field capacity.
+     */
+    private int capacity = DEFAULT_CAPACITY;
+
+    /**
+     * Field entries.
+     */
+    private final LinkedHashMap<Key, CachedProject> entries;
+
+    /**
+     * Field pending, the projects being parsed.
+     */
+    private final Map<Key, FutureTask<CachedProject>> pending =
+            new HashMap<Key, FutureTask<CachedProject>>();
+
+    /**
+     * Private constructor.
+     */
+    private AntProjectCache() {
+        entries = new LinkedHashMap<Key, CachedProject>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, CachedProject> eldest) {
+                final boolean remove = size() > capacity;
+                if (remove && LOG.isDebugEnabled()) {
+                    LOG.debug("Evicting " + eldest.getKey().path);
+                }
+                return remove;
+            }
+        };
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return AntProjectCache
+     */
+    public static synchronized AntProjectCache getInstance() {
+        if (instance == null) {
+            instance = new AntProjectCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the project for a build file, parsing it only if it is not
+     * cached or if one of its files has changed.
+     *
+     * @param file
+     *            the build file.
+     * @param properties
+     *            the user properties, may be <code>null</code>.
+     * @return the parsed project.
+     * @throws GrandException
+     *             if the project cannot be parsed.
+     */
+    public AntProject getProject(final File file, final Properties properties)
+            throws GrandException {
+        final Key key = new Key(getCanonicalPath(file), properties);
+        final FutureTask<CachedProject> parsing;
+        final boolean owner;
+        synchronized (this) {
+            final CachedProject entry = entries.get(key);
+            if (entry != null) {
+                if (entry.isUpToDate()) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Using cached project for " + key.path);
+                    }
+                    return entry.project;
+                }
+                entries.remove(key);
+            }
+
+            final FutureTask<CachedProject> current = pending.get(key);
+            owner = current == null;
+            if (owner) {
+                parsing = new FutureTask<CachedProject>(new Callable<CachedProject>() {
+                    public CachedProject call() throws GrandException {
+                        return parse(key, file, properties);
+                    }
+                });
+                pending.put(key, parsing);
+            } else {
+                parsing = current;
+            }
+        }
+
+        if (owner) {
+            try {
+                parsing.run();
+            } finally {
+                synchronized (this) {
+                    if (pending.get(key) == parsing) {
+                        pending.remove(key);
+                    }
+                }
+            }
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("Waiting for " + key.path + " to be parsed");
+        }
+        return getParsedProject(key, parsing);
+    }
+
+    /**
+     * Removes all the cached projects.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the files a project depends on: the build file, the files it
+     * imports, the files declaring its targets and the build files called by
+     * subant.
+     *
+     * @param file
+     *            the build file.
+     * @param project
+     *            the parsed project.
+     * @return the files, including the ones which do not exist.
+     * @throws GrandException
+     *             if the project's graph cannot be created.
+     */
+    public static Set<File> getDependencies(final File file, final AntProject project)
+            throws GrandException {
+        final Set<File> files = new HashSet<File>();
+        addFile(files, file.getPath());
+
+        final Map<String, Object> properties = project.getAntProject().getProperties();
+        for (final Map.Entry<String, Object> property : properties.entrySet()) {
+            final String name = property.getKey();
+            if (name.startsWith(ANT_FILE_PREFIX) && !name.startsWith(ANT_FILE_TYPE_PREFIX)
+                    && (property.getValue() != null)) {
+                addFile(files, property.getValue().toString());
+            }
+        }
+
+        final File baseDir = file.getAbsoluteFile().getParentFile();
+        synchronized (project) {
+            final Graph graph = project.getGraph();
+            for (final Iterator<Node> iter = graph.getNodes(); iter.hasNext();) {
+                final Node node = iter.next();
+                if (node instanceof AntTargetNode) {
+                    addFile(files, ((AntTargetNode) node).getBuildFile());
+                }
+                for (final Link link : node.getLinks()) {
+                    if (link instanceof SubantTaskLink) {
+                        for (final String dirName : ((SubantTaskLink) link).getDirectories()) {
+                            File dir = new File(dirName);
+                            if (!dir.isAbsolute()) {
+                                dir = new File(baseDir, dirName);
+                            }
+                            addFile(files, new File(dir, SUBANT_DEFAULT_FILE).getPath());
+                        }
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Removes the cached projects of a build file, whatever the properties
+     * they were loaded with, so that the next request parses it again. A
+     * parsing in progress is not waited for by the next requests either.
+     *
+     * @param file
+     *            the build file.
+     */
+    public synchronized void invalidate(final File file) {
+        final String path = getCanonicalPath(file);
+        for (final Iterator<Key> iter = entries.keySet().iterator(); iter.hasNext();) {
+            if (iter.next().path.equals(path)) {
+                iter.remove();
+            }
+        }
+        for (final Iterator<Key> iter = pending.keySet().iterator(); iter.hasNext();) {
+            if (iter.next().path.equals(path)) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * @return Returns the capacity.
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the maximum number of projects kept in the cache.
+     * @param capacity int
+     */
+    public synchronized void setCapacity(final int capacity) {
+        this.capacity = Math.max(0, capacity);
+        final Iterator<Key> iter = entries.keySet().iterator();
+        while ((entries.size() > this.capacity) && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+        }
+    }
+
+    /**
+     * Waits for a project to be parsed.
+     *
+     * @param key
+     *            the key of the project.
+     * @param parsing
+     *            the parsing task.
+     * @return the parsed project.
+     * @throws GrandException
+     *             if the project cannot be parsed or if the thread is
+     *             interrupted while waiting.
+     */
+    private static AntProject getParsedProject(final Key key,
+            final FutureTask<CachedProject> parsing) throws GrandException {
+        try {
+            return parsing.get().project;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GrandException("Interrupted while waiting for " + key.path);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof GrandException) {
+                throw (GrandException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Parses a project and caches it. The state of the build file is taken
+     * before parsing so that a change made during the parsing makes the
+     * entry stale.
+     *
+     * @param key
+     *            the key of the project.
+     * @param file
+     *            the build file.
+     * @param properties
+     *            the user properties, may be <code>null</code>.
+     * @return the new entry.
+     * @throws GrandException
+     *             if the project cannot be parsed.
+     */
+    private CachedProject parse(final Key key, final File file, final Properties properties)
+            throws GrandException {
+        final File buildFile = new File(key.path);
+        final FileState initialState = new FileState(buildFile);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Parsing " + key.path);
+        }
+        final AntProject project = new AntProject(file, properties);
+        final Map<File, FileState> fileStates = new HashMap<File, FileState>();
+        for (final File dependency : getDependencies(file, project)) {
+            fileStates.put(dependency, new FileState(dependency));
+        }
+        fileStates.put(buildFile, initialState);
+        final CachedProject entry = new CachedProject(project, fileStates);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Adds a file, by its canonical path, unless it is a directory.
+     * @param files Set&lt;File&gt;
+     * @param path String
+     */
+    private static void addFile(final Set<File> files, final String path) {
+        if ((path == null) || (path.length() == 0)) {
+            return;
+        }
+        final File file = new File(getCanonicalPath(new File(path)));
+        if (!file.isDirectory()) {
+            files.add(file);
+        }
+    }
+
+    /**
+     * Computes the digest of a file's content.
+     * @param file File
+     * @return the digest or <code>null</code> if the file does not exist or
+     *         cannot be read.
+     */
+    private static byte[] digest(final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        InputStream in = null;
+        try {
+            final MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            in = new FileInputStream(file);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+            return digest.digest();
+        } catch (final IOException e) {
+            LOG.warn("Cannot read " + file, e);
+            return null;
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " not available", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (final IOException e) {
+                    LOG.warn("Cannot close " + file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical path of a file or its absolute path if the
+     * canonical one cannot be computed.
+     * @param file File
+     * @return String
+     */
+    private static String getCanonicalPath(final File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (final IOException e) {
+            LOG.warn("Cannot get canonical path for " + file, e);
+            return file.getAbsolutePath();
+        }
+    }
+}
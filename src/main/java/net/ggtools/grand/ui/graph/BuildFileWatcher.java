@@ -0,0 +1,328 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Singleton class watching build files for changes.
+ * <p>
+ * Each listener registers the set of files it depends on. The parent
+ * directories of these files are watched with a {@link WatchService}
+ * shared by all the listeners. Changes are collected until no event has
+ * been received for {@link #DEBOUNCE_MILLIS} milliseconds, so an editor
+ * saving several files or writing a file in several steps only triggers a
+ * single notification. Only the listeners depending on one of the changed
+ * files are notified, on the watcher thread.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+public final class BuildFileWatcher {
+
+    /**
+     * Listener notified when some watched files have changed.
+     *
+     * @author Christophe Labouisse
+     */
+    public interface Listener {
+        /**
+         * Called on the watcher thread when some of the files of the
+         * listener have changed.
+         *
+         * @param changedFiles
+         *            the changed files among the ones registered by the
+         *            listener.
+         */
+        void filesChanged(Set<File> changedFiles);
+    }
+
+    /**
+     * Field DEBOUNCE_MILLIS, the quiet period ending a burst of changes.
+     * (value is {@value #DEBOUNCE_MILLIS})
+     */
+    public static final long DEBOUNCE_MILLIS = 300L;
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(BuildFileWatcher.class);
+
+    /**
+     * Field instance.
+     */
+    private static BuildFileWatcher instance;
+
+    /**
+     * Field directoryKeys, the watch key of each watched directory.
+     */
+    private final Map<Path, WatchKey> directoryKeys = new HashMap<Path, WatchKey>();
+
+    /**
+     * Field listenerFiles, the files watched for each listener.
+     */
+    private final Map<Listener, Set<Path>> listenerFiles = new HashMap<Listener, Set<Path>>();
+
+    /**
+     * Field watchService, created on first use.
+     */
+    private WatchService watchService;
+
+    /**
+     * Private constructor.
+     */
+    private BuildFileWatcher() {
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return BuildFileWatcher
+     */
+    public static synchronized BuildFileWatcher getInstance() {
+        if (instance == null) {
+            instance = new BuildFileWatcher();
+        }
+        return instance;
+    }
+
+    /**
+     * Converts a file to the path used as a key.
+     *
+     * @param file File
+     * @return Path
+     */
+    private static Path toPath(final File file) {
+        return file.getAbsoluteFile().toPath().normalize();
+    }
+
+    /**
+     * Stops watching the files of a listener.
+     *
+     * @param listener Listener
+     */
+    public synchronized void unwatch(final Listener listener) {
+        if (listenerFiles.remove(listener) != null) {
+            updateDirectories();
+        }
+    }
+
+    /**
+     * Sets the files watched for a listener, replacing the ones previously
+     * registered.
+     *
+     * @param listener
+     *            the listener to notify.
+     * @param files
+     *            the files to watch.
+     */
+    public synchronized void watch(final Listener listener, final Collection<File> files) {
+        if (!ensureStarted()) {
+            return;
+        }
+        final Set<Path> paths = new HashSet<Path>();
+        for (final File file : files) {
+            paths.add(toPath(file));
+        }
+        listenerFiles.put(listener, paths);
+        updateDirectories();
+    }
+
+    /**
+     * Collects the files changed according to a key.
+     *
+     * @param key
+     *            the signaled key.
+     * @param changedFiles
+     *            the changed files.
+     * @param changedDirectories
+     *            the directories for which some events were lost.
+     */
+    private void collectChanges(final WatchKey key, final Set<Path> changedFiles,
+            final Set<Path> changedDirectories) {
+        final Path directory = (Path) key.watchable();
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                changedDirectories.add(directory);
+            } else {
+                changedFiles.add(directory.resolve((Path) event.context()));
+            }
+        }
+        key.reset();
+    }
+
+    /**
+     * Notifies the listeners depending on the changed files.
+     *
+     * @param changedFiles
+     *            the changed files.
+     * @param changedDirectories
+     *            the directories for which some events were lost.
+     */
+    private void dispatch(final Set<Path> changedFiles, final Set<Path> changedDirectories) {
+        final Map<Listener, Set<File>> notifications = new HashMap<Listener, Set<File>>();
+        synchronized (this) {
+            for (final Map.Entry<Listener, Set<Path>> entry : listenerFiles.entrySet()) {
+                final Set<File> files = new HashSet<File>();
+                for (final Path path : entry.getValue()) {
+                    if (changedFiles.contains(path)
+                            || changedDirectories.contains(path.getParent())) {
+                        files.add(path.toFile());
+                    }
+                }
+                if (!files.isEmpty()) {
+                    notifications.put(entry.getKey(), files);
+                }
+            }
+        }
+
+        for (final Map.Entry<Listener, Set<File>> entry : notifications.entrySet()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Files changed: " + entry.getValue());
+            }
+            try {
+                entry.getKey().filesChanged(entry.getValue());
+            } catch (final RuntimeException e) {
+                LOG.error("Listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Creates the watch service and starts the watcher thread if needed.
+     *
+     * @return <code>false</code> if files cannot be watched.
+     */
+    private boolean ensureStarted() {
+        if (watchService == null) {
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+            } catch (final IOException e) {
+                LOG.warn("Cannot watch build files", e);
+                return false;
+            } catch (final UnsupportedOperationException e) {
+                LOG.warn("Cannot watch build files", e);
+                return false;
+            }
+            final WatchService service = watchService;
+            final Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    processEvents(service);
+                }
+            }, "Build file watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return true;
+    }
+
+    /**
+     * Main loop of the watcher thread.
+     *
+     * @param service WatchService
+     */
+    private void processEvents(final WatchService service) {
+        try {
+            while (true) {
+                final Set<Path> changedFiles = new HashSet<Path>();
+                final Set<Path> changedDirectories = new HashSet<Path>();
+                collectChanges(service.take(), changedFiles, changedDirectories);
+                WatchKey key;
+                while ((key = service.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    collectChanges(key, changedFiles, changedDirectories);
+                }
+                dispatch(changedFiles, changedDirectories);
+            }
+        } catch (final InterruptedException e) {
+            LOG.debug("Watcher thread interrupted");
+        } catch (final ClosedWatchServiceException e) {
+            LOG.debug("Watch service closed");
+        }
+    }
+
+    /**
+     * Registers the directories of the watched files and cancels the keys
+     * of the directories no longer needed.
+     */
+    private void updateDirectories() {
+        final Set<Path> directories = new HashSet<Path>();
+        for (final Set<Path> paths : listenerFiles.values()) {
+            for (final Path path : paths) {
+                final Path parent = path.getParent();
+                if (parent != null) {
+                    directories.add(parent);
+                }
+            }
+        }
+
+        final List<Path> obsolete = new ArrayList<Path>();
+        for (final Map.Entry<Path, WatchKey> entry : directoryKeys.entrySet()) {
+            if (!directories.contains(entry.getKey())) {
+                entry.getValue().cancel();
+                obsolete.add(entry.getKey());
+            }
+        }
+        for (final Path directory : obsolete) {
+            directoryKeys.remove(directory);
+        }
+
+        for (final Path directory : directories) {
+            if (!directoryKeys.containsKey(directory)) {
+                try {
+                    directoryKeys.put(directory, directory.register(watchService, ENTRY_CREATE,
+                            ENTRY_DELETE, ENTRY_MODIFY));
+                } catch (final IOException e) {
+                    LOG.warn("Cannot watch " + directory, e);
+                }
+            }
+        }
+    }
+}
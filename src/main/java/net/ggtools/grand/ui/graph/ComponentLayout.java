@@ -0,0 +1,444 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import sf.jzgraph.IDotGraph;
+import sf.jzgraph.IEdge;
+import sf.jzgraph.IGraph;
+import sf.jzgraph.IVertex;
+import sf.jzgraph.dot.impl.DotGraph;
+
+/**
+ * Lays out a graph by splitting it into weakly connected components, laying
+ * out each of them concurrently and packing the results on shelves.
+ * <p>
+ * Each component is copied to its own dot graph with the attributes used by
+ * the layout, laid out through the {@link LayoutCache} and the resulting
+ * positions are translated back onto the original vertices and edges.
+ * Isolated vertices are laid out directly, without going through the
+ * cache.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+final class ComponentLayout implements DotGraphAttributes {
+
+    /**
+     * A weakly connected component of the graph and its copy.
+     *
+     * @author Christophe Labouisse
+     */
+    private static final class Component {
+
+        /**
+         * Field bounds, computed once the component is laid out.
+         */
+        private Rectangle2D bounds;
+
+        /**
+         * Field edges.
+         */
+        private final List<IEdge> edges = new ArrayList<IEdge>();
+
+        /**
+         * Field subEdges.
+         */
+        private final List<IEdge> subEdges = new ArrayList<IEdge>();
+
+        /**
+         * Field subGraph.
+         */
+        private IDotGraph subGraph;
+
+        /**
+         * Field subVertices.
+         */
+        private final List<IVertex> subVertices = new ArrayList<IVertex>();
+
+        /**
+         * Field vertices.
+         */
+        private final List<IVertex> vertices = new ArrayList<IVertex>();
+    }
+
+    /**
+     * Lays out a single component.
+     *
+     * @author Christophe Labouisse
+     */
+    private static final class LayoutTask extends RecursiveAction {
+
+        /**
+         * Comment for <code>serialVersionUID</code>.
+         */
+        private static final long serialVersionUID = -2529473166359024581L;
+
+        /**
+         * Field component.
+         */
+        private final transient Component component;
+
+        /**
+         * Constructor for LayoutTask.
+         * @param component Component
+         */
+        private LayoutTask(final Component component) {
+            this.component = component;
+        }
+
+        /**
+         * Method compute.
+         * @see java.util.concurrent.RecursiveAction#compute()
+         */
+        @Override
+        protected void compute() {
+            if ((component.vertices.size() == 1) && component.edges.isEmpty()) {
+                // Not worth a cache file.
+                LayoutCache.layoutWithDot(component.subGraph);
+            } else {
+                LayoutCache.getInstance().layout(component.subGraph);
+            }
+            component.bounds = computeBounds(component);
+        }
+    }
+
+    /**
+     * Field BUS_ATTRS.
+     */
+    private static final String[] BUS_ATTRS = {"inbus", "outbus", "tobus", "frombus"};
+
+    /**
+     * Field GAP, the space left between two components.
+     * (value is {@value #GAP})
+     */
+    private static final int GAP = 24;
+
+    /**
+     * Field LAYOUT_ATTRS, the attributes copied to the component graphs.
+     */
+    private static final String[] LAYOUT_ATTRS = {MINWIDTH_ATTR, MINHEIGHT_ATTR, SHAPE_ATTR,
+            "inthreshold", "outthreshold"};
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(ComponentLayout.class);
+
+    /**
+     * Field MARGIN, the space left on the top &amp; left edges as done by
+     * dot.
+     * (value is {@value #MARGIN})
+     */
+    private static final int MARGIN = 24;
+
+    /**
+     * Field pool.
+     */
+    private static ForkJoinPool pool;
+
+    /**
+     * Private constructor, only static methods.
+     */
+    private ComponentLayout() {
+    }
+
+    /**
+     * Lays out a graph. Graphs having a single component are laid out
+     * directly.
+     *
+     * @param dotGraph
+     *            the graph to lay out.
+     */
+    static void layout(final IDotGraph dotGraph) {
+        final List<Component> components = split(dotGraph);
+        if (components.size() < 2) {
+            LayoutCache.getInstance().layout(dotGraph);
+            return;
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Laying out " + components.size() + " components");
+        }
+        final List<LayoutTask> tasks = new ArrayList<LayoutTask>(components.size());
+        for (final Component component : components) {
+            copyComponent(dotGraph, component);
+            tasks.add(new LayoutTask(component));
+        }
+        final ForkJoinPool layoutPool = getPool();
+        for (final LayoutTask task : tasks) {
+            layoutPool.execute(task);
+        }
+        for (final LayoutTask task : tasks) {
+            task.join();
+        }
+
+        pack(components);
+    }
+
+    /**
+     * Computes the bounding box of a laid out component.
+     *
+     * @param component Component
+     * @return Rectangle2D
+     */
+    private static Rectangle2D computeBounds(final Component component) {
+        Rectangle2D bounds = null;
+        for (final IVertex vertex : component.subVertices) {
+            bounds = union(bounds, (Rectangle2D) vertex.getAttr(_BOUNDS_ATTR));
+            for (final String busAttr : BUS_ATTRS) {
+                if (vertex.hasAttr(busAttr)) {
+                    bounds = union(bounds, LayoutRoute.valueOf(vertex.getAttr(busAttr))
+                            .getPath().getBounds2D());
+                }
+            }
+        }
+        for (final IEdge edge : component.subEdges) {
+            bounds = union(bounds, LayoutRoute.valueOf(edge.getAttr(POSITION_ATTR)).getPath()
+                    .getBounds2D());
+        }
+        return bounds == null ? new Rectangle2D.Double() : bounds;
+    }
+
+    /**
+     * Copies a component to a new graph holding only the attributes used
+     * for the layout.
+     *
+     * @param dotGraph IDotGraph
+     * @param component Component
+     */
+    private static void copyComponent(final IDotGraph dotGraph, final Component component) {
+        final IDotGraph subGraph = new DotGraph(IGraph.GRAPH, dotGraph.getName());
+        final Map<IVertex, IVertex> copies = new HashMap<IVertex, IVertex>();
+        for (final IVertex vertex : component.vertices) {
+            final IVertex copy = subGraph.newVertex(vertex.getName(), null);
+            for (final String attr : LAYOUT_ATTRS) {
+                if (vertex.hasAttr(attr)) {
+                    copy.setAttr(attr, vertex.getAttr(attr));
+                }
+            }
+            copies.put(vertex, copy);
+            component.subVertices.add(copy);
+        }
+        for (final IEdge edge : component.edges) {
+            component.subEdges.add(subGraph.newEdge(copies.get(edge.getTail()),
+                    copies.get(edge.getHead()), edge.getName(), null));
+        }
+        component.subGraph = subGraph;
+    }
+
+    /**
+     * Find the root of a vertex in the union-find forest, compressing the
+     * path on the way.
+     *
+     * @param parents Map&lt;IVertex, IVertex&gt;
+     * @param vertex IVertex
+     * @return IVertex
+     */
+    private static IVertex find(final Map<IVertex, IVertex> parents, final IVertex vertex) {
+        IVertex root = vertex;
+        while (parents.get(root) != root) {
+            root = parents.get(root);
+        }
+        IVertex current = vertex;
+        while (current != root) {
+            final IVertex next = parents.get(current);
+            parents.put(current, root);
+            current = next;
+        }
+        return root;
+    }
+
+    /**
+     * @return the pool used to lay out the components.
+     */
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+
+    /**
+     * Arranges the components on shelves, tallest first, and translates the
+     * layout of each component onto the original graph.
+     *
+     * @param components List&lt;Component&gt;
+     */
+    private static void pack(final List<Component> components) {
+        final List<Component> sorted = new ArrayList<Component>(components);
+        Collections.sort(sorted, new Comparator<Component>() {
+            public int compare(final Component c1, final Component c2) {
+                return Double.compare(c2.bounds.getHeight(), c1.bounds.getHeight());
+            }
+        });
+
+        double totalArea = 0;
+        double maxWidth = 0;
+        for (final Component component : sorted) {
+            totalArea += (component.bounds.getWidth() + GAP) * (component.bounds.getHeight() + GAP);
+            maxWidth = Math.max(maxWidth, component.bounds.getWidth());
+        }
+        final double shelfWidth = Math.max(maxWidth, Math.sqrt(totalArea));
+
+        double x = MARGIN;
+        double y = MARGIN;
+        double shelfHeight = 0;
+        for (final Component component : sorted) {
+            final Rectangle2D bounds = component.bounds;
+            if (x > MARGIN && x + bounds.getWidth() > MARGIN + shelfWidth) {
+                x = MARGIN;
+                y += shelfHeight + GAP;
+                shelfHeight = 0;
+            }
+            translate(component, x - bounds.getX(), y - bounds.getY());
+            x += bounds.getWidth() + GAP;
+            shelfHeight = Math.max(shelfHeight, bounds.getHeight());
+        }
+    }
+
+    /**
+     * Splits a graph into its weakly connected components.
+     *
+     * @param dotGraph IDotGraph
+     * @return List&lt;Component&gt;
+     */
+    private static List<Component> split(final IDotGraph dotGraph) {
+        final Map<IVertex, IVertex> parents = new HashMap<IVertex, IVertex>();
+        final List<IVertex> vertices = new ArrayList<IVertex>();
+        for (final Object node : dotGraph.allVertices()) {
+            final IVertex vertex = (IVertex) node;
+            parents.put(vertex, vertex);
+            vertices.add(vertex);
+        }
+        final List<IEdge> edges = new ArrayList<IEdge>();
+        for (final Object obj : dotGraph.allEdges()) {
+            final IEdge edge = (IEdge) obj;
+            edges.add(edge);
+            final IVertex tailRoot = find(parents, edge.getTail());
+            final IVertex headRoot = find(parents, edge.getHead());
+            if (tailRoot != headRoot) {
+                parents.put(tailRoot, headRoot);
+            }
+        }
+
+        final Map<IVertex, Component> components = new HashMap<IVertex, Component>();
+        final List<Component> result = new ArrayList<Component>();
+        for (final IVertex vertex : vertices) {
+            final IVertex root = find(parents, vertex);
+            Component component = components.get(root);
+            if (component == null) {
+                component = new Component();
+                components.put(root, component);
+                result.add(component);
+            }
+            component.vertices.add(vertex);
+        }
+        for (final IEdge edge : edges) {
+            components.get(find(parents, edge.getTail())).edges.add(edge);
+        }
+        return result;
+    }
+
+    /**
+     * Copies the layout of a component onto the original graph, translating
+     * it by the given offset.
+     *
+     * @param component Component
+     * @param dx double
+     * @param dy double
+     */
+    private static void translate(final Component component, final double dx, final double dy) {
+        final AffineTransform transform = AffineTransform.getTranslateInstance(dx, dy);
+        for (int i = 0; i < component.vertices.size(); i++) {
+            final IVertex source = component.subVertices.get(i);
+            final IVertex target = component.vertices.get(i);
+            if (source.hasAttr(LABEL_ATTR)) {
+                target.setAttr(LABEL_ATTR, source.getAttr(LABEL_ATTR));
+            }
+            final Rectangle2D bounds = (Rectangle2D) source.getAttr(_BOUNDS_ATTR);
+            target.setAttr(_BOUNDS_ATTR, new Rectangle2D.Double(bounds.getX() + dx, bounds.getY()
+                    + dy, bounds.getWidth(), bounds.getHeight()));
+            target.setAttr(_SHAPE_ATTR, transform.createTransformedShape((Shape) source
+                    .getAttr(_SHAPE_ATTR)));
+            for (final String busAttr : BUS_ATTRS) {
+                if (source.hasAttr(busAttr)) {
+                    target.setAttr(busAttr, translateRoute(transform, source.getAttr(busAttr)));
+                }
+            }
+        }
+        for (int i = 0; i < component.edges.size(); i++) {
+            component.edges.get(i).setAttr(POSITION_ATTR,
+                    translateRoute(transform, component.subEdges.get(i).getAttr(POSITION_ATTR)));
+        }
+    }
+
+    /**
+     * Translates a route.
+     *
+     * @param transform AffineTransform
+     * @param route Object a {@link LayoutRoute} or a dot route.
+     * @return LayoutRoute
+     */
+    private static LayoutRoute translateRoute(final AffineTransform transform, final Object route) {
+        final LayoutRoute layoutRoute = LayoutRoute.valueOf(route);
+        final Point2D endPt = layoutRoute.getEndPt();
+        return new LayoutRoute(transform.createTransformedShape(layoutRoute.getPath()),
+                endPt == null ? null : transform.transform(endPt, null));
+    }
+
+    /**
+     * Computes the union of two rectangles.
+     *
+     * @param r1 Rectangle2D, may be <code>null</code>.
+     * @param r2 Rectangle2D
+     * @return Rectangle2D
+     */
+    private static Rectangle2D union(final Rectangle2D r1, final Rectangle2D r2) {
+        if (r1 == null) {
+            return (Rectangle2D) r2.clone();
+        }
+        r1.add(r2);
+        return r1;
+    }
+}
@@ -31,7 +31,6 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import net.ggtools.grand.ant.AntLink;
 import net.ggtools.grand.ant.AntTargetNode;
@@ -42,14 +41,6 @@ import net.ggtools.grand.graph.Link;
 import net.ggtools.grand.graph.Node;
 import net.ggtools.grand.graph.visit.LinkVisitor;
 import net.ggtools.grand.graph.visit.NodeVisitor;
-import net.ggtools.grand.ui.Application;
-import net.ggtools.grand.ui.GrandUiPrefStore;
-import net.ggtools.grand.ui.prefs.PreferenceKeys;
-
-import org.eclipse.draw2d.FigureUtilities;
-import org.eclipse.draw2d.geometry.Dimension;
-import org.eclipse.swt.graphics.Font;
-import org.eclipse.swt.widgets.Display;
 
 import sf.jzgraph.IDotGraph;
 import sf.jzgraph.IEdge;
@@ -60,12 +51,29 @@ import sf.jzgraph.dot.impl.DotGraph;
 /**
  * Factory class creating a JzGraph graph for a Grand graph using Grand's
  * visitor API.
+ * <p>
+ * The styles and the label sizes are set by the subclasses: this class does
+ * not depend on the display so it can be used by the export as well as by
+ * the UI.
+ * </p>
  *
  * @author Christophe Labouisse
  */
-public class DotGraphCreator
+public abstract class DotGraphCreator
     implements NodeVisitor, LinkVisitor, DotGraphAttributes {
 
+    /**
+     * Field MIN_NODE_HEIGHT.
+     * (value is {@value #MIN_NODE_HEIGHT})
+     */
+    protected static final int MIN_NODE_HEIGHT = 25;
+
+    /**
+     * Field MIN_NODE_WIDTH.
+     * (value is {@value #MIN_NODE_WIDTH})
+     */
+    protected static final int MIN_NODE_WIDTH = 50;
+
     /**
      * Field currentLinkName.
      */
@@ -106,7 +114,7 @@ public class DotGraphCreator
      * @param graph Graph
      * @param useBusRouting boolean
      */
-    public DotGraphCreator(final Graph graph, final boolean useBusRouting) {
+    protected DotGraphCreator(final Graph graph, final boolean useBusRouting) {
         this.graph = graph;
         this.useBusRouting = useBusRouting;
         nameDimensions = new HashMap<String, IVertex>();
@@ -132,19 +140,7 @@ public class DotGraphCreator
             node.accept(this);
         }
 
-        // Update width and height in nodes.
-        Display.getDefault().syncExec(new Runnable() {
-            public void run() {
-                final Font systemFont = Application.getInstance().getFont(Application.NODE_FONT);
-                for (final Entry<String, IVertex> entry : nameDimensions.entrySet()) {
-                    final IVertex vertex = entry.getValue();
-
-                    final Dimension dim = FigureUtilities.getTextExtents(entry.getKey(), systemFont);
-                    vertex.setAttr(MINWIDTH_ATTR, Math.max(dim.width, 50));
-                    vertex.setAttr(MINHEIGHT_ATTR, Math.max(dim.height, 25));
-                }
-            }
-        });
+        setVertexSizes(nameDimensions);
 
         for (final Iterator<Node> iter = graph.getNodes(); iter.hasNext();) {
             final Node node = iter.next();
@@ -199,13 +195,7 @@ public class DotGraphCreator
         edge.setAttr(LINK_TASK_ATTR, link.getTaskName());
         edge.setAttr(LINK_PARAMETERS_ATTR, link.getParameterMap());
         edge.setAttr(LINK_SUBANT_DIRECTORIES, link.getDirectories());
-        final GrandUiPrefStore preferenceStore =
-                Application.getInstance().getPreferenceStore();
-        edge.setAttr(DRAW2DFGCOLOR_ATTR, preferenceStore
-                .getColor(PreferenceKeys.LINK_SUBANT_COLOR));
-        edge.setAttr(DRAW2DLINEWIDTH_ATTR, preferenceStore
-                .getInt(PreferenceKeys.LINK_SUBANT_LINEWIDTH));
-
+        setEdgeStyle(edge, GraphStyleDefaults.LINK_SUBANT);
     }
 
     /**
@@ -248,17 +238,10 @@ public class DotGraphCreator
     private IEdge addLink(final Link link) {
         final IEdge edge = dotGraph.newEdge(vertexLUT.get(link.getStartNode().getName()),
                 vertexLUT.get(link.getEndNode().getName()), currentLinkName, link);
-        final GrandUiPrefStore preferenceStore = Application.getInstance().getPreferenceStore();
         if (link.hasAttributes(Link.ATTR_WEAK_LINK)) {
-            edge.setAttr(DRAW2DFGCOLOR_ATTR, preferenceStore
-                    .getColor(PreferenceKeys.LINK_WEAK_COLOR));
-            edge.setAttr(DRAW2DLINEWIDTH_ATTR, preferenceStore
-                    .getInt(PreferenceKeys.LINK_WEAK_LINEWIDTH));
+            setEdgeStyle(edge, GraphStyleDefaults.LINK_WEAK);
         } else {
-            edge.setAttr(DRAW2DFGCOLOR_ATTR, preferenceStore
-                    .getColor(PreferenceKeys.LINK_DEFAULT_COLOR));
-            edge.setAttr(DRAW2DLINEWIDTH_ATTR, preferenceStore
-                    .getInt(PreferenceKeys.LINK_DEFAULT_LINEWIDTH));
+            setEdgeStyle(edge, GraphStyleDefaults.LINK_DEFAULT);
         }
         return edge;
     }
@@ -273,13 +256,13 @@ public class DotGraphCreator
         final IVertex vertex = dotGraph.newVertex(name, node);
 
         if (node.equals(startNode)) {
-            setVertexPreferences(vertex, "start");
+            setVertexStyle(vertex, GraphStyleDefaults.NODE_START);
         } else if (node.hasAttributes(Node.ATTR_MAIN_NODE)) {
-            setVertexPreferences(vertex, "main");
+            setVertexStyle(vertex, GraphStyleDefaults.NODE_MAIN);
         } else if (node.hasAttributes(Node.ATTR_MISSING_NODE)) {
-            setVertexPreferences(vertex, "missing");
+            setVertexStyle(vertex, GraphStyleDefaults.NODE_MISSING);
         } else {
-            setVertexPreferences(vertex, "default");
+            setVertexStyle(vertex, GraphStyleDefaults.NODE_DEFAULT);
         }
 
         if (node.getDescription() != null) {
@@ -287,11 +270,7 @@ public class DotGraphCreator
         }
 
         if (useBusRouting) {
-            final GrandUiPrefStore preferenceStore = Application.getInstance().getPreferenceStore();
-            vertex.setAttr("inthreshold", preferenceStore
-                    .getInt(PreferenceKeys.GRAPH_BUS_IN_THRESHOLD));
-            vertex.setAttr("outthreshold", preferenceStore
-                    .getInt(PreferenceKeys.GRAPH_BUS_OUT_THRESHOLD));
+            setBusThresholds(vertex);
         }
 
         vertexLUT.put(name, vertex);
@@ -300,18 +279,38 @@ public class DotGraphCreator
     }
 
     /**
+     * Sets the thresholds used for bus routing on a vertex.
+     *
      * @param vertex IVertex
-     * @param nodeType String
      */
-    private void setVertexPreferences(final IVertex vertex,
-            final String nodeType) {
-        final GrandUiPrefStore preferenceStore =
-                Application.getInstance().getPreferenceStore();
-        final String keyPrefix = PreferenceKeys.NODE_PREFIX + nodeType;
-        vertex.setAttr(SHAPE_ATTR, preferenceStore.getString(keyPrefix + ".shape"));
-        vertex.setAttr(DRAW2DFGCOLOR_ATTR, preferenceStore.getColor(keyPrefix + ".fgcolor"));
-        vertex.setAttr(DRAW2DFILLCOLOR_ATTR, preferenceStore.getColor(keyPrefix + ".fillcolor"));
-        vertex.setAttr(DRAW2DLINEWIDTH_ATTR, preferenceStore.getInt(keyPrefix + ".linewidth"));
-    }
+    protected abstract void setBusThresholds(final IVertex vertex);
+
+    /**
+     * Sets the style attributes of an edge.
+     *
+     * @param edge IEdge
+     * @param linkType
+     *            one of the <code>GraphStyleDefaults.LINK_*</code> constants.
+     */
+    protected abstract void setEdgeStyle(final IEdge edge, final int linkType);
+
+    /**
+     * Sets the minimum width and height of the vertices from the size of
+     * their labels.
+     *
+     * @param verticesByName
+     *            the vertices indexed by label.
+     */
+    protected abstract void setVertexSizes(final Map<String, IVertex> verticesByName);
+
+    /**
+     * Sets the shape and style attributes of a vertex. The shape attribute
+     * is required by the layout.
+     *
+     * @param vertex IVertex
+     * @param nodeType
+     *            one of the <code>GraphStyleDefaults.NODE_*</code> constants.
+     */
+    protected abstract void setVertexStyle(final IVertex vertex, final int nodeType);
 
 }
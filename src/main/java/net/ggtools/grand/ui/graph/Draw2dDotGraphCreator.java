@@ -0,0 +1,131 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.ggtools.grand.graph.Graph;
+import net.ggtools.grand.ui.Application;
+
+import org.eclipse.draw2d.geometry.Dimension;
+
+import sf.jzgraph.IEdge;
+import sf.jzgraph.IVertex;
+
+/**
+ * A {@link DotGraphCreator} for the UI: the styles are taken from the
+ * {@link GraphStyleTable} and the node labels are measured with the
+ * application's node font.
+ *
+ * @author Christophe Labouisse
+ */
+public class Draw2dDotGraphCreator extends DotGraphCreator {
+
+    /**
+     * Field styles, read on first use.
+     */
+    private GraphStyleTable styles;
+
+    /**
+     * Constructor for Draw2dDotGraphCreator.
+     * @param graph Graph
+     * @param useBusRouting boolean
+     */
+    public Draw2dDotGraphCreator(final Graph graph, final boolean useBusRouting) {
+        super(graph, useBusRouting);
+    }
+
+    /**
+     * Method setBusThresholds.
+     * @param vertex IVertex
+     * @see net.ggtools.grand.ui.graph.DotGraphCreator#setBusThresholds(sf.jzgraph.IVertex)
+     */
+    @Override
+    protected void setBusThresholds(final IVertex vertex) {
+        vertex.setAttr("inthreshold", getStyles().getBusInThreshold());
+        vertex.setAttr("outthreshold", getStyles().getBusOutThreshold());
+    }
+
+    /**
+     * Method setEdgeStyle.
+     * @param edge IEdge
+     * @param linkType int
+     * @see net.ggtools.grand.ui.graph.DotGraphCreator#setEdgeStyle(sf.jzgraph.IEdge, int)
+     */
+    @Override
+    protected void setEdgeStyle(final IEdge edge, final int linkType) {
+        final GraphStyleTable.LinkStyle style = getStyles().getLinkStyle(linkType);
+        edge.setAttr(DRAW2DFGCOLOR_ATTR, style.getColor());
+        edge.setAttr(DRAW2DLINEWIDTH_ATTR, style.getLineWidth());
+    }
+
+    /**
+     * Method setVertexSizes.
+     * @param verticesByName Map&lt;String,IVertex&gt;
+     * @see net.ggtools.grand.ui.graph.DotGraphCreator#setVertexSizes(java.util.Map)
+     */
+    @Override
+    protected void setVertexSizes(final Map<String, IVertex> verticesByName) {
+        final FontMetricsCache metrics = FontMetricsCache.getInstance(Application.NODE_FONT);
+        metrics.prefetch(verticesByName.keySet());
+        for (final Entry<String, IVertex> entry : verticesByName.entrySet()) {
+            final IVertex vertex = entry.getValue();
+
+            final Dimension dim = metrics.getTextExtents(entry.getKey());
+            vertex.setAttr(MINWIDTH_ATTR, Math.max(dim.width, MIN_NODE_WIDTH));
+            vertex.setAttr(MINHEIGHT_ATTR, Math.max(dim.height, MIN_NODE_HEIGHT));
+        }
+    }
+
+    /**
+     * Method setVertexStyle.
+     * @param vertex IVertex
+     * @param nodeType int
+     * @see net.ggtools.grand.ui.graph.DotGraphCreator#setVertexStyle(sf.jzgraph.IVertex, int)
+     */
+    @Override
+    protected void setVertexStyle(final IVertex vertex, final int nodeType) {
+        final GraphStyleTable.NodeStyle style = getStyles().getNodeStyle(nodeType);
+        vertex.setAttr(SHAPE_ATTR, style.getShape());
+        vertex.setAttr(DRAW2DFGCOLOR_ATTR, style.getFgColor());
+        vertex.setAttr(DRAW2DFILLCOLOR_ATTR, style.getFillColor());
+        vertex.setAttr(DRAW2DLINEWIDTH_ATTR, style.getLineWidth());
+    }
+
+    /**
+     * @return the style table, read on first call.
+     */
+    private GraphStyleTable getStyles() {
+        if (styles == null) {
+            styles = GraphStyleTable.getInstance();
+        }
+        return styles;
+    }
+
+}
@@ -28,33 +28,120 @@
 
 package net.ggtools.grand.ui.graph;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import net.ggtools.grand.exceptions.GrandException;
-import net.ggtools.grand.filters.FilterChain;
 import net.ggtools.grand.filters.GraphFilter;
+import net.ggtools.grand.filters.NodeRemoverFilter;
 import net.ggtools.grand.graph.Graph;
 import net.ggtools.grand.graph.GraphProducer;
+import net.ggtools.grand.graph.Node;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 /**
- * A wrapper for a FilterChain.
+ * A filter chain caching the result of its intermediate stages.
+ * <p>
+ * Filters work by pruning the graph they get from their producer, so the
+ * graph of a stage cannot be kept as is: the next stage would alter it. For
+ * each stage the model rather keeps a snapshot of the surviving node names.
+ * Any cached stage can then be rebuilt with a single node removal pass over
+ * a fresh graph from the producer instead of replaying the whole chain.
+ * Appending a filter only runs the new stage and removing the last filter
+ * only rebuilds the cached prefix.
+ * </p>
+ * The number of snapshots kept is bounded, the oldest stages being
+ * discarded first.
  *
  * @author Christophe Labouisse
  */
 public class FilterChainModel implements GraphProducer {
 
+    /**
+     * Default maximum number of stage snapshots kept by the model.
+     * (value is {@value #DEFAULT_MAX_SNAPSHOTS})
+     */
+    public static final int DEFAULT_MAX_SNAPSHOTS = 8;
+
     /**
      * Field log.
      */
     private static final Log LOG = LogFactory.getLog(FilterChainModel.class);
 
     /**
-     * Field filterChain.
+     * A producer returning the graph of the previous stage.
      */
-    private final FilterChain filterChain;
+    private static final class StageProducer implements GraphProducer {
+        /**
+         * Field graph.
+         */
+        private Graph graph;
+
+        /**
+         * Constructor for StageProducer.
+         * @param graph Graph
+         */
+        private StageProducer(final Graph graph) {
+            this.graph = graph;
+        }
+
+        /**
+         * Method getGraph.
+         * @return Graph
+         * @see net.ggtools.grand.graph.GraphProducer#getGraph()
+         */
+        public Graph getGraph() {
+            return graph;
+        }
+
+        /**
+         * Drops the reference to the graph so filters do not keep the
+         * intermediate graphs alive.
+         */
+        private void release() {
+            graph = null;
+        }
+    }
+
+    /**
+     * The names of the nodes remaining after a stage.
+     */
+    private static final class StageSnapshot {
+        /**
+         * Number of filters applied to get this stage.
+         */
+        private final int stage;
+
+        /**
+         * Field nodeNames.
+         */
+        private final Set<String> nodeNames;
+
+        /**
+         * Constructor for StageSnapshot.
+         * @param stage int
+         * @param graph Graph
+         */
+        private StageSnapshot(final int stage, final Graph graph) {
+            this.stage = stage;
+            nodeNames = new HashSet<String>();
+            for (final Iterator<Node> iter = graph.getNodes(); iter.hasNext();) {
+                nodeNames.add(iter.next().getName());
+            }
+        }
+    }
+
+    /**
+     * Field filters.
+     */
+    private final List<GraphFilter> filters = new ArrayList<GraphFilter>();
 
     /**
      * Field graph.
@@ -67,47 +154,67 @@ public class FilterChainModel implements GraphProducer {
     @SuppressWarnings("unused")
     private final GraphModel graphModel;
 
+    /**
+     * Field maxSnapshots.
+     */
+    private int maxSnapshots = DEFAULT_MAX_SNAPSHOTS;
+
+    /**
+     * Field producer.
+     */
+    private GraphProducer producer;
+
+    /**
+     * Snapshots of the cached stages sorted by increasing stage.
+     */
+    private final LinkedList<StageSnapshot> snapshots = new LinkedList<StageSnapshot>();
+
     /**
      * Constructor for FilterChainModel.
      * @param graphModel GraphModel
      */
     public FilterChainModel(final GraphModel graphModel) {
-        filterChain = new FilterChain();
         this.graphModel = graphModel;
-        filterChain.setProducer(graphModel);
+        producer = graphModel;
     }
 
     /**
+     * Adds a filter at the head of the chain. As all the stages are changed
+     * the whole chain has to be replayed.
+     *
      * @param newFilter GraphFilter
      */
     public final void addFilterFirst(final GraphFilter newFilter) {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Adding new head filter " + newFilter);
         }
-        filterChain.addFilterFirst(newFilter);
+        filters.add(0, newFilter);
         filterGraph();
     }
 
     /**
+     * Adds a filter at the tail of the chain, only the new stage will be run.
+     *
      * @param newFilter GraphFilter
      */
     public final void addFilterLast(final GraphFilter newFilter) {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Adding new tail filter " + newFilter);
         }
-        filterChain.addFilterLast(newFilter);
-        filterGraph();
+        final int previousStage = filters.size();
+        filters.add(newFilter);
+        updateGraph(previousStage);
     }
 
     /**
      *
      */
     public final void clearFilters() {
-        if (filterChain.getFilterList().size() > 0) {
+        if (filters.size() > 0) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Clearing filters");
             }
-            filterChain.clearFilters();
+            filters.clear();
             filterGraph();
         } else if (LOG.isDebugEnabled()) {
             LOG.debug("Empty filter chain, not clearing");
@@ -118,7 +225,7 @@ public class FilterChainModel implements GraphProducer {
      * @return List&lt;GraphFilter&gt;
      */
     public final List<GraphFilter> getFilterList() {
-        return filterChain.getFilterList();
+        return Collections.unmodifiableList(filters);
     }
 
     /**
@@ -130,26 +237,192 @@ public class FilterChainModel implements GraphProducer {
     }
 
     /**
-     * Method filterGraph.
+     * @return Returns the maximum number of stage snapshots.
+     */
+    public final int getMaxSnapshots() {
+        return maxSnapshots;
+    }
+
+    /**
+     * Removes the last filter of the chain, falling back to the cached
+     * result of the previous stage.
+     */
+    public final void removeLastFilter() {
+        if (filters.isEmpty()) {
+            LOG.debug("Empty filter chain, nothing to remove");
+            return;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Removing tail filter " + filters.get(filters.size() - 1));
+        }
+        filters.remove(filters.size() - 1);
+        dropSnapshotsAfter(filters.size());
+        updateGraph(filters.size());
+    }
+
+    /**
+     * Filter the producer's graph from scratch. To be called when the
+     * producer's graph has changed.
      */
     public final void filterGraph() {
+        snapshots.clear();
+        updateGraph(0);
+    }
+
+    /**
+     * Sets the maximum number of stage snapshots kept by the model.
+     * @param maxSnapshots int
+     */
+    public final void setMaxSnapshots(final int maxSnapshots) {
+        this.maxSnapshots = Math.max(0, maxSnapshots);
+        trimSnapshots();
+    }
+
+    /**
+     * @param producer GraphProducer
+     */
+    public final void setProducer(final GraphProducer producer) {
+        this.producer = producer;
+        snapshots.clear();
+    }
+
+    /**
+     * Runs the chain from a given stage and updates the current graph.
+     *
+     * @param fromStage
+     *            the number of filters whose result can be taken from the
+     *            cache.
+     */
+    private void updateGraph(final int fromStage) {
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Start filtering, filter chain size is: "
-                    + filterChain.getFilterList().size());
+            LOG.debug("Start filtering from stage " + fromStage
+                    + ", filter chain size is: " + filters.size());
         }
         try {
-            graph = filterChain.getGraph();
+            graph = runStages(fromStage, filters.size());
         } catch (final GrandException e) {
             // TODO proper exception handling.
             LOG.error("Cannot filter graph", e);
+            snapshots.clear();
             graph = null;
         }
     }
 
     /**
-     * @param producer GraphProducer
+     * Computes the graph for a stage starting from the closest cached stage.
+     *
+     * @param fromStage
+     *            the stage to start from.
+     * @param toStage
+     *            the stage to compute.
+     * @return the graph after applying the first <code>toStage</code>
+     *         filters.
+     * @throws GrandException
+     *             if a filter fails.
      */
-    public final void setProducer(final GraphProducer producer) {
-        filterChain.setProducer(producer);
+    private Graph runStages(final int fromStage, final int toStage)
+            throws GrandException {
+        StageSnapshot snapshot = null;
+        for (final StageSnapshot current : snapshots) {
+            if (current.stage > fromStage) {
+                break;
+            }
+            snapshot = current;
+        }
+
+        Graph current;
+        int stage;
+        if (snapshot == null) {
+            current = producer.getGraph();
+            stage = 0;
+        } else {
+            current = restoreSnapshot(snapshot);
+            stage = snapshot.stage;
+        }
+
+        for (; stage < toStage && current != null; stage++) {
+            final GraphFilter filter = filters.get(stage);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Running stage " + (stage + 1) + ": " + filter);
+            }
+            final StageProducer stageProducer = new StageProducer(current);
+            filter.setProducer(stageProducer);
+            try {
+                current = filter.getGraph();
+            } finally {
+                stageProducer.release();
+            }
+            if (current != null) {
+                addSnapshot(new StageSnapshot(stage + 1, current));
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Rebuilds the graph of a cached stage by removing the nodes absent from
+     * the snapshot from a fresh producer's graph.
+     *
+     * @param snapshot StageSnapshot
+     * @return Graph
+     * @throws GrandException
+     *             if the producer or the filter fails.
+     */
+    private Graph restoreSnapshot(final StageSnapshot snapshot)
+            throws GrandException {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Restoring cached stage " + snapshot.stage);
+        }
+        final Graph producersGraph = producer.getGraph();
+        if (producersGraph == null) {
+            return null;
+        }
+        final List<String> removedNodes = new LinkedList<String>();
+        for (final Iterator<Node> iter = producersGraph.getNodes(); iter.hasNext();) {
+            final String name = iter.next().getName();
+            if (!snapshot.nodeNames.contains(name)) {
+                removedNodes.add(name);
+            }
+        }
+        if (removedNodes.isEmpty()) {
+            return producersGraph;
+        }
+        final GraphFilter remover = new NodeRemoverFilter(removedNodes);
+        final StageProducer stageProducer = new StageProducer(producersGraph);
+        remover.setProducer(stageProducer);
+        try {
+            return remover.getGraph();
+        } finally {
+            stageProducer.release();
+        }
+    }
+
+    /**
+     * Adds a snapshot replacing any existing one for the same stage.
+     * @param snapshot StageSnapshot
+     */
+    private void addSnapshot(final StageSnapshot snapshot) {
+        dropSnapshotsAfter(snapshot.stage - 1);
+        snapshots.addLast(snapshot);
+        trimSnapshots();
+    }
+
+    /**
+     * Removes the snapshots of the stages after a given one.
+     * @param stage int
+     */
+    private void dropSnapshotsAfter(final int stage) {
+        while (!snapshots.isEmpty() && (snapshots.getLast().stage > stage)) {
+            snapshots.removeLast();
+        }
+    }
+
+    /**
+     * Discards the oldest snapshots until the bound is met.
+     */
+    private void trimSnapshots() {
+        while (snapshots.size() > maxSnapshots) {
+            snapshots.removeFirst();
+        }
     }
 }
@@ -0,0 +1,220 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ggtools.grand.ui.Application;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.draw2d.geometry.Dimension;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Caches the extents of texts in a registry font so they can be computed
+ * outside the display thread.
+ * <p>
+ * Each text is measured as a whole, so kerning and ligatures are taken into
+ * account, once on the display thread. Callers should
+ * {@link #prefetch(Collection)} the texts they will measure so the missing
+ * ones are all measured with a single <code>syncExec</code>. The cache is
+ * cleared when the font changes in the application's font registry; a
+ * measurement started before the change is then returned to its caller but
+ * not stored.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+public final class FontMetricsCache implements IPropertyChangeListener {
+
+    /**
+     * Field instances.
+     */
+    private static final Map<String, FontMetricsCache> INSTANCES =
+            new HashMap<String, FontMetricsCache>();
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(FontMetricsCache.class);
+
+    /**
+     * Field extents, the measured texts.
+     */
+    private final Map<String, Dimension> extents = new HashMap<String, Dimension>();
+
+    /**
+     * Field generation, incremented each time the cache is cleared.
+     */
+    private long generation = 0;
+
+    /**
+     * Field symbolicName.
+     */
+    private final String symbolicName;
+
+    /**
+     * Constructor for FontMetricsCache.
+     * @param symbolicName String
+     */
+    private FontMetricsCache(final String symbolicName) {
+        this.symbolicName = symbolicName;
+    }
+
+    /**
+     * Returns the cache for a font of the application's registry.
+     *
+     * @param symbolicName
+     *            the symbolic name of the font.
+     * @return FontMetricsCache
+     */
+    public static FontMetricsCache getInstance(final String symbolicName) {
+        synchronized (INSTANCES) {
+            FontMetricsCache cache = INSTANCES.get(symbolicName);
+            if (cache == null) {
+                cache = new FontMetricsCache(symbolicName);
+                Application.getInstance().getFontRegistry().addListener(cache);
+                INSTANCES.put(symbolicName, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Gets the extents of a text, measuring it on the display thread if it
+     * is not in the cache.
+     *
+     * @param text
+     *            a single line text.
+     * @return Dimension
+     */
+    public Dimension getTextExtents(final String text) {
+        Dimension dim;
+        synchronized (this) {
+            dim = extents.get(text);
+        }
+        if (dim == null) {
+            dim = measure(Collections.singletonList(text)).get(text);
+        }
+        return dim.getCopy();
+    }
+
+    /**
+     * Clears the cache.
+     */
+    public synchronized void invalidate() {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Clearing metrics for " + symbolicName);
+        }
+        extents.clear();
+        generation++;
+    }
+
+    /**
+     * Measures the texts not already in the cache.
+     *
+     * @param texts
+     *            the texts to be measured later.
+     */
+    public void prefetch(final Collection<String> texts) {
+        final List<String> missing = new ArrayList<String>();
+        synchronized (this) {
+            for (final String text : texts) {
+                if (!extents.containsKey(text)) {
+                    missing.add(text);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            measure(missing);
+        }
+    }
+
+    /**
+     * Method propertyChange.
+     * @param event PropertyChangeEvent
+     * @see org.eclipse.jface.util.IPropertyChangeListener#propertyChange(org.eclipse.jface.util.PropertyChangeEvent)
+     */
+    public void propertyChange(final PropertyChangeEvent event) {
+        if (symbolicName.equals(event.getProperty())) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Measures some texts on the display thread and stores their extents
+     * unless the cache was cleared meanwhile.
+     *
+     * @param texts
+     *            the texts to measure.
+     * @return the extents of the texts.
+     */
+    private Map<String, Dimension> measure(final Collection<String> texts) {
+        final long startGeneration;
+        synchronized (this) {
+            startGeneration = generation;
+        }
+
+        final Map<String, Dimension> measured = new HashMap<String, Dimension>();
+        Display.getDefault().syncExec(new Runnable() {
+            public void run() {
+                final Font font = Application.getInstance().getFont(symbolicName);
+                final GC gc = new GC(Display.getCurrent());
+                try {
+                    gc.setFont(font);
+                    for (final String text : texts) {
+                        final Point size = gc.textExtent(text);
+                        measured.put(text, new Dimension(size.x, size.y));
+                    }
+                } finally {
+                    gc.dispose();
+                }
+            }
+        });
+
+        synchronized (this) {
+            // The font changed while measuring: the extents are obsolete.
+            if (generation == startGeneration) {
+                extents.putAll(measured);
+            }
+        }
+        return measured;
+    }
+}
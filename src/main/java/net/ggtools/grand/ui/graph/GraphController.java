@@ -29,9 +29,16 @@
 package net.ggtools.grand.ui.graph;
 
 import java.io.File;
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
@@ -39,6 +46,8 @@ import net.ggtools.grand.ant.AntTargetNode;
 import net.ggtools.grand.exceptions.GrandException;
 import net.ggtools.grand.filters.GraphFilter;
 import net.ggtools.grand.graph.Graph;
+import net.ggtools.grand.graph.Link;
+import net.ggtools.grand.graph.Node;
 import net.ggtools.grand.ui.Application;
 import net.ggtools.grand.ui.GrandUiPrefStore;
 import net.ggtools.grand.ui.RecentFilesManager;
@@ -47,30 +56,29 @@ import net.ggtools.grand.ui.event.EventManager;
 import net.ggtools.grand.ui.graph.draw2d.Draw2dGraph;
 import net.ggtools.grand.ui.graph.draw2d.Draw2dGraphRenderer;
 import net.ggtools.grand.ui.graph.draw2d.Draw2dNode;
+import net.ggtools.grand.ui.image.PngStreamWriter;
 import net.ggtools.grand.ui.prefs.PreferenceKeys;
 import net.ggtools.grand.ui.widgets.ExceptionDialog;
 import net.ggtools.grand.ui.widgets.GraphWindow;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.tools.ant.BuildException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.draw2d.Graphics;
 import org.eclipse.draw2d.PrintFigureOperation;
 import org.eclipse.draw2d.SWTGraphics;
 import org.eclipse.draw2d.geometry.Rectangle;
-import org.eclipse.jface.operation.IRunnableWithProgress;
-import org.eclipse.jface.operation.ModalContext;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.jface.viewers.ILabelProvider;
 import org.eclipse.jface.viewers.IStructuredContentProvider;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.printing.Printer;
 import org.eclipse.swt.widgets.Display;
 
 import sf.jzgraph.IDotGraph;
-import sf.jzgraph.dot.impl.Dot;
 
 /**
  * A class responsible of interfacing the Grand graph objects to the GrandUi
@@ -85,6 +93,13 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      */
     private static final Log LOG = LogFactory.getLog(GraphController.class);
 
+    /**
+     * Field STRIPE_PIXELS, the maximum number of pixels painted at once
+     * when exporting a graph by stripes.
+     * (value is {@value #STRIPE_PIXELS})
+     */
+    private static final int STRIPE_PIXELS = 1024 * 1024;
+
     // FIXME ok that's bad, it'll probably have to go to the Prefs API.
     /**
      * Field printMode.
@@ -109,18 +124,17 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
     /**
      * Field busRoutingEnabled.
      */
-    private boolean busRoutingEnabled;
+    private volatile boolean busRoutingEnabled;
 
     /**
-     * If <code>true</code> the filter chain will be cleared when the next
-     * graph is loaded.
+     * Field defaultProgressMonitor.
      */
-    private boolean clearFiltersOnNextLoad;
+    private volatile IProgressMonitor defaultProgressMonitor;
 
     /**
-     * Field defaultProgressMonitor.
+     * Field disposed.
      */
-    private IProgressMonitor defaultProgressMonitor;
+    private boolean disposed = false;
 
     /**
      * Field displayer.
@@ -142,6 +156,11 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      */
     private Graph graph;
 
+    /**
+     * Field graphStructure, the structure of the displayed graph.
+     */
+    private volatile List<String> graphStructure = Collections.emptyList();
+
     /**
      * Field graphEventManager.
      */
@@ -162,21 +181,37 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      */
     private Dispatcher parameterChangedEvent;
 
+    /**
+     * Field pipeline.
+     */
+    private final GraphPipeline pipeline;
+
     /**
      * Field renderer.
      */
     private Draw2dGraphRenderer renderer;
 
     /**
-     * Field selectedNodes.
+     * Field selectedNodes, an immutable snapshot replaced on each change.
      */
-    private final Set<Draw2dNode> selectedNodes = new HashSet<Draw2dNode>();
+    private volatile Set<Draw2dNode> selectedNodes = Collections.emptySet();
+
+    /**
+     * Field reloadedNodes, the nodes of a graph reloaded without being
+     * rendered again, keyed by name.
+     */
+    private volatile Map<String, Node> reloadedNodes = Collections.emptyMap();
 
     /**
      * Field selectionChangedDispatcher.
      */
     private Dispatcher selectionChangedDispatcher;
 
+    /**
+     * Field watchListener.
+     */
+    private final BuildFileWatcher.Listener watchListener;
+
     /**
      * Field window.
      */
@@ -201,7 +236,7 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
 
         graphEventManager = new EventManager("Graph Event");
         try {
-            selectionChangedDispatcher = graphEventManager.createDispatcher(GraphListener.class
+            selectionChangedDispatcher = graphEventManager.createCoalescingDispatcher(GraphListener.class
                     .getDeclaredMethod("selectionChanged", Collection.class));
             parameterChangedEvent = graphEventManager.createDispatcher(GraphListener.class
                     .getDeclaredMethod("parameterChanged", GraphController.class));
@@ -213,7 +248,18 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
             throw new RuntimeException("Cannot instantiate GraphController", e);
         }
 
-        clearFiltersOnNextLoad = true; // Conservative.
+        pipeline = new GraphPipeline("Graph pipeline", new GraphPipeline.Renderer() {
+            public void render(final GraphPipeline.PipelineMonitor monitor) {
+                renderFilteredGraph(monitor);
+            }
+        });
+
+        watchListener = new BuildFileWatcher.Listener() {
+            public void filesChanged(final Set<File> changedFiles) {
+                autoReloadGraph(changedFiles);
+            }
+        };
+
         final GrandUiPrefStore preferenceStore = Application.getInstance().getPreferenceStore();
         busRoutingEnabled = preferenceStore.getBoolean(PreferenceKeys.GRAPH_BUS_ENABLED_DEFAULT);
         preferenceStore.addPropertyChangeListener(this);
@@ -223,26 +269,19 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      * @param filter GraphFilter
      */
     public final void addFilter(final GraphFilter filter) {
-        final IProgressMonitor progressMonitor = defaultProgressMonitor;
+        pipeline.submit(new GraphPipeline.Request("Adding filter", 1, defaultProgressMonitor) {
+            @Override
+            void failed(final Throwable exception) {
+                reportError("Cannot add filter", exception);
+            }
 
-        try {
-            ModalContext.run(new IRunnableWithProgress() {
-                public void run(final IProgressMonitor monitor)
-                        throws InvocationTargetException, InterruptedException {
-                    LOG.info("Adding filter " + filter);
-                    progressMonitor.beginTask("Adding filter", 4);
-                    filterChain.addFilterLast(filter);
-                    progressMonitor.worked(1);
-                    renderFilteredGraph(progressMonitor);
-                }
-            }, true, progressMonitor, Display.getCurrent());
-        } catch (final InvocationTargetException e) {
-            reportError("Cannot add filter", e);
-        } catch (final InterruptedException e) {
-            reportError("Cannot add filter", e);
-        } finally {
-            progressMonitor.done();
-        }
+            @Override
+            void update(final IProgressMonitor progressMonitor) {
+                LOG.info("Adding filter " + filter);
+                filterChain.addFilterLast(filter);
+                progressMonitor.worked(1);
+            }
+        });
     }
 
     /**
@@ -260,27 +299,19 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      * Method clearFilters.
      */
     public final void clearFilters() {
-        final IProgressMonitor progressMonitor = defaultProgressMonitor;
-
-        try {
-            ModalContext.run(new IRunnableWithProgress() {
-                public void run(final IProgressMonitor monitor)
-                        throws InvocationTargetException, InterruptedException {
-                    LOG.info("Clearing filters");
-                    progressMonitor.beginTask("Clearing filters", 4);
-                    filterChain.clearFilters();
-                    progressMonitor.worked(1);
-                    renderFilteredGraph(progressMonitor);
-                }
-            }, true, progressMonitor, Display.getCurrent());
-        } catch (final InvocationTargetException e) {
-            reportError("Cannot clear filters", e);
-        } catch (final InterruptedException e) {
-            reportError("Cannot clear filters", e);
-        } finally {
-            progressMonitor.done();
-        }
+        pipeline.submit(new GraphPipeline.Request("Clearing filters", 1, defaultProgressMonitor) {
+            @Override
+            void failed(final Throwable exception) {
+                reportError("Cannot clear filters", exception);
+            }
 
+            @Override
+            void update(final IProgressMonitor progressMonitor) {
+                LOG.info("Clearing filters");
+                filterChain.clearFilters();
+                progressMonitor.worked(1);
+            }
+        });
     }
 
     /**
@@ -289,12 +320,7 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      */
     public final void deselectAllNodes() {
         if (!selectedNodes.isEmpty()) {
-            for (final Draw2dNode currentNode : selectedNodes) {
-                currentNode.setSelected(false);
-            }
-            selectedNodes.clear();
-            displayer.setSourceText("");
-            selectionChangedDispatcher.dispatch(selectedNodes);
+            changeSelection(new LinkedHashSet<Draw2dNode>());
         }
     }
 
@@ -306,29 +332,65 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
     public final void deselectNode(final Draw2dNode node) {
         LOG.debug("Deselect node " + node);
         if (node.isSelected()) {
-            selectedNodes.remove(node);
-            node.setSelected(false);
-            selectionChangedDispatcher.dispatch(selectedNodes);
+            deselectNodes(Collections.singleton(node));
+        }
+    }
+
+    /**
+     * Method deselectNodes.
+     * @param nodes Collection&lt;Draw2dNode&gt;
+     * @see net.ggtools.grand.ui.graph.SelectionManager#deselectNodes(java.util.Collection)
+     */
+    public final void deselectNodes(final Collection<Draw2dNode> nodes) {
+        final Set<Draw2dNode> newSelection = new LinkedHashSet<Draw2dNode>(selectedNodes);
+        if (newSelection.removeAll(nodes)) {
+            changeSelection(newSelection);
         }
     }
 
+    /**
+     * Releases the controller once its graph is no longer displayed: the
+     * pending requests are abandoned, the build files are no longer watched
+     * and no more events are sent or received. Calling this method several
+     * times has no effect.
+     */
+    public final synchronized void dispose() {
+        if (disposed) {
+            return;
+        }
+        disposed = true;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Disposing controller");
+        }
+        pipeline.shutdown();
+        BuildFileWatcher.getInstance().unwatch(watchListener);
+        graphEventManager.clear();
+        Application.getInstance().getPreferenceStore().removePropertyChangeListener(this);
+    }
+
     /**
      * Enable or disable the use of the bus routing algorithm for graph layout.
      *
      * @param enabled boolean
      */
     public final void enableBusRouting(final boolean enabled) {
-        final IProgressMonitor progressMonitor = defaultProgressMonitor;
-
         if (busRoutingEnabled != enabled) {
             if (LOG.isInfoEnabled()) {
                 LOG.info("Using bus routing set to " + enabled);
             }
             busRoutingEnabled = enabled;
             parameterChangedEvent.dispatch(this);
-            progressMonitor.beginTask("Rerouting graph", 3);
-            renderFilteredGraph(progressMonitor);
-            progressMonitor.done();
+            pipeline.submit(new GraphPipeline.Request("Rerouting graph", 0,
+                    defaultProgressMonitor) {
+                @Override
+                void failed(final Throwable exception) {
+                    reportError("Cannot reroute graph", exception);
+                }
+
+                @Override
+                void update(final IProgressMonitor progressMonitor) {
+                }
+            });
         }
     }
 
@@ -421,6 +483,13 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
         return busRoutingEnabled;
     }
 
+    /**
+     * @return <code>true</code> if the controller has been disposed.
+     */
+    public final synchronized boolean isDisposed() {
+        return disposed;
+    }
+
     /**
      * Opens a new graph.
      *
@@ -429,39 +498,52 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      * @param properties
      *            a set of properties to be preset when opening the graph or
      *            <code>null</code> if no properties should be preset.
+     * @return <code>false</code> if the graph could not be opened, the
+     *         controller is then stopped.
      */
-    public final void openFile(final File file, final Properties properties) {
-        final IProgressMonitor progressMonitor = defaultProgressMonitor;
-
+    public final boolean openFile(final File file, final Properties properties) {
         if (LOG.isInfoEnabled()) {
             LOG.info("Opening " + file);
         }
 
-        progressMonitor.beginTask("Opening new graph", 5);
-        clearFiltersOnNextLoad = true;
-
-        try {
-            progressMonitor.subTask("Loading ant file");
-            model.openFile(file, properties);
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Model loaded graph");
+        final GraphPipeline.Request request = new GraphPipeline.Request("Opening new graph", 2,
+                defaultProgressMonitor) {
+            @Override
+            void failed(final Throwable exception) {
+                if (isDisposed()) {
+                    LOG.info("Graph closed while opening " + file, exception);
+                } else {
+                    reportError("Cannot open graph", exception);
+                }
+                stopController();
             }
-            progressMonitor.worked(1);
 
-            filterAndRenderGraph(progressMonitor);
+            @Override
+            void update(final IProgressMonitor progressMonitor) throws GrandException {
+                progressMonitor.subTask("Loading ant file");
+                model.openFile(file, properties);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Model loaded graph");
+                }
+                progressMonitor.worked(1);
+
+                filterGraph(progressMonitor, true);
+                RecentFilesManager.getInstance().addNewFile(file, properties);
+                updateWatchedFiles();
+            }
+        };
+        pipeline.submit(request);
+        try {
+            request.await();
             if (LOG.isInfoEnabled()) {
                 LOG.info("Graph loaded & rendered");
             }
-            RecentFilesManager.getInstance().addNewFile(file, properties);
-        } catch (final GrandException e) {
-            reportError("Cannot open graph", e);
-            stopController();
-        } catch (final BuildException e) {
-            reportError("Cannot open graph", e);
-            stopController();
-        } finally {
-            progressMonitor.done();
+        } catch (final InterruptedException e) {
+            LOG.warn("Interrupted while opening " + file, e);
+            Thread.currentThread().interrupt();
         }
+        // The model is dropped when the controller is stopped on failure.
+        return (model != null) && !isDisposed();
     }
 
     /**
@@ -470,8 +552,7 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      * @param node Draw2dNode
      */
     public final void openNodeFile(final Draw2dNode node) {
-        final AntTargetNode targetNode =
-                (AntTargetNode) node.getVertex().getData();
+        final AntTargetNode targetNode = getTargetNode(node);
         final String buildFile = targetNode.getBuildFile();
         if ((buildFile != null) && (buildFile.length() > 0)) {
             String targetName = targetNode.getName();
@@ -496,7 +577,12 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
         final PrintFigureOperation printOp =
                 new PrintFigureOperation(printer, figure);
         printOp.setPrintMode(printMode);
-        printOp.run("Grand:" + graph.getName());
+        figure.setDirectPainting(true);
+        try {
+            printOp.run("Grand:" + graph.getName());
+        } finally {
+            figure.setDirectPainting(false);
+        }
     }
 
     /**
@@ -508,7 +594,21 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
         if (LOG.isDebugEnabled()) {
             LOG.debug("Get PropertyChangeEvent " + event.getProperty());
         }
-        if (event.getProperty().startsWith(PreferenceKeys.GRAPH_PREFIX)) {
+        // The table invalidates itself too but its listener may be called
+        // after the refresh has been submitted.
+        if (GraphStyleTable.isStyleProperty(event.getProperty())) {
+            GraphStyleTable.invalidate();
+        }
+        if (isFigureProperty(event.getProperty())) {
+            // Only the painting changes, no need to render the graph again.
+            Display.getDefault().asyncExec(new Runnable() {
+                public void run() {
+                    if ((figure != null) && !isDisposed()) {
+                        applyFigurePreferences();
+                    }
+                }
+            });
+        } else if (event.getProperty().startsWith(PreferenceKeys.GRAPH_PREFIX)) {
             refreshGraph();
         }
     }
@@ -517,25 +617,20 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      * Refreshing (i.e.: rerender) the current graph.
      */
     public final void refreshGraph() {
-        final IProgressMonitor progressMonitor = defaultProgressMonitor;
-
         // FIXME check that there is a graph.
         if (LOG.isInfoEnabled()) {
             LOG.info("Refreshing current graph");
         }
-        progressMonitor.beginTask("Refreshing graph", 3);
-        clearFiltersOnNextLoad = false;
+        pipeline.submit(new GraphPipeline.Request("Refreshing graph", 0, defaultProgressMonitor) {
+            @Override
+            void failed(final Throwable exception) {
+                reportError("Cannot refresh graph", exception);
+            }
 
-        try {
-            renderFilteredGraph(progressMonitor);
-            if (LOG.isInfoEnabled()) {
-                LOG.info("Graph refreshed");
+            @Override
+            void update(final IProgressMonitor progressMonitor) {
             }
-        } catch (final BuildException e) {
-            reportError("Cannot open graph", e);
-        } finally {
-            progressMonitor.done();
-        }
+        });
     }
 
     /**
@@ -550,35 +645,50 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      * @param properties Properties
      */
     public final void reloadGraph(final Properties properties) {
-        final IProgressMonitor progressMonitor = defaultProgressMonitor;
-
         // FIXME check that there is a model.
         if (LOG.isInfoEnabled()) {
             LOG.info("Reloading current graph");
         }
-        progressMonitor.beginTask("Reloading graph", 5);
-        clearFiltersOnNextLoad = false;
+        pipeline.submit(new GraphPipeline.Request("Reloading graph", 2, defaultProgressMonitor) {
+            @Override
+            void failed(final Throwable exception) {
+                reportError("Cannot reload graph", exception);
+            }
 
-        try {
-            model.reload(properties);
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Model reloaded graph");
+            @Override
+            void update(final IProgressMonitor progressMonitor) throws GrandException {
+                model.reload(properties);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Model reloaded graph");
+                }
+                progressMonitor.worked(1);
+
+                filterGraph(progressMonitor, false);
+                RecentFilesManager.getInstance().updatePropertiesFor(model.getLastLoadedFile(),
+                        properties);
+                updateWatchedFiles();
             }
-            progressMonitor.worked(1);
+        });
+    }
 
-            filterAndRenderGraph(progressMonitor);
-            if (LOG.isInfoEnabled()) {
-                LOG.info("Graph reloaded");
+    /**
+     * Removes the last filter added, the graph before this filter is taken
+     * from the filter chain's snapshots when available.
+     */
+    public final void removeLastFilter() {
+        pipeline.submit(new GraphPipeline.Request("Removing filter", 1, defaultProgressMonitor) {
+            @Override
+            void failed(final Throwable exception) {
+                reportError("Cannot remove filter", exception);
             }
-            RecentFilesManager.getInstance().updatePropertiesFor(model.getLastLoadedFile(),
-                    properties);
-        } catch (final GrandException e) {
-            reportError("Cannot reload graph", e);
-        } catch (final BuildException e) {
-            reportError("Cannot open graph", e);
-        } finally {
-            progressMonitor.done();
-        }
+
+            @Override
+            void update(final IProgressMonitor progressMonitor) {
+                LOG.info("Removing last filter");
+                filterChain.removeLastFilter();
+                progressMonitor.worked(1);
+            }
+        });
     }
 
     /**
@@ -601,13 +711,7 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
             LOG.trace("Select node " + node);
         }
         if (!node.isSelected()) {
-            if (!addToSelection) {
-                deselectAllNodes();
-            }
-            selectedNodes.add(node);
-            node.setSelected(true);
-            displayer.setRichSource(((AntTargetNode) node.getVertex().getData()).getRichSource());
-            selectionChangedDispatcher.dispatch(selectedNodes);
+            selectNodes(Collections.singleton(node), addToSelection);
         }
     }
 
@@ -621,6 +725,35 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
         figure.selectNodeByName(nodeName, addToSelection);
     }
 
+    /**
+     * Method selectNodes.
+     * @param nodes Collection&lt;Draw2dNode&gt;
+     * @param addToSelection boolean
+     * @see net.ggtools.grand.ui.graph.SelectionManager#selectNodes(java.util.Collection, boolean)
+     */
+    public final void selectNodes(final Collection<Draw2dNode> nodes,
+            final boolean addToSelection) {
+        final Set<Draw2dNode> newSelection;
+        if (addToSelection) {
+            newSelection = new LinkedHashSet<Draw2dNode>(selectedNodes);
+        } else {
+            newSelection = new LinkedHashSet<Draw2dNode>();
+        }
+        newSelection.addAll(nodes);
+        changeSelection(newSelection);
+    }
+
+    /**
+     * Method selectNodesByName.
+     * @param nodeNames Collection&lt;String&gt;
+     * @param addToSelection boolean
+     * @see net.ggtools.grand.ui.graph.SelectionManager#selectNodesByName(java.util.Collection, boolean)
+     */
+    public final void selectNodesByName(final Collection<String> nodeNames,
+            final boolean addToSelection) {
+        figure.selectNodesByName(nodeNames, addToSelection);
+    }
+
     /**
      * @param progressMonitor
      *            The progressMonitor to set.
@@ -630,12 +763,188 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
     }
 
     /**
-     * Filter the current graph of the model and render it.
+     * Applies the preferences used to paint the figure: the level of detail
+     * zooms and the tile cache size. Must be called from the UI thread.
+     */
+    private void applyFigurePreferences() {
+        final GrandUiPrefStore preferenceStore = Application.getInstance().getPreferenceStore();
+        figure.setLevelOfDetailZooms(
+                preferenceStore.getInt(PreferenceKeys.GRAPH_LOD_DETAIL_ZOOM) / 100f,
+                preferenceStore.getInt(PreferenceKeys.GRAPH_LOD_SHAPE_ZOOM) / 100f);
+        figure.setTileCacheBudget(
+                preferenceStore.getInt(PreferenceKeys.GRAPH_TILE_CACHE_SIZE) * 1024L * 1024L);
+    }
+
+    /**
+     * Reloads the graph after some of its files changed. If the targets and
+     * links are unchanged and the preferences allow it, the current layout
+     * is kept and only the nodes used for the source text are replaced.
+     *
+     * @param changedFiles
+     *            the changed files.
+     */
+    private void autoReloadGraph(final Set<File> changedFiles) {
+        final GrandUiPrefStore preferenceStore = Application.getInstance().getPreferenceStore();
+        if (!preferenceStore.getBoolean(PreferenceKeys.AUTO_RELOAD_PREFS_KEY)) {
+            return;
+        }
+        final boolean keepLayout =
+                preferenceStore.getBoolean(PreferenceKeys.AUTO_RELOAD_KEEP_LAYOUT_PREFS_KEY);
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Reloading graph after changes in " + changedFiles);
+        }
+        pipeline.submit(new GraphPipeline.Request("Reloading changed graph", 2,
+                defaultProgressMonitor) {
+            /**
+             * Field unchanged, set when the structure of the graph did not
+             * change.
+             */
+            private boolean unchanged = false;
+
+            @Override
+            void failed(final Throwable exception) {
+                // Files may be saved while being edited.
+                LOG.warn("Cannot reload changed graph", exception);
+            }
+
+            @Override
+            boolean needsRendering() {
+                return !unchanged;
+            }
+
+            @Override
+            void update(final IProgressMonitor progressMonitor) throws GrandException {
+                model.reload(null);
+                updateWatchedFiles();
+                progressMonitor.worked(1);
+
+                filterGraph(progressMonitor, false);
+                final Graph filteredGraph = filterChain.getGraph();
+                if (keepLayout && getStructure(filteredGraph).equals(graphStructure)) {
+                    unchanged = true;
+                    publishReloadedNodes(filteredGraph, progressMonitor);
+                }
+            }
+        });
+    }
+
+    /**
+     * Tells if a preference only changes the painting of the figure.
+     *
+     * @param key
+     *            the preference key.
+     * @return <code>true</code> if the preference is applied by
+     *         {@link #applyFigurePreferences()}.
+     */
+    private static boolean isFigureProperty(final String key) {
+        return PreferenceKeys.GRAPH_LOD_DETAIL_ZOOM.equals(key)
+                || PreferenceKeys.GRAPH_LOD_SHAPE_ZOOM.equals(key)
+                || PreferenceKeys.GRAPH_TILE_CACHE_SIZE.equals(key);
+    }
+
+    /**
+     * Returns the node to use for a figure, taking into account a graph
+     * reloaded without being rendered.
+     *
+     * @param node
+     *            the node figure.
+     * @return AntTargetNode
+     */
+    private AntTargetNode getTargetNode(final Draw2dNode node) {
+        final Node reloaded = reloadedNodes.get(node.getName());
+        if (reloaded != null) {
+            return (AntTargetNode) reloaded;
+        }
+        return (AntTargetNode) node.getVertex().getData();
+    }
+
+    /**
+     * Computes what a graph's layout depends on: the nodes with their type
+     * and the links with their type, in the order they are laid out.
+     *
+     * @param filteredGraph
+     *            the graph, may be <code>null</code>.
+     * @return List&lt;String&gt;
+     */
+    private static List<String> getStructure(final Graph filteredGraph) {
+        final List<String> structure = new ArrayList<String>();
+        if (filteredGraph == null) {
+            return structure;
+        }
+        final Node startNode = filteredGraph.getStartNode();
+        if (startNode != null) {
+            structure.add("start:" + startNode.getName());
+        }
+        for (final Iterator<Node> iter = filteredGraph.getNodes(); iter.hasNext();) {
+            final Node node = iter.next();
+            structure.add("node:" + node.getName() + ":"
+                    + node.hasAttributes(Node.ATTR_MAIN_NODE) + ":"
+                    + node.hasAttributes(Node.ATTR_MISSING_NODE));
+            for (final Link link : node.getLinks()) {
+                structure.add("link:" + link.getStartNode().getName() + ":"
+                        + link.getEndNode().getName() + ":" + link.getClass().getName() + ":"
+                        + link.hasAttributes(Link.ATTR_WEAK_LINK));
+            }
+        }
+        return structure;
+    }
+
+    /**
+     * Publishes a reloaded graph whose structure did not change: the
+     * figure is kept and the source text of the selection is refreshed.
+     *
+     * @param filteredGraph
+     *            the reloaded graph.
+     * @param progressMonitor
+     *            the monitor of the request.
+     */
+    private void publishReloadedNodes(final Graph filteredGraph,
+            final IProgressMonitor progressMonitor) {
+        final Map<String, Node> nodes = new HashMap<String, Node>();
+        for (final Iterator<Node> iter = filteredGraph.getNodes(); iter.hasNext();) {
+            final Node node = iter.next();
+            nodes.put(node.getName(), node);
+        }
+        Display.getDefault().syncExec(new Runnable() {
+            public void run() {
+                if (progressMonitor.isCanceled() || (figure == null)) {
+                    return;
+                }
+                graph = filteredGraph;
+                nodeContentProvider.setGraph(filteredGraph);
+                reloadedNodes = nodes;
+                Draw2dNode lastSelected = null;
+                for (final Draw2dNode node : selectedNodes) {
+                    lastSelected = node;
+                }
+                if (lastSelected != null) {
+                    displayer.setRichSource(getTargetNode(lastSelected).getRichSource());
+                }
+            }
+        });
+    }
+
+    /**
+     * Watches the files the current graph depends on.
+     *
+     * @throws GrandException
+     *             if the graph cannot be created.
+     */
+    private void updateWatchedFiles() throws GrandException {
+        BuildFileWatcher.getInstance().watch(watchListener, model.getWatchedFiles());
+    }
+
+    /**
+     * Filter the current graph of the model. This method increase the
+     * progress monitor by 1.
      * @param progressMonitor IProgressMonitor
+     * @param clearFilters
+     *            if <code>true</code> the filter chain will be cleared
+     *            before filtering.
      */
-    private void filterAndRenderGraph(final IProgressMonitor progressMonitor) {
+    private void filterGraph(final IProgressMonitor progressMonitor, final boolean clearFilters) {
         progressMonitor.subTask("Filtering graph");
-        if (clearFiltersOnNextLoad) {
+        if (clearFilters) {
             filterChain.clearFilters();
         }
         filterChain.filterGraph();
@@ -643,54 +952,128 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
             LOG.debug("Filtering done");
         }
         progressMonitor.worked(1);
-
-        renderFilteredGraph(progressMonitor);
     }
 
     /**
      * Render the currently load/filtered graph. This method increase the
-     * progress monitor by 3.
-     * @param progressMonitor IProgressMonitor
+     * progress monitor by 3. It is called on the pipeline thread and
+     * returns without publishing anything as soon as the monitor tells that
+     * the request has been superseded.
+     * @param progressMonitor GraphPipeline.PipelineMonitor
      */
-    private void renderFilteredGraph(final IProgressMonitor progressMonitor) {
+    private void renderFilteredGraph(final GraphPipeline.PipelineMonitor progressMonitor) {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Creating dot graph");
         }
         progressMonitor.subTask("Laying out graph");
-        graph = filterChain.getGraph();
-        nodeContentProvider.setGraph(graph);
+        final Graph filteredGraph = filterChain.getGraph();
         final DotGraphCreator creator =
-                new DotGraphCreator(graph, busRoutingEnabled);
+                new Draw2dDotGraphCreator(filteredGraph, busRoutingEnabled);
         final IDotGraph dotGraph = creator.getGraph();
         progressMonitor.worked(1);
+        progressMonitor.checkCanceled();
 
         if (LOG.isDebugEnabled()) {
             LOG.debug("Laying out graph");
         }
-        final Dot app = new Dot();
-        app.layout(dotGraph, 0, -7);
+        if (Application.getInstance().getPreferenceStore().getBoolean(
+                PreferenceKeys.GRAPH_LAYOUT_COMPONENTS)) {
+            ComponentLayout.layout(dotGraph);
+        } else {
+            LayoutCache.getInstance().layout(dotGraph);
+        }
         progressMonitor.worked(1);
+        progressMonitor.checkCanceled();
 
         progressMonitor.subTask("Rendering graph");
+        String name = filteredGraph.getName();
+        if (name == null) {
+            name = "Untitled";
+        }
+        final String graphName = name;
+        final String fileName = model.getLastLoadedFile().getAbsolutePath();
+        final List<String> structure = getStructure(filteredGraph);
         Display.getDefault().syncExec(new Runnable() {
             public void run() {
+                // Only the newest request gets published.
+                if (progressMonitor.isCanceled()) {
+                    return;
+                }
+                graph = filteredGraph;
+                graphStructure = structure;
+                reloadedNodes = Collections.emptyMap();
+                nodeContentProvider.setGraph(filteredGraph);
                 if (figure == null) {
                     figure = renderer.render(dotGraph);
                 } else {
                     renderer.render(figure, dotGraph);
+                    pruneSelection();
                 }
-
+                figure.setSelectionManager(GraphController.this);
+                applyFigurePreferences();
+                getDisplayer().setGraph(figure, graphName, fileName);
             }
         });
-        figure.setSelectionManager(this);
         progressMonitor.worked(1);
+    }
+
+    /**
+     * Removes from the selection the nodes which are no longer part of the
+     * figure after a rendering.
+     */
+    private void pruneSelection() {
+        final Set<Draw2dNode> newSelection = new LinkedHashSet<Draw2dNode>();
+        for (final Draw2dNode node : selectedNodes) {
+            if (node.getParent() == figure) {
+                newSelection.add(node);
+            }
+        }
+        if (newSelection.size() != selectedNodes.size()) {
+            changeSelection(newSelection);
+        }
+    }
+
+    /**
+     * Replaces the selection: the nodes whose state changed are updated and
+     * repainted at once and a single event is sent with an immutable
+     * snapshot of the new selection.
+     *
+     * @param newSelection
+     *            the new selection, not to be modified afterwards.
+     */
+    private void changeSelection(final Set<Draw2dNode> newSelection) {
+        final Set<Draw2dNode> oldSelection = selectedNodes;
+        if (newSelection.equals(oldSelection)) {
+            return;
+        }
+        final List<Draw2dNode> deselected = new ArrayList<Draw2dNode>();
+        for (final Draw2dNode node : oldSelection) {
+            if (!newSelection.contains(node)) {
+                deselected.add(node);
+            }
+        }
+        final List<Draw2dNode> selected = new ArrayList<Draw2dNode>();
+        for (final Draw2dNode node : newSelection) {
+            if (!oldSelection.contains(node)) {
+                selected.add(node);
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Selecting " + selected.size() + " nodes, deselecting "
+                    + deselected.size());
+        }
 
-        String graphName = graph.getName();
-        if (graphName == null) {
-            graphName = "Untitled";
+        selectedNodes = Collections.unmodifiableSet(newSelection);
+        if (figure != null) {
+            figure.applySelection(deselected, selected);
+        }
+        if (newSelection.isEmpty()) {
+            displayer.setSourceText("");
+        } else if (!selected.isEmpty()) {
+            final Draw2dNode lastSelected = selected.get(selected.size() - 1);
+            displayer.setRichSource(getTargetNode(lastSelected).getRichSource());
         }
-        getDisplayer().setGraph(figure, graphName,
-                model.getLastLoadedFile().getAbsolutePath());
+        selectionChangedDispatcher.dispatch(selectedNodes);
     }
 
     /**
@@ -710,8 +1093,7 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      */
     private void stopController() {
         // Stop sending & receiving events.
-        graphEventManager.clear();
-        Application.getInstance().getPreferenceStore().removePropertyChangeListener(this);
+        dispose();
 
         // Help garbage collector.
         window = null;
@@ -751,7 +1133,7 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
                     g.setForegroundColor(figure.getForegroundColor());
                     g.setBackgroundColor(figure.getBackgroundColor());
                     g.setFont(figure.getFont());
-                    figure.paint(g);
+                    paintFigure(g);
                 } finally {
                     if (g != null) {
                         g.dispose();
@@ -765,4 +1147,101 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
 
         return image;
     }
+
+    /**
+     * Writes the current graph as a PNG image. Unlike
+     * {@link #createImageForGraph()} the graph is painted in horizontal
+     * stripes which are encoded as soon as they are painted, so the memory
+     * used does not depend on the size of the graph.
+     *
+     * @param out
+     *            the stream to write to, it is not closed.
+     * @return <code>false</code> if no graph is loaded or if it is empty.
+     * @throws IOException
+     *             if the image cannot be written.
+     */
+    public final boolean writeGraphAsPng(final OutputStream out) throws IOException {
+        if (figure == null) {
+            return false;
+        }
+        final Rectangle r = figure.getBounds().getCopy();
+        if ((r.width <= 0) || (r.height <= 0)) {
+            LOG.warn("Cannot export an empty graph");
+            return false;
+        }
+        final Display display = window.getShell().getDisplay();
+        final int stripeHeight = Math.max(1, Math.min(r.height, STRIPE_PIXELS / r.width));
+        final Image stripe = new Image(display, r.width, stripeHeight);
+        final ImageData[] stripeData = new ImageData[1];
+        final PngStreamWriter writer = new PngStreamWriter(out, r.width, r.height);
+        try {
+            for (int top = 0; top < r.height; top += stripeHeight) {
+                final int offset = top;
+                display.syncExec(new Runnable() {
+                    public void run() {
+                        stripeData[0] = paintStripe(stripe, r, offset);
+                    }
+                });
+                writer.writeRows(stripeData[0], Math.min(stripeHeight, r.height - top));
+                stripeData[0] = null;
+            }
+            writer.close();
+        } finally {
+            stripe.dispose();
+        }
+        return true;
+    }
+
+    /**
+     * Paints the graph on something else than its canvas, bypassing the tile
+     * cache.
+     *
+     * @param graphics
+     *            the graphics to paint on.
+     */
+    private void paintFigure(final Graphics graphics) {
+        figure.setDirectPainting(true);
+        try {
+            figure.paint(graphics);
+        } finally {
+            figure.setDirectPainting(false);
+        }
+    }
+
+    /**
+     * Paints a part of the graph into a stripe image.
+     *
+     * @param stripe
+     *            the image to paint into.
+     * @param bounds
+     *            the bounds of the graph.
+     * @param offset
+     *            the offset of the stripe from the top of the graph.
+     * @return the content of the stripe.
+     */
+    private ImageData paintStripe(final Image stripe, final Rectangle bounds, final int offset) {
+        final org.eclipse.swt.graphics.Rectangle size = stripe.getBounds();
+        GC gc = null;
+        SWTGraphics g = null;
+        try {
+            gc = new GC(stripe);
+            gc.setBackground(figure.getBackgroundColor());
+            gc.fillRectangle(size);
+            g = new SWTGraphics(gc);
+            g.translate(-bounds.x, -bounds.y - offset);
+            g.clipRect(new Rectangle(bounds.x, bounds.y + offset, size.width, size.height));
+            g.setForegroundColor(figure.getForegroundColor());
+            g.setBackgroundColor(figure.getBackgroundColor());
+            g.setFont(figure.getFont());
+            paintFigure(g);
+        } finally {
+            if (g != null) {
+                g.dispose();
+            }
+            if (gc != null) {
+                gc.dispose();
+            }
+        }
+        return stripe.getImageData();
+    }
 }
@@ -29,8 +29,10 @@
 package net.ggtools.grand.ui.graph;
 
 import java.io.File;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import net.ggtools.grand.ant.AntProject;
 import net.ggtools.grand.exceptions.GrandException;
@@ -75,8 +77,12 @@ public class GraphModel implements GraphProducer {
     public final Graph getGraph() throws GrandException {
         // Do not cache the graph as node may be filtered out
         Graph graph = null;
-        if (producer != null) {
-            graph = producer.getGraph();
+        final AntProject project = producer;
+        if (project != null) {
+            // The project may be shared with other models.
+            synchronized (project) {
+                graph = project.getGraph();
+            }
         }
         return graph;
     }
@@ -94,11 +100,12 @@ public class GraphModel implements GraphProducer {
             LOG.debug("Loading " + file);
         }
         lastLoadedFile = file;
-        producer = new AntProject(file, properties);
+        producer = AntProjectCache.getInstance().getProject(file, properties);
     }
 
     /**
-     * Method reload.
+     * Method reload. The cached project is discarded so the file is always
+     * parsed again.
      * @param properties Properties
      * @throws GrandException see openFile()
      */
@@ -111,6 +118,7 @@ public class GraphModel implements GraphProducer {
             if (properties != null) {
                 lastLoadedFileProperties = properties;
             }
+            AntProjectCache.getInstance().invalidate(lastLoadedFile);
             openFile(lastLoadedFile, lastLoadedFileProperties);
         } else {
             LOG.warn("No file previously loaded, skipping reload");
@@ -124,6 +132,23 @@ public class GraphModel implements GraphProducer {
         return lastLoadedFile;
     }
 
+    /**
+     * Returns the files the graph depends on: the build file, the files
+     * it imports and the build files called by subant.
+     *
+     * @return Set&lt;File&gt;
+     * @throws GrandException
+     *             if the graph cannot be created.
+     */
+    final Set<File> getWatchedFiles() throws GrandException {
+        final File file = lastLoadedFile;
+        final AntProject project = producer;
+        if ((file == null) || (project == null)) {
+            return new HashSet<File>();
+        }
+        return AntProjectCache.getDependencies(file, project);
+    }
+
     /**
      * Gets all the properties from the producer.
      *
@@ -0,0 +1,372 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+
+/**
+ * Runs the requests of a graph controller on a single worker thread.
+ * <p>
+ * Each request is given a version when submitted. The model updates of the
+ * requests are always applied, in submission order, but the graph is only
+ * rendered for the newest request: a request superseded by a newer one skips
+ * its rendering, and a rendering in progress is abandoned at the next phase
+ * boundary. This way several requests sent in a row only cost one layout.
+ * A rendering skipped or abandoned that way is left pending: the next
+ * request renders the graph even if it does not need it by itself.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+final class GraphPipeline {
+
+    /**
+     * A progress monitor telling whether the request it belongs to is still
+     * the newest one.
+     *
+     * @author Christophe Labouisse
+     */
+    final class PipelineMonitor extends ProgressMonitorWrapper {
+
+        /**
+         * Field version.
+         */
+        private final long version;
+
+        /**
+         * Constructor for PipelineMonitor.
+         * @param monitor IProgressMonitor
+         * @param version long
+         */
+        private PipelineMonitor(final IProgressMonitor monitor, final long version) {
+            super(monitor);
+            this.version = version;
+        }
+
+        /**
+         * Abandon the current request if it has been canceled or superseded.
+         *
+         * @throws OperationCanceledException if the request should be
+         *             abandoned.
+         */
+        void checkCanceled() {
+            if (isCanceled()) {
+                throw new OperationCanceledException();
+            }
+        }
+
+        /**
+         * Method isCanceled.
+         * @return <code>true</code> if the user canceled the request or if a
+         *         newer request was submitted.
+         * @see org.eclipse.core.runtime.IProgressMonitor#isCanceled()
+         */
+        @Override
+        public boolean isCanceled() {
+            return version != latestVersion.get() || super.isCanceled();
+        }
+    }
+
+    /**
+     * Renders the graph once the model has been updated.
+     *
+     * @author Christophe Labouisse
+     */
+    interface Renderer {
+        /**
+         * Render the current graph. Implementations should call
+         * {@link PipelineMonitor#checkCanceled()} between phases and only
+         * publish the result if the monitor is not canceled.
+         *
+         * @param monitor PipelineMonitor
+         */
+        void render(PipelineMonitor monitor);
+    }
+
+    /**
+     * A request sent to the pipeline.
+     *
+     * @author Christophe Labouisse
+     */
+    abstract static class Request {
+
+        /**
+         * Field completed.
+         */
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        /**
+         * Field monitor.
+         */
+        private final IProgressMonitor monitor;
+
+        /**
+         * Field name.
+         */
+        private final String name;
+
+        /**
+         * Field totalWork.
+         */
+        private final int totalWork;
+
+        /**
+         * Field version.
+         */
+        private long version;
+
+        /**
+         * Creates a new request.
+         *
+         * @param name
+         *            the task name for the progress monitor.
+         * @param totalWork
+         *            the amount of work of the update, the rendering adds 3
+         *            to it.
+         * @param monitor
+         *            the progress monitor to report to.
+         */
+        Request(final String name, final int totalWork, final IProgressMonitor monitor) {
+            this.name = name;
+            this.totalWork = totalWork;
+            this.monitor = monitor;
+        }
+
+        /**
+         * Wait until the request has been processed, either by rendering the
+         * graph or by leaving it to a newer request.
+         *
+         * @throws InterruptedException
+         *             if the current thread is interrupted.
+         */
+        final void await() throws InterruptedException {
+            completed.await();
+        }
+
+        /**
+         * Called on the pipeline thread when the update or the rendering
+         * failed.
+         *
+         * @param exception Throwable
+         */
+        abstract void failed(Throwable exception);
+
+        /**
+         * Tells whether the graph should be rendered once the model has
+         * been updated. Called on the pipeline thread after
+         * {@link #update(IProgressMonitor)}.
+         *
+         * @return <code>true</code> by default.
+         */
+        boolean needsRendering() {
+            return true;
+        }
+
+        /**
+         * Update the model. Called on the pipeline thread, in submission
+         * order, even for superseded requests.
+         *
+         * @param progressMonitor IProgressMonitor
+         * @throws Exception
+         *             if the update failed.
+         */
+        abstract void update(IProgressMonitor progressMonitor) throws Exception;
+    }
+
+    /**
+     * The task processing a request, kept around so that the requests
+     * dropped on shutdown can be released.
+     *
+     * @author Christophe Labouisse
+     */
+    private final class RequestTask implements Runnable {
+
+        /**
+         * Field request.
+         */
+        private final Request request;
+
+        /**
+         * Constructor for RequestTask.
+         * @param request Request
+         */
+        private RequestTask(final Request request) {
+            this.request = request;
+        }
+
+        /**
+         * Method run.
+         * @see java.lang.Runnable#run()
+         */
+        public void run() {
+            process(request);
+        }
+    }
+
+    /**
+     * Field KEEP_ALIVE_SECONDS.
+     * (value is {@value #KEEP_ALIVE_SECONDS})
+     */
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(GraphPipeline.class);
+
+    /**
+     * Field RENDERING_WORK.
+     * (value is {@value #RENDERING_WORK})
+     */
+    static final int RENDERING_WORK = 3;
+
+    /**
+     * Field executor.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Field latestVersion.
+     */
+    private final AtomicLong latestVersion = new AtomicLong();
+
+    /**
+     * Field renderer.
+     */
+    private final Renderer renderer;
+
+    /**
+     * Field renderingPending, set when a rendering was skipped or abandoned
+     * for a newer request. Only accessed on the pipeline thread.
+     */
+    private boolean renderingPending = false;
+
+    /**
+     * Creates a new pipeline.
+     *
+     * @param name
+     *            the name of the pipeline thread.
+     * @param renderer
+     *            the object rendering the graph.
+     */
+    GraphPipeline(final String name, final Renderer renderer) {
+        this.renderer = renderer;
+        executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    public Thread newThread(final Runnable r) {
+                        final Thread thread = new Thread(r, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Stop the pipeline, abandoning the pending requests. The threads
+     * waiting for these requests are released.
+     */
+    void shutdown() {
+        latestVersion.incrementAndGet();
+        for (final Runnable dropped : executor.shutdownNow()) {
+            final Request request = ((RequestTask) dropped).request;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Pipeline stopped, dropping " + request.name);
+            }
+            request.completed.countDown();
+        }
+    }
+
+    /**
+     * Submit a new request, superseding the previous ones.
+     *
+     * @param request Request
+     */
+    void submit(final Request request) {
+        request.version = latestVersion.incrementAndGet();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Submitting " + request.name + " as version " + request.version);
+        }
+        try {
+            executor.execute(new RequestTask(request));
+        } catch (final RejectedExecutionException e) {
+            LOG.warn("Pipeline stopped, dropping " + request.name);
+            request.completed.countDown();
+        }
+    }
+
+    /**
+     * Process a request on the pipeline thread.
+     *
+     * @param request Request
+     */
+    private void process(final Request request) {
+        final PipelineMonitor monitor = new PipelineMonitor(request.monitor, request.version);
+        monitor.beginTask(request.name, request.totalWork + RENDERING_WORK);
+        try {
+            request.update(monitor);
+            if (monitor.isCanceled()) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Version " + request.version + " superseded, skipping rendering");
+                }
+                renderingPending |= request.needsRendering();
+            } else if (!request.needsRendering() && !renderingPending) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Version " + request.version + " does not need rendering");
+                }
+            } else {
+                renderingPending = true;
+                renderer.render(monitor);
+                renderingPending = monitor.isCanceled();
+            }
+        } catch (final OperationCanceledException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Version " + request.version + " abandoned");
+            }
+            // The model may have been changed without being rendered.
+            renderingPending = true;
+        } catch (final Exception e) {
+            request.failed(e);
+        } finally {
+            monitor.done();
+            request.completed.countDown();
+        }
+    }
+}
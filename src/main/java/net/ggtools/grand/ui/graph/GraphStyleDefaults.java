@@ -0,0 +1,212 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph;
+
+/**
+ * The default node, link and bus styles. They are shared by the preference
+ * pages, which use them as the preference defaults, and by the export, which
+ * uses them without a preference store; so this class must not depend on
+ * SWT.
+ * <p>
+ * The styles are indexed by the <code>NODE_*</code> and <code>LINK_*</code>
+ * constants and the colors are <code>0xRRGGBB</code> values.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+public final class GraphStyleDefaults {
+    /**
+     * Field BUS_IN_THRESHOLD.
+     * (value is {@value #BUS_IN_THRESHOLD})
+     */
+    public static final int BUS_IN_THRESHOLD = 5;
+
+    /**
+     * Field BUS_OUT_THRESHOLD.
+     * (value is {@value #BUS_OUT_THRESHOLD})
+     */
+    public static final int BUS_OUT_THRESHOLD = 5;
+
+    /**
+     * Field LINK_DEFAULT.
+     * (value is {@value #LINK_DEFAULT})
+     */
+    public static final int LINK_DEFAULT = 0;
+
+    /**
+     * Field LINK_WEAK.
+     * (value is {@value #LINK_WEAK})
+     */
+    public static final int LINK_WEAK = 1;
+
+    /**
+     * Field LINK_SUBANT.
+     * (value is {@value #LINK_SUBANT})
+     */
+    public static final int LINK_SUBANT = 2;
+
+    /**
+     * Field LINK_TYPE_COUNT.
+     * (value is {@value #LINK_TYPE_COUNT})
+     */
+    public static final int LINK_TYPE_COUNT = 3;
+
+    /**
+     * Field NODE_START.
+     * (value is {@value #NODE_START})
+     */
+    public static final int NODE_START = 0;
+
+    /**
+     * Field NODE_MAIN.
+     * (value is {@value #NODE_MAIN})
+     */
+    public static final int NODE_MAIN = 1;
+
+    /**
+     * Field NODE_MISSING.
+     * (value is {@value #NODE_MISSING})
+     */
+    public static final int NODE_MISSING = 2;
+
+    /**
+     * Field NODE_DEFAULT.
+     * (value is {@value #NODE_DEFAULT})
+     */
+    public static final int NODE_DEFAULT = 3;
+
+    /**
+     * Field NODE_TYPE_COUNT.
+     * (value is {@value #NODE_TYPE_COUNT})
+     */
+    public static final int NODE_TYPE_COUNT = 4;
+
+    /**
+     * Field LINK_COLORS.
+     */
+    private static final int[] LINK_COLORS = {0x000000, 0xc0c0c0, 0xc0c0c0};
+
+    /**
+     * Field LINK_LINE_WIDTHS.
+     */
+    private static final int[] LINK_LINE_WIDTHS = {1, 1, 2};
+
+    /**
+     * Field NODE_FG_COLORS.
+     */
+    private static final int[] NODE_FG_COLORS = {0x000000, 0x000000, 0x808080, 0x000000};
+
+    /**
+     * Field NODE_FILL_COLORS.
+     */
+    private static final int[] NODE_FILL_COLORS = {0xffff00, 0x00ff00, 0xc0c0c0, 0xffffff};
+
+    /**
+     * Field NODE_LINE_WIDTHS.
+     */
+    private static final int[] NODE_LINE_WIDTHS = {2, 1, 1, 1};
+
+    /**
+     * Field NODE_SHAPES.
+     */
+    private static final String[] NODE_SHAPES = {"octagon", "box", "oval", "oval"};
+
+    /**
+     * Field NODE_TYPE_NAMES, the node types as used in the preference keys.
+     */
+    private static final String[] NODE_TYPE_NAMES = {"start", "main", "missing", "default"};
+
+    /**
+     * Private constructor.
+     */
+    private GraphStyleDefaults() {
+    }
+
+    /**
+     * @param linkType
+     *            one of the <code>LINK_*</code> constants.
+     * @return the default color of the link type.
+     */
+    public static int getLinkColor(final int linkType) {
+        return LINK_COLORS[linkType];
+    }
+
+    /**
+     * @param linkType
+     *            one of the <code>LINK_*</code> constants.
+     * @return the default line width of the link type.
+     */
+    public static int getLinkLineWidth(final int linkType) {
+        return LINK_LINE_WIDTHS[linkType];
+    }
+
+    /**
+     * @param nodeType
+     *            one of the <code>NODE_*</code> constants.
+     * @return the default foreground color of the node type.
+     */
+    public static int getNodeFgColor(final int nodeType) {
+        return NODE_FG_COLORS[nodeType];
+    }
+
+    /**
+     * @param nodeType
+     *            one of the <code>NODE_*</code> constants.
+     * @return the default fill color of the node type.
+     */
+    public static int getNodeFillColor(final int nodeType) {
+        return NODE_FILL_COLORS[nodeType];
+    }
+
+    /**
+     * @param nodeType
+     *            one of the <code>NODE_*</code> constants.
+     * @return the default line width of the node type.
+     */
+    public static int getNodeLineWidth(final int nodeType) {
+        return NODE_LINE_WIDTHS[nodeType];
+    }
+
+    /**
+     * @param nodeType
+     *            one of the <code>NODE_*</code> constants.
+     * @return the default shape of the node type.
+     */
+    public static String getNodeShape(final int nodeType) {
+        return NODE_SHAPES[nodeType];
+    }
+
+    /**
+     * @param nodeType
+     *            one of the <code>NODE_*</code> constants.
+     * @return the name of the node type in the preference keys.
+     */
+    public static String getNodeTypeName(final int nodeType) {
+        return NODE_TYPE_NAMES[nodeType];
+    }
+}
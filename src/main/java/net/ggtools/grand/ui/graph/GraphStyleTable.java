@@ -0,0 +1,386 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.ggtools.grand.ui.Application;
+import net.ggtools.grand.ui.GrandUiPrefStore;
+import net.ggtools.grand.ui.prefs.PreferenceKeys;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+import org.eclipse.swt.graphics.Color;
+
+/**
+ * An immutable snapshot of the node and link styles defined in the
+ * preferences.
+ * <p>
+ * Reading a color from the preference store parses its string value and
+ * checks the color registry, so the styles are read once and shared by all
+ * the renderings until a node, link or bus preference changes. The table
+ * listens to the preference store itself, so it is invalidated even when no
+ * graph is displayed. Each table records the generation it was read in and
+ * is only reused while no invalidation happened, so a table read while the
+ * preferences change is never kept.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+public final class GraphStyleTable {
+    /**
+     * Style of a link type.
+     *
+     * @author Christophe Labouisse
+     */
+    public static final class LinkStyle {
+        /**
+         * Field color.
+         */
+        private final Color color;
+
+        /**
+         * Field lineWidth.
+         */
+        private final int lineWidth;
+
+        /**
+         * Reads a link style from the preferences.
+         *
+         * @param store GrandUiPrefStore
+         * @param colorKey String
+         * @param lineWidthKey String
+         */
+        private LinkStyle(final GrandUiPrefStore store, final String colorKey,
+                final String lineWidthKey) {
+            color = store.getColor(colorKey);
+            lineWidth = store.getInt(lineWidthKey);
+        }
+
+        /**
+         * @return Returns the color.
+         */
+        public Color getColor() {
+            return color;
+        }
+
+        /**
+         * @return Returns the line width.
+         */
+        public int getLineWidth() {
+            return lineWidth;
+        }
+    }
+
+    /**
+     * Style of a node type.
+     *
+     * @author Christophe Labouisse
+     */
+    public static final class NodeStyle {
+        /**
+         * Field fgColor.
+         */
+        private final Color fgColor;
+
+        /**
+         * Field fillColor.
+         */
+        private final Color fillColor;
+
+        /**
+         * Field lineWidth.
+         */
+        private final int lineWidth;
+
+        /**
+         * Field shape.
+         */
+        private final String shape;
+
+        /**
+         * Reads a node style from the preferences.
+         *
+         * @param store GrandUiPrefStore
+         * @param nodeType
+         *            the node type as used in the preference keys.
+         */
+        private NodeStyle(final GrandUiPrefStore store, final String nodeType) {
+            final String keyPrefix = PreferenceKeys.NODE_PREFIX + nodeType;
+            shape = store.getString(keyPrefix + ".shape");
+            fgColor = store.getColor(keyPrefix + ".fgcolor");
+            fillColor = store.getColor(keyPrefix + ".fillcolor");
+            lineWidth = store.getInt(keyPrefix + ".linewidth");
+        }
+
+        /**
+         * @return Returns the foreground color.
+         */
+        public Color getFgColor() {
+            return fgColor;
+        }
+
+        /**
+         * @return Returns the fill color.
+         */
+        public Color getFillColor() {
+            return fillColor;
+        }
+
+        /**
+         * @return Returns the line width.
+         */
+        public int getLineWidth() {
+            return lineWidth;
+        }
+
+        /**
+         * @return Returns the shape.
+         */
+        public String getShape() {
+            return shape;
+        }
+    }
+
+    /**
+     * Field LINK_DEFAULT.
+     * (value is {@value #LINK_DEFAULT})
+     */
+    public static final int LINK_DEFAULT = GraphStyleDefaults.LINK_DEFAULT;
+
+    /**
+     * Field LINK_WEAK.
+     * (value is {@value #LINK_WEAK})
+     */
+    public static final int LINK_WEAK = GraphStyleDefaults.LINK_WEAK;
+
+    /**
+     * Field LINK_SUBANT.
+     * (value is {@value #LINK_SUBANT})
+     */
+    public static final int LINK_SUBANT = GraphStyleDefaults.LINK_SUBANT;
+
+    /**
+     * Field NODE_START.
+     * (value is {@value #NODE_START})
+     */
+    public static final int NODE_START = GraphStyleDefaults.NODE_START;
+
+    /**
+     * Field NODE_MAIN.
+     * (value is {@value #NODE_MAIN})
+     */
+    public static final int NODE_MAIN = GraphStyleDefaults.NODE_MAIN;
+
+    /**
+     * Field NODE_MISSING.
+     * (value is {@value #NODE_MISSING})
+     */
+    public static final int NODE_MISSING = GraphStyleDefaults.NODE_MISSING;
+
+    /**
+     * Field NODE_DEFAULT.
+     * (value is {@value #NODE_DEFAULT})
+     */
+    public static final int NODE_DEFAULT = GraphStyleDefaults.NODE_DEFAULT;
+
+    /**
+     * Field LINK_PREFIX.
+     * (value is {@value #LINK_PREFIX})
+     */
+    private static final String LINK_PREFIX = PreferenceKeys.GRAPH_PREFIX + "link.";
+
+    /**
+     * Field BUS_PREFIX.
+     * (value is {@value #BUS_PREFIX})
+     */
+    private static final String BUS_PREFIX = PreferenceKeys.GRAPH_PREFIX + "bus.";
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(GraphStyleTable.class);
+
+    /**
+     * Field current.
+     */
+    private static volatile GraphStyleTable current;
+
+    /**
+     * Field GENERATION, incremented on each invalidation.
+     */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    /**
+     * Field listening, set once the table listens to the preference store.
+     */
+    private static boolean listening = false;
+
+    /**
+     * Field busInThreshold.
+     */
+    private final int busInThreshold;
+
+    /**
+     * Field busOutThreshold.
+     */
+    private final int busOutThreshold;
+
+    /**
+     * Field generation, the generation the styles were read in.
+     */
+    private final long generation;
+
+    /**
+     * Field linkStyles.
+     */
+    private final LinkStyle[] linkStyles;
+
+    /**
+     * Field nodeStyles.
+     */
+    private final NodeStyle[] nodeStyles;
+
+    /**
+     * Reads all the styles from the preferences.
+     *
+     * @param store GrandUiPrefStore
+     * @param generation
+     *            the generation read before the styles.
+     */
+    private GraphStyleTable(final GrandUiPrefStore store, final long generation) {
+        this.generation = generation;
+        nodeStyles = new NodeStyle[GraphStyleDefaults.NODE_TYPE_COUNT];
+        for (int i = 0; i < nodeStyles.length; i++) {
+            nodeStyles[i] = new NodeStyle(store, GraphStyleDefaults.getNodeTypeName(i));
+        }
+        linkStyles = new LinkStyle[GraphStyleDefaults.LINK_TYPE_COUNT];
+        linkStyles[LINK_DEFAULT] = new LinkStyle(store, PreferenceKeys.LINK_DEFAULT_COLOR,
+                PreferenceKeys.LINK_DEFAULT_LINEWIDTH);
+        linkStyles[LINK_WEAK] = new LinkStyle(store, PreferenceKeys.LINK_WEAK_COLOR,
+                PreferenceKeys.LINK_WEAK_LINEWIDTH);
+        linkStyles[LINK_SUBANT] = new LinkStyle(store, PreferenceKeys.LINK_SUBANT_COLOR,
+                PreferenceKeys.LINK_SUBANT_LINEWIDTH);
+        busInThreshold = store.getInt(PreferenceKeys.GRAPH_BUS_IN_THRESHOLD);
+        busOutThreshold = store.getInt(PreferenceKeys.GRAPH_BUS_OUT_THRESHOLD);
+    }
+
+    /**
+     * Returns the current styles, reading them from the preferences if they
+     * changed since the last call.
+     *
+     * @return GraphStyleTable
+     */
+    public static GraphStyleTable getInstance() {
+        final long generation = GENERATION.get();
+        GraphStyleTable table = current;
+        if ((table == null) || (table.generation != generation)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Reading graph styles from the preferences");
+            }
+            final GrandUiPrefStore store = Application.getInstance().getPreferenceStore();
+            listen(store);
+            table = new GraphStyleTable(store, generation);
+            current = table;
+        }
+        return table;
+    }
+
+    /**
+     * Discards the current styles, they will be read again on the next
+     * {@link #getInstance()}.
+     */
+    public static void invalidate() {
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * Starts listening to the style preferences, once.
+     *
+     * @param store GrandUiPrefStore
+     */
+    private static synchronized void listen(final GrandUiPrefStore store) {
+        if (!listening) {
+            listening = true;
+            store.addPropertyChangeListener(new IPropertyChangeListener() {
+                public void propertyChange(final PropertyChangeEvent event) {
+                    if (isStyleProperty(event.getProperty())) {
+                        invalidate();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Tells if a preference is part of the style table.
+     *
+     * @param key
+     *            the preference key.
+     * @return <code>true</code> if a change of the preference requires
+     *         {@link #invalidate()}.
+     */
+    public static boolean isStyleProperty(final String key) {
+        return key.startsWith(PreferenceKeys.NODE_PREFIX) || key.startsWith(LINK_PREFIX)
+                || key.startsWith(BUS_PREFIX);
+    }
+
+    /**
+     * @return Returns the bus in threshold.
+     */
+    public int getBusInThreshold() {
+        return busInThreshold;
+    }
+
+    /**
+     * @return Returns the bus out threshold.
+     */
+    public int getBusOutThreshold() {
+        return busOutThreshold;
+    }
+
+    /**
+     * @param linkType
+     *            one of the <code>LINK_*</code> constants.
+     * @return the style of the link type.
+     */
+    public LinkStyle getLinkStyle(final int linkType) {
+        return linkStyles[linkType];
+    }
+
+    /**
+     * @param nodeType
+     *            one of the <code>NODE_*</code> constants.
+     * @return the style of the node type.
+     */
+    public NodeStyle getNodeStyle(final int nodeType) {
+        return nodeStyles[nodeType];
+    }
+}
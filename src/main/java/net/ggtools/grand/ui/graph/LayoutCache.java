@@ -0,0 +1,738 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import java.awt.Shape;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import sf.jzgraph.IDotGraph;
+import sf.jzgraph.IEdge;
+import sf.jzgraph.IVertex;
+import sf.jzgraph.dot.impl.Dot;
+
+/**
+ * Persistent cache for Dot layouts.
+ * <p>
+ * The result of a layout (node bounds, labels &amp; shapes, edge and bus
+ * routes) is stored in a compact binary file under
+ * <code>~/.grandui/layouts</code>. Files are named after a structural hash
+ * of the dot graph: vertices with their minimum sizes, shapes &amp; bus
+ * thresholds and edges. Laying out an unchanged graph will then restore the
+ * layout from the file without running Dot.
+ * </p>
+ * <p>
+ * The total size of the cache is capped, the least recently used layouts
+ * being deleted first. The cache directory is only scanned on first use,
+ * the list of the layouts and their sizes being then kept in memory.
+ * </p>
+ * <p>
+ * jzgraph does not document {@link Dot} as thread safe, so the Dot runs
+ * are serialized. Restoring layouts from the cache is done concurrently.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+public final class LayoutCache implements DotGraphAttributes {
+
+    /**
+     * Default maximum size of the cache directory in bytes.
+     * (value is {@value #DEFAULT_MAX_SIZE})
+     */
+    public static final long DEFAULT_MAX_SIZE = 32L * 1024 * 1024;
+
+    /**
+     * Names of the vertex attributes holding the bus routes.
+     */
+    private static final String[] BUS_ATTRS = {"inbus", "outbus", "tobus", "frombus"};
+
+    /**
+     * Extension of the layout files.
+     */
+    private static final String EXTENSION = ".layout";
+
+    /**
+     * Field FORMAT_MAGIC.
+     * (value is {@value #FORMAT_MAGIC})
+     */
+    private static final int FORMAT_MAGIC = 0x47644c61;
+
+    /**
+     * Field FORMAT_VERSION.
+     * (value is {@value #FORMAT_VERSION})
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Field instance.
+     */
+    private static LayoutCache instance;
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(LayoutCache.class);
+
+    /**
+     * Sentinel ending a path in the layout files.
+     */
+    private static final int END_OF_PATH = -1;
+
+    /**
+     * Field DOT_LOCK, serializes the Dot runs.
+     */
+    private static final Object DOT_LOCK = new Object();
+
+    /**
+     * Field cacheDir.
+     */
+    private final File cacheDir;
+
+    /**
+     * Field entries, the size of each layout file keyed by graph key, the
+     * least recently used first, or <code>null</code> until the cache
+     * directory has been scanned.
+     */
+    private LinkedHashMap<String, Long> entries = null;
+
+    /**
+     * Field hits.
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Field maxSize.
+     */
+    private volatile long maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * Field misses.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Field totalSize, the size of all the layout files.
+     */
+    private long totalSize = 0;
+
+    /**
+     * Private constructor.
+     */
+    private LayoutCache() {
+        this(new File(new File(System.getProperty("user.home"), ".grandui"), "layouts"));
+    }
+
+    /**
+     * Creates a cache in a specific directory.
+     *
+     * @param cacheDir
+     *            the directory holding the layout files.
+     */
+    LayoutCache(final File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return LayoutCache
+     */
+    public static synchronized LayoutCache getInstance() {
+        if (instance == null) {
+            instance = new LayoutCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Lays out a graph with Dot, without using the cache.
+     *
+     * @param dotGraph
+     *            the graph to lay out.
+     */
+    static void layoutWithDot(final IDotGraph dotGraph) {
+        synchronized (DOT_LOCK) {
+            final Dot app = new Dot();
+            app.layout(dotGraph, 0, -7);
+        }
+    }
+
+    /**
+     * Lays out a graph, restoring the layout from the cache if available.
+     *
+     * @param dotGraph
+     *            the graph to lay out.
+     */
+    public void layout(final IDotGraph dotGraph) {
+        final String key = computeKey(dotGraph);
+        if (key != null) {
+            final File file = new File(cacheDir, key + EXTENSION);
+            final boolean cached;
+            synchronized (this) {
+                // Also marks the entry as recently used.
+                cached = getEntries().get(key) != null;
+            }
+            if (cached) {
+                try {
+                    if (readLayout(dotGraph, file)) {
+                        hits.incrementAndGet();
+                        file.setLastModified(System.currentTimeMillis());
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("Layout restored from " + file);
+                        }
+                        return;
+                    }
+                } catch (final IOException e) {
+                    LOG.warn("Cannot read cached layout " + file, e);
+                } catch (final RuntimeException e) {
+                    LOG.warn("Invalid cached layout " + file, e);
+                }
+                removeEntry(key);
+            }
+        }
+
+        misses.incrementAndGet();
+        layoutWithDot(dotGraph);
+
+        if (key != null) {
+            try {
+                writeLayout(dotGraph, key);
+            } catch (final IOException e) {
+                LOG.warn("Cannot save layout", e);
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached layouts.
+     */
+    public synchronized void clear() {
+        final File[] files = listLayoutFiles();
+        for (final File file : files) {
+            file.delete();
+        }
+        entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+        totalSize = 0;
+    }
+
+    /**
+     * @return Returns the number of layouts restored from the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return Returns the number of layouts in the cache.
+     */
+    public synchronized int getEntryCount() {
+        return getEntries().size();
+    }
+
+    /**
+     * @return Returns the maximum size of the cache in bytes.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return Returns the number of layouts computed by Dot.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Sets the maximum size of the cache in bytes.
+     * @param maxSize long
+     */
+    public synchronized void setMaxSize(final long maxSize) {
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    /**
+     * @return Returns the size of all the layouts in bytes.
+     */
+    public synchronized long getTotalSize() {
+        getEntries();
+        return totalSize;
+    }
+
+    /**
+     * Computes the structural hash of a graph.
+     *
+     * @param dotGraph IDotGraph
+     * @return the hash as an hexadecimal string or <code>null</code> if it
+     *         cannot be computed.
+     */
+    private String computeKey(final IDotGraph dotGraph) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            update(digest, String.valueOf(FORMAT_VERSION));
+            for (final Object node : dotGraph.allVertices()) {
+                final IVertex vertex = (IVertex) node;
+                update(digest, "v");
+                update(digest, vertex.getName());
+                update(digest, vertex.getAttrAsString(MINWIDTH_ATTR));
+                update(digest, vertex.getAttrAsString(MINHEIGHT_ATTR));
+                update(digest, vertex.getAttrAsString(SHAPE_ATTR));
+                update(digest, vertex.getAttrAsString("inthreshold"));
+                update(digest, vertex.getAttrAsString("outthreshold"));
+            }
+            for (final Object obj : dotGraph.allEdges()) {
+                final IEdge edge = (IEdge) obj;
+                update(digest, "e");
+                update(digest, edge.getTail().getName());
+                update(digest, edge.getHead().getName());
+                update(digest, edge.getName());
+            }
+
+            final StringBuilder key = new StringBuilder();
+            for (final byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16));
+                key.append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            LOG.warn("Cannot compute layout key", e);
+            return null;
+        } catch (final UnsupportedEncodingException e) {
+            LOG.warn("Cannot compute layout key", e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds a string to a digest.
+     * @param digest MessageDigest
+     * @param value String, may be <code>null</code>.
+     * @throws UnsupportedEncodingException should not happen.
+     */
+    private static void update(final MessageDigest digest, final String value)
+            throws UnsupportedEncodingException {
+        if (value != null) {
+            digest.update(value.getBytes("UTF-8"));
+        }
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Deletes the least recently used layouts until the cache size is
+     * below the limit. Should be called while holding the cache's lock.
+     */
+    private void evict() {
+        final Iterator<Map.Entry<String, Long>> iter = getEntries().entrySet().iterator();
+        while ((totalSize > maxSize) && iter.hasNext()) {
+            final Map.Entry<String, Long> entry = iter.next();
+            iter.remove();
+            totalSize -= entry.getValue().longValue();
+            final File file = new File(cacheDir, entry.getKey() + EXTENSION);
+            if (file.delete() && LOG.isDebugEnabled()) {
+                LOG.debug("Evicted " + file);
+            }
+        }
+    }
+
+    /**
+     * Returns the layouts in the cache, scanning the cache directory on the
+     * first call. Should be called while holding the cache's lock.
+     *
+     * @return the size of each layout file keyed by graph key, the least
+     *         recently used first.
+     */
+    private Map<String, Long> getEntries() {
+        if (entries == null) {
+            final File[] files = listLayoutFiles();
+            Arrays.sort(files, new Comparator<File>() {
+                public int compare(final File f1, final File f2) {
+                    final long m1 = f1.lastModified();
+                    final long m2 = f2.lastModified();
+                    return (m1 < m2) ? -1 : ((m1 == m2) ? 0 : 1);
+                }
+            });
+            entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+            totalSize = 0;
+            for (final File file : files) {
+                final String name = file.getName();
+                final long length = file.length();
+                entries.put(name.substring(0, name.length() - EXTENSION.length()),
+                        Long.valueOf(length));
+                totalSize += length;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Removes a layout from the cache.
+     *
+     * @param key
+     *            the graph key.
+     */
+    private synchronized void removeEntry(final String key) {
+        final Long length = getEntries().remove(key);
+        if (length != null) {
+            totalSize -= length.longValue();
+        }
+        new File(cacheDir, key + EXTENSION).delete();
+    }
+
+    /**
+     * @param dotGraph IDotGraph
+     * @return the edges of the graph.
+     */
+    private static List<IEdge> getEdges(final IDotGraph dotGraph) {
+        final List<IEdge> edges = new ArrayList<IEdge>();
+        for (final Object edge : dotGraph.allEdges()) {
+            edges.add((IEdge) edge);
+        }
+        return edges;
+    }
+
+    /**
+     * @param dotGraph IDotGraph
+     * @return the vertices of the graph.
+     */
+    private static List<IVertex> getVertices(final IDotGraph dotGraph) {
+        final List<IVertex> vertices = new ArrayList<IVertex>();
+        for (final Object node : dotGraph.allVertices()) {
+            vertices.add((IVertex) node);
+        }
+        return vertices;
+    }
+
+    /**
+     * @return the layout files in the cache directory.
+     */
+    private File[] listLayoutFiles() {
+        final File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        final List<File> layoutFiles = new ArrayList<File>(files.length);
+        for (final File file : files) {
+            if (file.getName().endsWith(EXTENSION)) {
+                layoutFiles.add(file);
+            }
+        }
+        return layoutFiles.toArray(new File[layoutFiles.size()]);
+    }
+
+    /**
+     * Reads a cached layout into a graph.
+     *
+     * @param dotGraph
+     *            the graph to update.
+     * @param file
+     *            the layout file.
+     * @return <code>true</code> if the layout matches the graph.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    private boolean readLayout(final IDotGraph dotGraph, final File file)
+            throws IOException {
+        final DataInputStream in =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if ((in.readInt() != FORMAT_MAGIC) || (in.readInt() != FORMAT_VERSION)) {
+                return false;
+            }
+
+            final List<IVertex> vertices = getVertices(dotGraph);
+            final List<IEdge> edges = getEdges(dotGraph);
+            if ((in.readInt() != vertices.size()) || (in.readInt() != edges.size())) {
+                return false;
+            }
+
+            // Read everything before updating the graph so an invalid file
+            // leaves it untouched.
+            final Object[][] vertexAttrs = new Object[vertices.size()][];
+            for (int i = 0; i < vertexAttrs.length; i++) {
+                if (!vertices.get(i).getName().equals(in.readUTF())) {
+                    return false;
+                }
+                final Object[] attrs = new Object[3 + BUS_ATTRS.length];
+                attrs[0] = in.readBoolean() ? in.readUTF() : null;
+                attrs[1] = new Rectangle2D.Float(in.readFloat(), in.readFloat(),
+                        in.readFloat(), in.readFloat());
+                attrs[2] = readPath(in);
+                final int busMask = in.readByte();
+                for (int j = 0; j < BUS_ATTRS.length; j++) {
+                    if ((busMask & (1 << j)) != 0) {
+                        attrs[3 + j] = readRoute(in);
+                    }
+                }
+                vertexAttrs[i] = attrs;
+            }
+            final LayoutRoute[] edgeRoutes = new LayoutRoute[edges.size()];
+            for (int i = 0; i < edgeRoutes.length; i++) {
+                edgeRoutes[i] = readRoute(in);
+            }
+
+            for (int i = 0; i < vertexAttrs.length; i++) {
+                final IVertex vertex = vertices.get(i);
+                final Object[] attrs = vertexAttrs[i];
+                if (attrs[0] != null) {
+                    vertex.setAttr(LABEL_ATTR, attrs[0]);
+                }
+                vertex.setAttr(_BOUNDS_ATTR, attrs[1]);
+                vertex.setAttr(_SHAPE_ATTR, attrs[2]);
+                for (int j = 0; j < BUS_ATTRS.length; j++) {
+                    if (attrs[3 + j] != null) {
+                        vertex.setAttr(BUS_ATTRS[j], attrs[3 + j]);
+                    }
+                }
+            }
+            for (int i = 0; i < edgeRoutes.length; i++) {
+                edges.get(i).setAttr(POSITION_ATTR, edgeRoutes[i]);
+            }
+            return true;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the layout of a graph to the cache.
+     *
+     * @param dotGraph
+     *            the laid out graph.
+     * @param key
+     *            the graph key.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+    private void writeLayout(final IDotGraph dotGraph, final String key) throws IOException {
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            throw new IOException("Cannot create " + cacheDir);
+        }
+
+        final File tmpFile = File.createTempFile(key, ".tmp", cacheDir);
+        final DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        boolean written = false;
+        try {
+            out.writeInt(FORMAT_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            final List<IVertex> vertices = getVertices(dotGraph);
+            final List<IEdge> edges = getEdges(dotGraph);
+            out.writeInt(vertices.size());
+            out.writeInt(edges.size());
+            for (final IVertex vertex : vertices) {
+                out.writeUTF(vertex.getName());
+                final String label = vertex.getAttrString(LABEL_ATTR);
+                out.writeBoolean(label != null);
+                if (label != null) {
+                    out.writeUTF(label);
+                }
+                final Rectangle2D bounds = (Rectangle2D) vertex.getAttr(_BOUNDS_ATTR);
+                out.writeFloat((float) bounds.getX());
+                out.writeFloat((float) bounds.getY());
+                out.writeFloat((float) bounds.getWidth());
+                out.writeFloat((float) bounds.getHeight());
+                writePath(out, (Shape) vertex.getAttr(_SHAPE_ATTR));
+                int busMask = 0;
+                for (int j = 0; j < BUS_ATTRS.length; j++) {
+                    if (vertex.hasAttr(BUS_ATTRS[j])) {
+                        busMask |= 1 << j;
+                    }
+                }
+                out.writeByte(busMask);
+                for (int j = 0; j < BUS_ATTRS.length; j++) {
+                    if ((busMask & (1 << j)) != 0) {
+                        writeRoute(out, LayoutRoute.valueOf(vertex.getAttr(BUS_ATTRS[j])));
+                    }
+                }
+            }
+            for (final IEdge edge : edges) {
+                writeRoute(out, LayoutRoute.valueOf(edge.getAttr(POSITION_ATTR)));
+            }
+            written = true;
+        } finally {
+            out.close();
+            if (!written) {
+                tmpFile.delete();
+            }
+        }
+
+        synchronized (this) {
+            final File file = new File(cacheDir, key + EXTENSION);
+            final Map<String, Long> currentEntries = getEntries();
+            final Long previous = currentEntries.remove(key);
+            if (previous != null) {
+                totalSize -= previous.longValue();
+            }
+            file.delete();
+            if (!tmpFile.renameTo(file)) {
+                tmpFile.delete();
+                throw new IOException("Cannot rename " + tmpFile + " to " + file);
+            }
+            final long length = file.length();
+            currentEntries.put(key, Long.valueOf(length));
+            totalSize += length;
+            evict();
+        }
+    }
+
+    /**
+     * Reads a path.
+     * @param in DataInputStream
+     * @return GeneralPath
+     * @throws IOException if the path cannot be read.
+     */
+    private static GeneralPath readPath(final DataInputStream in) throws IOException {
+        final GeneralPath path = new GeneralPath(in.readByte());
+        for (int segType = in.readByte(); segType != END_OF_PATH; segType = in.readByte()) {
+            switch (segType) {
+            case PathIterator.SEG_MOVETO:
+                path.moveTo(in.readFloat(), in.readFloat());
+                break;
+
+            case PathIterator.SEG_LINETO:
+                path.lineTo(in.readFloat(), in.readFloat());
+                break;
+
+            case PathIterator.SEG_QUADTO:
+                path.quadTo(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+                break;
+
+            case PathIterator.SEG_CUBICTO:
+                path.curveTo(in.readFloat(), in.readFloat(), in.readFloat(),
+                        in.readFloat(), in.readFloat(), in.readFloat());
+                break;
+
+            case PathIterator.SEG_CLOSE:
+                path.closePath();
+                break;
+
+            default:
+                throw new IOException("Unexpected segment type " + segType);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Reads a route.
+     * @param in DataInputStream
+     * @return LayoutRoute
+     * @throws IOException if the route cannot be read.
+     */
+    private static LayoutRoute readRoute(final DataInputStream in) throws IOException {
+        final GeneralPath path = readPath(in);
+        Point2D endPt = null;
+        if (in.readBoolean()) {
+            endPt = new Point2D.Float(in.readFloat(), in.readFloat());
+        }
+        return new LayoutRoute(path, endPt);
+    }
+
+    /**
+     * Writes a path.
+     * @param out DataOutputStream
+     * @param shape Shape
+     * @throws IOException if the path cannot be written.
+     */
+    private static void writePath(final DataOutputStream out, final Shape shape)
+            throws IOException {
+        final PathIterator ite = shape.getPathIterator(null);
+        out.writeByte(ite.getWindingRule());
+        final float[] coords = new float[6];
+        for (; !ite.isDone(); ite.next()) {
+            final int segType = ite.currentSegment(coords);
+            out.writeByte(segType);
+            final int numCoords;
+            switch (segType) {
+            case PathIterator.SEG_MOVETO:
+            case PathIterator.SEG_LINETO:
+                numCoords = 2;
+                break;
+
+            case PathIterator.SEG_QUADTO:
+                numCoords = 4;
+                break;
+
+            case PathIterator.SEG_CUBICTO:
+                numCoords = 6;
+                break;
+
+            default:
+                numCoords = 0;
+                break;
+            }
+            for (int i = 0; i < numCoords; i++) {
+                out.writeFloat(coords[i]);
+            }
+        }
+        out.writeByte(END_OF_PATH);
+    }
+
+    /**
+     * Writes a route.
+     * @param out DataOutputStream
+     * @param route LayoutRoute
+     * @throws IOException if the route cannot be written.
+     */
+    private static void writeRoute(final DataOutputStream out, final LayoutRoute route)
+            throws IOException {
+        writePath(out, route.getPath());
+        final Point2D endPt = route.getEndPt();
+        out.writeBoolean(endPt != null);
+        if (endPt != null) {
+            out.writeFloat((float) endPt.getX());
+            out.writeFloat((float) endPt.getY());
+        }
+    }
+}
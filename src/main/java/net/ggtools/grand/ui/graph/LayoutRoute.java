@@ -0,0 +1,97 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import java.awt.Shape;
+import java.awt.geom.Point2D;
+
+import sf.jzgraph.dot.impl.DotRoute;
+
+/**
+ * The route of an edge or a bus as computed by the layout, whether it comes
+ * from Dot or from the layout cache.
+ *
+ * @author Christophe Labouisse
+ */
+public final class LayoutRoute {
+
+    /**
+     * Field endPt.
+     */
+    private final Point2D endPt;
+
+    /**
+     * Field path.
+     */
+    private final Shape path;
+
+    /**
+     * Constructor for LayoutRoute.
+     * @param path Shape
+     * @param endPt Point2D, may be <code>null</code>.
+     */
+    public LayoutRoute(final Shape path, final Point2D endPt) {
+        this.path = path;
+        this.endPt = endPt;
+    }
+
+    /**
+     * Converts a route attribute.
+     *
+     * @param route
+     *            a {@link DotRoute} or a {@link LayoutRoute}.
+     * @return LayoutRoute
+     */
+    public static LayoutRoute valueOf(final Object route) {
+        if (route instanceof LayoutRoute) {
+            return (LayoutRoute) route;
+        }
+        final DotRoute dotRoute = (DotRoute) route;
+        Point2D endPt = null;
+        if (dotRoute.getEndPt() != null) {
+            endPt = new Point2D.Double(dotRoute.getEndPt().getX(), dotRoute.getEndPt().getY());
+        }
+        return new LayoutRoute(dotRoute.getPath(), endPt);
+    }
+
+    /**
+     * @return Returns the end point or <code>null</code> if the route ends
+     *         at the last point of the path.
+     */
+    public Point2D getEndPt() {
+        return endPt;
+    }
+
+    /**
+     * @return Returns the path.
+     */
+    public Shape getPath() {
+        return path;
+    }
+}
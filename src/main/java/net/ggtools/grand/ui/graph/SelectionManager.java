@@ -56,6 +56,13 @@ public interface SelectionManager {
      */
     void deselectNode(Draw2dNode node);
 
+    /**
+     * Deselect several nodes at once, sending a single selection event.
+     *
+     * @param nodes Collection&lt;Draw2dNode&gt;
+     */
+    void deselectNodes(Collection<Draw2dNode> nodes);
+
     /**
      * Returns a collection of the current selection.
      *
@@ -80,6 +87,17 @@ public interface SelectionManager {
      */
     void selectNode(final Draw2dNode node, final boolean addToSelection);
 
+    /**
+     * Selects several nodes at once, sending a single selection event.
+     *
+     * @param nodes
+     *            nodes to select
+     * @param addToSelection
+     *            if <code>true</code> the nodes are added to the current
+     *            selection rather than replacing it.
+     */
+    void selectNodes(final Collection<Draw2dNode> nodes, final boolean addToSelection);
+
     /**
      * Selects a specific node in the graph.
      *
@@ -91,4 +109,15 @@ public interface SelectionManager {
      */
     void selectNodeByName(final String nodeName, final boolean addToSelection);
 
+    /**
+     * Selects several nodes at once, sending a single selection event.
+     *
+     * @param nodeNames
+     *            names of the nodes to select, unknown names being ignored
+     * @param addToSelection
+     *            if <code>true</code> the nodes are added to the current
+     *            selection rather than replacing it.
+     */
+    void selectNodesByName(final Collection<String> nodeNames, final boolean addToSelection);
+
 }
@@ -28,9 +28,15 @@
 
 package net.ggtools.grand.ui.graph.draw2d;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import net.ggtools.grand.ui.Application;
 import net.ggtools.grand.ui.graph.GraphController;
@@ -40,21 +46,51 @@ import net.ggtools.grand.ui.widgets.CanvasScroller;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.eclipse.draw2d.Connection;
 import org.eclipse.draw2d.Cursors;
+import org.eclipse.draw2d.FigureListener;
 import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.MouseEvent;
 import org.eclipse.draw2d.MouseListener;
 import org.eclipse.draw2d.Panel;
+import org.eclipse.draw2d.Polyline;
+import org.eclipse.draw2d.PolylineConnection;
+import org.eclipse.draw2d.SWTGraphics;
 import org.eclipse.draw2d.ScaledGraphics;
+import org.eclipse.draw2d.TreeSearch;
 import org.eclipse.draw2d.XYLayout;
 import org.eclipse.draw2d.geometry.Dimension;
+import org.eclipse.draw2d.geometry.Point;
+import org.eclipse.draw2d.geometry.PointList;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.draw2d.geometry.Translatable;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Display;
 
 import sf.jzgraph.IVertex;
 
 /**
+ * The figure holding a rendered graph.
+ * <p>
+ * The children are indexed in a grid so that painting only visits the
+ * figures intersecting the clip and hit-testing only the figures under the
+ * cursor, connections being indexed segment by segment.
+ * </p>
+ * <p>
+ * Below configurable zoom levels the graph is painted with less details:
+ * the labels and decorations are skipped and, even lower, the nodes are
+ * drawn as flat rectangles.
+ * </p>
+ * <p>
+ * The zoomed graph is rendered in offscreen tiles which are kept in a
+ * bounded cache, so scrolling back and forth blits images instead of
+ * painting the figures again. Structural changes discard all the tiles while
+ * repainting a node or a connection only discards the tiles it covers.
+ * </p>
+ *
  * @author Christophe Labouisse
  */
 public class Draw2dGraph extends Panel implements SelectionManager {
@@ -209,11 +245,92 @@ public class Draw2dGraph extends Panel implements SelectionManager {
 
     }
 
+    /**
+     * Field DEFAULT_DETAIL_ZOOM.
+     * (value is {@value #DEFAULT_DETAIL_ZOOM})
+     */
+    public static final float DEFAULT_DETAIL_ZOOM = 0.5f;
+
+    /**
+     * Field DEFAULT_SHAPE_ZOOM.
+     * (value is {@value #DEFAULT_SHAPE_ZOOM})
+     */
+    public static final float DEFAULT_SHAPE_ZOOM = 0.25f;
+
+    /**
+     * Field DEFAULT_TILE_CACHE_BUDGET, in bytes.
+     * (value is {@value #DEFAULT_TILE_CACHE_BUDGET})
+     */
+    public static final long DEFAULT_TILE_CACHE_BUDGET = 32L * 1024 * 1024;
+
+    /**
+     * Field GRID_CELL_SIZE.
+     * (value is {@value #GRID_CELL_SIZE})
+     */
+    private static final int GRID_CELL_SIZE = 128;
+
+    /**
+     * Field INDEX_MARGIN, added around the bounds of the indexed figures
+     * to account for line widths.
+     * (value is {@value #INDEX_MARGIN})
+     */
+    private static final int INDEX_MARGIN = 4;
+
     /**
      * Field log.
      */
     private static final Log LOG = LogFactory.getLog(Draw2dGraph.class);
 
+    /**
+     * Field childOrder, the index of each child in the children list, or
+     * <code>null</code> if it has to be rebuilt after the children changed.
+     */
+    private Map<IFigure, Integer> childOrder = null;
+
+    /**
+     * Field connectionIndex.
+     */
+    private final Map<String, PolylineConnection> connectionIndex =
+            new HashMap<String, PolylineConnection>();
+
+    /**
+     * Field detailZoom, the zoom under which labels and decorations are not
+     * painted.
+     */
+    private float detailZoom = DEFAULT_DETAIL_ZOOM;
+
+    /**
+     * Field directPainting, set while the graph is painted elsewhere than on
+     * its canvas, e.g. for printing or exporting, where the cached tiles
+     * must not be used.
+     */
+    private boolean directPainting = false;
+
+    /**
+     * Field dirtyFigures, the children whose bounds may have changed since
+     * they were indexed.
+     */
+    private final Set<IFigure> dirtyFigures = new HashSet<IFigure>();
+
+    /**
+     * Field figureGrid.
+     */
+    private final FigureGrid figureGrid = new FigureGrid(GRID_CELL_SIZE);
+
+    /**
+     * Field indexUpdater, flags the children moved or resized as dirty.
+     */
+    private final FigureListener indexUpdater = new FigureListener() {
+        /**
+         * @param source IFigure
+         * @see org.eclipse.draw2d.FigureListener#figureMoved(IFigure)
+         */
+        public void figureMoved(final IFigure source) {
+            invalidateTiles(source);
+            dirtyFigures.add(source);
+        }
+    };
+
     /**
      * Field graphController.
      */
@@ -234,6 +351,22 @@ public class Draw2dGraph extends Panel implements SelectionManager {
      */
     private CanvasScroller scroller;
 
+    /**
+     * Field shapeZoom, the zoom under which nodes are painted as flat
+     * rectangles.
+     */
+    private float shapeZoom = DEFAULT_SHAPE_ZOOM;
+
+    /**
+     * Field tileCache.
+     */
+    private final TileCache tileCache = new TileCache(DEFAULT_TILE_CACHE_BUDGET);
+
+    /**
+     * Field tooltipCache.
+     */
+    private final TooltipCache tooltipCache = new TooltipCache(TooltipCache.DEFAULT_CAPACITY);
+
     /**
      * Field zoom.
      */
@@ -289,6 +422,43 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         return node;
     }
 
+    /**
+     * Method add.
+     * @param figure IFigure
+     * @param constraint Object
+     * @param index int
+     * @see org.eclipse.draw2d.IFigure#add(IFigure, Object, int)
+     */
+    @Override
+    public final void add(final IFigure figure, final Object constraint, final int index) {
+        super.add(figure, constraint, index);
+        figure.addFigureListener(indexUpdater);
+        childOrder = null;
+        dirtyFigures.add(figure);
+        invalidateTiles(figure);
+    }
+
+    /**
+     * Adds a connection to the graph, replacing any other connection
+     * previously added with the same key. If the connection is already in the
+     * graph only its bounds are updated.
+     *
+     * @param key
+     *            the key identifying the connection across renderings.
+     * @param connection PolylineConnection
+     * @param bounds Rectangle
+     */
+    public final void addConnection(final String key, final PolylineConnection connection,
+            final Rectangle bounds) {
+        if (connectionIndex.get(key) == connection) {
+            setConstraint(connection, bounds);
+        } else {
+            removeConnection(key);
+            add(connection, bounds);
+            connectionIndex.put(key, connection);
+        }
+    }
+
     /**
      *
      * @see net.ggtools.grand.ui.graph.SelectionManager#deselectAllNodes()
@@ -299,6 +469,25 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         }
     }
 
+    /**
+     * Changes the selection state of several nodes and repaints them at
+     * once.
+     *
+     * @param deselected
+     *            the nodes to deselect.
+     * @param selected
+     *            the nodes to select.
+     */
+    public final void applySelection(final Collection<Draw2dNode> deselected,
+            final Collection<Draw2dNode> selected) {
+        Rectangle dirty = applySelection(deselected, false, null);
+        dirty = applySelection(selected, true, dirty);
+        if (dirty != null) {
+            translateToParent(dirty);
+            repaint(dirty);
+        }
+    }
+
     /**
      * @param node Draw2dNode
      * @see net.ggtools.grand.ui.graph.SelectionManager#deselectNode(Draw2dNode)
@@ -309,6 +498,16 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         }
     }
 
+    /**
+     * @param nodes Collection&lt;Draw2dNode&gt;
+     * @see net.ggtools.grand.ui.graph.SelectionManager#deselectNodes(Collection)
+     */
+    public final void deselectNodes(final Collection<Draw2dNode> nodes) {
+        if (graphController != null) {
+            graphController.deselectNodes(nodes);
+        }
+    }
+
     /**
      * Gets the bounding box for a specific node.
      *
@@ -322,6 +521,24 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         return (node == null) ? null : node.getBounds();
     }
 
+    /**
+     * Gets the connection added with a specific key.
+     *
+     * @param key String
+     * @return the connection or <code>null</code> if no such connection
+     *         exist.
+     */
+    public final PolylineConnection getConnection(final String key) {
+        return connectionIndex.get(key);
+    }
+
+    /**
+     * @return a copy of the keys of the connections in the graph.
+     */
+    public final Set<String> getConnectionKeys() {
+        return new HashSet<String>(connectionIndex.keySet());
+    }
+
     /**
      * @param rect Rectangle
      * @return Rectangle
@@ -372,6 +589,23 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         return d.getExpanded(-w, -h).scale(zoom).expand(w, h);
     }
 
+    /**
+     * Gets a node by name.
+     *
+     * @param name String
+     * @return the node or <code>null</code> if no such node exist.
+     */
+    public final Draw2dNode getNode(final String name) {
+        return nodeIndex.get(name);
+    }
+
+    /**
+     * @return a copy of the nodes in the graph.
+     */
+    public final Collection<Draw2dNode> getNodes() {
+        return new ArrayList<Draw2dNode>(nodeIndex.values());
+    }
+
     /**
      * @return Returns the scroller.
      */
@@ -391,6 +625,24 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         return null;
     }
 
+    /**
+     * @return the cache holding the tooltips of the nodes and connections.
+     */
+    final TooltipCache getTooltipCache() {
+        return tooltipCache;
+    }
+
+    /**
+     * Discards the cached tiles covering an area, used when a child is
+     * repainted.
+     *
+     * @param area
+     *            the area in graph coordinates.
+     */
+    final void invalidateTiles(final Rectangle area) {
+        tileCache.invalidate(area);
+    }
+
     /**
      * @return Returns the zoom.
      */
@@ -398,6 +650,48 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         return zoom;
     }
 
+    /**
+     * Method remove.
+     * @param figure IFigure
+     * @see org.eclipse.draw2d.IFigure#remove(IFigure)
+     */
+    @Override
+    public final void remove(final IFigure figure) {
+        super.remove(figure);
+        figure.removeFigureListener(indexUpdater);
+        if (figure instanceof TooltipCache.Source) {
+            tooltipCache.invalidate((TooltipCache.Source) figure);
+        }
+        childOrder = null;
+        invalidateTiles(figure);
+        dirtyFigures.remove(figure);
+        figureGrid.remove(figure);
+    }
+
+    /**
+     * Removes a connection from the graph.
+     *
+     * @param key String
+     */
+    public final void removeConnection(final String key) {
+        final PolylineConnection connection = connectionIndex.remove(key);
+        if (connection != null) {
+            remove(connection);
+        }
+    }
+
+    /**
+     * Removes a node from the graph.
+     *
+     * @param node Draw2dNode
+     */
+    public final void removeNode(final Draw2dNode node) {
+        if (nodeIndex.get(node.getName()) == node) {
+            nodeIndex.remove(node.getName());
+        }
+        remove(node);
+    }
+
     /**
      * Method removeNotify.
      * @see org.eclipse.draw2d.IFigure#removeNotify()
@@ -408,6 +702,7 @@ public class Draw2dGraph extends Panel implements SelectionManager {
             LOG.trace("Removing listeners");
         }
         super.removeNotify();
+        tileCache.clear();
         if (graphMouseListener != null) {
             removeMouseListener(graphMouseListener);
         }
@@ -436,6 +731,35 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         }
     }
 
+    /**
+     * @param nodes Collection&lt;Draw2dNode&gt;
+     * @param addToSelection boolean
+     * @see net.ggtools.grand.ui.graph.SelectionManager#selectNodes(Collection, boolean)
+     */
+    public final void selectNodes(final Collection<Draw2dNode> nodes,
+            final boolean addToSelection) {
+        if (graphController != null) {
+            graphController.selectNodes(nodes, addToSelection);
+        }
+    }
+
+    /**
+     * @param nodeNames Collection&lt;String&gt;
+     * @param addToSelection boolean
+     * @see net.ggtools.grand.ui.graph.SelectionManager#selectNodesByName(Collection, boolean)
+     */
+    public final void selectNodesByName(final Collection<String> nodeNames,
+            final boolean addToSelection) {
+        final List<Draw2dNode> nodes = new ArrayList<Draw2dNode>(nodeNames.size());
+        for (final String nodeName : nodeNames) {
+            final Draw2dNode node = nodeIndex.get(nodeName);
+            if (node != null) {
+                nodes.add(node);
+            }
+        }
+        selectNodes(nodes, addToSelection);
+    }
+
     /**
      * Method selectNodeByName.
      * @param nodeName String
@@ -450,6 +774,56 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         }
     }
 
+    /**
+     * Method setConstraint.
+     * @param child IFigure
+     * @param constraint Object
+     * @see org.eclipse.draw2d.IFigure#setConstraint(IFigure, Object)
+     */
+    @Override
+    public final void setConstraint(final IFigure child, final Object constraint) {
+        super.setConstraint(child, constraint);
+        invalidateTiles(child);
+        if (constraint instanceof Rectangle) {
+            tileCache.invalidate(((Rectangle) constraint).getExpanded(INDEX_MARGIN,
+                    INDEX_MARGIN));
+        }
+        dirtyFigures.add(child);
+    }
+
+    /**
+     * Tells the graph whether it is about to be painted elsewhere than on its
+     * canvas. In that case the figures are painted directly instead of
+     * through the tile cache.
+     *
+     * @param directPainting
+     *            <code>true</code> before painting on a printer or an image,
+     *            <code>false</code> once done.
+     */
+    public final void setDirectPainting(final boolean directPainting) {
+        this.directPainting = directPainting;
+    }
+
+    /**
+     * Sets the zoom levels under which the graph is painted with less
+     * details.
+     *
+     * @param newDetailZoom
+     *            the zoom under which the labels and decorations are not
+     *            painted.
+     * @param newShapeZoom
+     *            the zoom under which the nodes are painted as flat
+     *            rectangles.
+     */
+    public final void setLevelOfDetailZooms(final float newDetailZoom, final float newShapeZoom) {
+        if (newDetailZoom != detailZoom || newShapeZoom != shapeZoom) {
+            detailZoom = newDetailZoom;
+            shapeZoom = newShapeZoom;
+            tileCache.clear();
+            repaint();
+        }
+    }
+
     /**
      * @param scroller
      *            The scroller to set.
@@ -466,6 +840,16 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         this.graphController = graphController;
     }
 
+    /**
+     * Sets the memory available to the tile cache.
+     *
+     * @param budget
+     *            the budget in bytes, 0 to paint the figures directly.
+     */
+    public final void setTileCacheBudget(final long budget) {
+        tileCache.setBudget(budget);
+    }
+
     /**
      * Method setZoom.
      * @param zoom float
@@ -496,6 +880,106 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         super.translateToParent(t);
     }
 
+    /**
+     * Changes the selection state of nodes without repainting them.
+     *
+     * @param nodes Collection&lt;Draw2dNode&gt;
+     * @param selected boolean
+     * @param dirty
+     *            the area to repaint so far, may be <code>null</code>.
+     * @return the area to repaint including the changed nodes.
+     */
+    private Rectangle applySelection(final Collection<Draw2dNode> nodes,
+            final boolean selected, final Rectangle dirty) {
+        Rectangle result = dirty;
+        for (final Draw2dNode node : nodes) {
+            if (node.setSelectedWithoutRepaint(selected) && node.getParent() == this) {
+                final Rectangle bounds = node.getBounds();
+                tileCache.invalidate(bounds);
+                if (result == null) {
+                    result = bounds.getCopy();
+                } else {
+                    result.union(bounds);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the rectangles covering a polyline: one per segment and one per
+     * child (labels, decorations).
+     *
+     * @param line Polyline
+     * @return List&lt;Rectangle&gt;
+     */
+    private List<Rectangle> getSegmentBounds(final Polyline line) {
+        final int margin = INDEX_MARGIN + line.getLineWidth();
+        final PointList points = line.getPoints();
+        final List<Rectangle> result = new ArrayList<Rectangle>(points.size()
+                + line.getChildren().size());
+        if (points.size() == 1) {
+            result.add(new Rectangle(points.getPoint(0), points.getPoint(0)).expand(margin,
+                    margin));
+        }
+        for (int i = 1; i < points.size(); i++) {
+            result.add(new Rectangle(points.getPoint(i - 1), points.getPoint(i)).expand(
+                    margin, margin));
+        }
+        for (final Object child : line.getChildren()) {
+            result.add(((IFigure) child).getBounds().getExpanded(INDEX_MARGIN, INDEX_MARGIN));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the visible children which may contain a point, in the order they
+     * should be hit-tested: connections first as they are painted over the
+     * nodes, then from the topmost child to the bottommost one.
+     *
+     * @param x
+     *            the abscissa in local coordinates.
+     * @param y
+     *            the ordinate in local coordinates.
+     * @return List&lt;IFigure&gt;
+     */
+    private List<IFigure> getHitCandidates(final int x, final int y) {
+        updateIndex();
+        final List<IFigure> candidates = figureGrid.query(x, y);
+        // Topmost, i.e. last painted, first.
+        sortByChildOrder(candidates);
+        Collections.reverse(candidates);
+        final List<IFigure> result = new ArrayList<IFigure>(candidates.size());
+        for (final IFigure figure : candidates) {
+            if (figure.isVisible() && figure instanceof Connection) {
+                result.add(figure);
+            }
+        }
+        for (final IFigure figure : candidates) {
+            if (figure.isVisible() && !(figure instanceof Connection)) {
+                result.add(figure);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts a point from the parent coordinates.
+     *
+     * @param x int
+     * @param y int
+     * @return the point in local coordinates or <code>null</code> if it is
+     *         outside of the client area.
+     */
+    private Point toLocalPoint(final int x, final int y) {
+        final Point point = new Point(x, y);
+        translateFromParent(point);
+        if (!getClientArea(new Rectangle()).contains(point)) {
+            return null;
+        }
+        return point;
+    }
+
     /**
      * Method toggleSelection.
      * @param node Draw2dNode
@@ -510,6 +994,56 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         }
     }
 
+    /**
+     * Looks up the figure at a location using the index instead of scanning
+     * all the children. Used by {@link #findFigureAt(int, int, TreeSearch)}
+     * for tooltips and hovering.
+     *
+     * @param x int
+     * @param y int
+     * @param search TreeSearch
+     * @return IFigure
+     * @see org.eclipse.draw2d.Figure#findDescendantAtExcluding(int, int, TreeSearch)
+     */
+    @Override
+    protected final IFigure findDescendantAtExcluding(final int x, final int y,
+            final TreeSearch search) {
+        final Point point = toLocalPoint(x, y);
+        if (point == null) {
+            return null;
+        }
+        for (final IFigure child : getHitCandidates(point.x, point.y)) {
+            final IFigure found = child.findFigureAt(point.x, point.y, search);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up the mouse event target at a location using the index instead
+     * of scanning all the children.
+     *
+     * @param x int
+     * @param y int
+     * @return IFigure
+     * @see org.eclipse.draw2d.Figure#findMouseEventTargetInDescendantsAt(int, int)
+     */
+    @Override
+    protected final IFigure findMouseEventTargetInDescendantsAt(final int x, final int y) {
+        final Point point = toLocalPoint(x, y);
+        if (point == null) {
+            return null;
+        }
+        for (final IFigure child : getHitCandidates(point.x, point.y)) {
+            if (child.isEnabled() && child.containsPoint(point.x, point.y)) {
+                return child.findMouseEventTargetAt(point.x, point.y);
+            }
+        }
+        return null;
+    }
+
     /**
      * @param graphics Graphics
      * @see org.eclipse.draw2d.Figure#paintClientArea(Graphics)
@@ -522,6 +1056,15 @@ public class Draw2dGraph extends Panel implements SelectionManager {
 
         boolean optimizeClip = (getBorder() == null) || getBorder().isOpaque();
 
+        if (tileCache.isEnabled() && !directPainting && (Display.getCurrent() != null)) {
+            if (!optimizeClip) {
+                graphics.clipRect(getBounds().getShrinked(getInsets()));
+            }
+            paintTiles(graphics);
+            graphics.restoreState();
+            return;
+        }
+
         final ScaledGraphics g = new ScaledGraphics(graphics);
 
         if (!optimizeClip) {
@@ -531,12 +1074,194 @@ public class Draw2dGraph extends Panel implements SelectionManager {
                 getBounds().y + getInsets().top);
         g.scale(zoom);
         g.pushState();
-        paintChildren(g);
+        paintVisibleChildren(g);
         g.popState();
         g.dispose();
         graphics.restoreState();
     }
 
+    /**
+     * Paints the tiles intersecting the clip, rendering the missing ones.
+     *
+     * @param graphics Graphics
+     */
+    private void paintTiles(final Graphics graphics) {
+        final Rectangle clip = graphics.getClip(new Rectangle());
+        if (clip.isEmpty()) {
+            return;
+        }
+        final int originX = getBounds().x + getInsets().left;
+        final int originY = getBounds().y + getInsets().top;
+        clip.translate(-originX, -originY);
+        final int size = TileCache.TILE_SIZE;
+        final int lastColumn = tileIndex(clip.right() - 1);
+        final int lastRow = tileIndex(clip.bottom() - 1);
+        for (int column = tileIndex(clip.x); column <= lastColumn; column++) {
+            for (int row = tileIndex(clip.y); row <= lastRow; row++) {
+                Image tile = tileCache.get(zoom, column, row);
+                if (tile == null) {
+                    tile = renderTile(column, row);
+                    tileCache.put(zoom, column, row, tile);
+                }
+                graphics.drawImage(tile, originX + column * size, originY + row * size);
+            }
+        }
+    }
+
+    /**
+     * Renders a tile of the zoomed graph.
+     *
+     * @param column int
+     * @param row int
+     * @return a new image
+     */
+    private Image renderTile(final int column, final int row) {
+        final int size = TileCache.TILE_SIZE;
+        final Image image = new Image(Display.getCurrent(), size, size);
+        final GC gc = new GC(image);
+        final SWTGraphics sg = new SWTGraphics(gc);
+        try {
+            sg.setBackgroundColor(getBackgroundColor());
+            sg.fillRectangle(0, 0, size, size);
+            sg.setForegroundColor(getForegroundColor());
+            sg.setFont(getFont());
+            sg.translate(-column * size, -row * size);
+            sg.clipRect(new Rectangle(column * size, row * size, size, size));
+            final ScaledGraphics g = new ScaledGraphics(sg);
+            g.scale(zoom);
+            g.pushState();
+            paintVisibleChildren(g);
+            g.popState();
+            g.dispose();
+        } finally {
+            sg.dispose();
+            gc.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * @param coord
+     *            a coordinate in the zoomed graph.
+     * @return the index of the tile containing the coordinate.
+     */
+    private static int tileIndex(final int coord) {
+        return (int) Math.floor((double) coord / TileCache.TILE_SIZE);
+    }
+
+    /**
+     * Sorts figures in the order of the children list, i.e. the order in
+     * which they are painted.
+     *
+     * @param figures
+     *            children of the graph.
+     */
+    private void sortByChildOrder(final List<IFigure> figures) {
+        if (childOrder == null) {
+            final List<?> children = getChildren();
+            childOrder = new HashMap<IFigure, Integer>(children.size() * 2);
+            for (int i = 0; i < children.size(); i++) {
+                childOrder.put((IFigure) children.get(i), Integer.valueOf(i));
+            }
+        }
+        final Map<IFigure, Integer> order = childOrder;
+        Collections.sort(figures, new Comparator<IFigure>() {
+            public int compare(final IFigure first, final IFigure second) {
+                return order.get(first).compareTo(order.get(second));
+            }
+        });
+    }
+
+    /**
+     * Index the children whose bounds may have changed.
+     */
+    private void updateIndex() {
+        if (!dirtyFigures.isEmpty()) {
+            for (final IFigure figure : dirtyFigures) {
+                figureGrid.put(figure, getIndexBounds(figure));
+            }
+            dirtyFigures.clear();
+        }
+    }
+
+    /**
+     * Gets the rectangles a child is indexed with: the segments of a
+     * polyline or the bounds of any other figure.
+     *
+     * @param figure IFigure
+     * @return List&lt;Rectangle&gt;
+     */
+    private List<Rectangle> getIndexBounds(final IFigure figure) {
+        if (figure instanceof Polyline) {
+            return getSegmentBounds((Polyline) figure);
+        }
+        return Collections.singletonList(figure.getBounds().getExpanded(INDEX_MARGIN,
+                INDEX_MARGIN));
+    }
+
+    /**
+     * Discards the cached tiles showing a child, both where it was last
+     * indexed and where it is now. The tiles elsewhere are kept.
+     *
+     * @param figure IFigure
+     */
+    private void invalidateTiles(final IFigure figure) {
+        final List<Rectangle> indexed = figureGrid.getBounds(figure);
+        if (indexed != null) {
+            for (final Rectangle rect : indexed) {
+                tileCache.invalidate(rect);
+            }
+        }
+        for (final Rectangle rect : getIndexBounds(figure)) {
+            tileCache.invalidate(rect);
+        }
+    }
+
+    /**
+     * Paints the children intersecting the clip, the nodes first then the
+     * connections. The children are painted with less details depending on
+     * the zoom.
+     *
+     * @param g Graphics
+     */
+    private void paintVisibleChildren(final Graphics g) {
+        updateIndex();
+        final Rectangle clip = g.getClip(new Rectangle());
+        final List<IFigure> visibleFigures = figureGrid.query(clip);
+        sortByChildOrder(visibleFigures);
+        final boolean details = zoom >= detailZoom;
+        final boolean flat = zoom < shapeZoom;
+
+        for (final IFigure child : visibleFigures) {
+            if (child instanceof Draw2dNode && child.isVisible()) {
+                if (details) {
+                    g.clipRect(child.getBounds());
+                    child.paint(g);
+                    g.restoreState();
+                } else {
+                    ((Draw2dNode) child).paintSimplified(g, flat);
+                }
+            }
+        }
+
+        for (final IFigure child : visibleFigures) {
+            if (!(child instanceof Draw2dNode) && child.isVisible()) {
+                if (details || !(child instanceof Polyline)) {
+                    g.clipRect(child.getBounds());
+                    child.paint(g);
+                    g.restoreState();
+                } else {
+                    // Only the line, without labels nor decorations.
+                    final Polyline line = (Polyline) child;
+                    g.setForegroundColor(line.getForegroundColor());
+                    g.setLineWidth(line.getLineWidth());
+                    g.drawPolyline(line.getPoints());
+                    g.restoreState();
+                }
+            }
+        }
+    }
+
     /**
      * @return boolean
      * @see org.eclipse.draw2d.Figure#useLocalCoordinates()
@@ -32,10 +32,15 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.FlatteningPathIterator;
 import java.awt.geom.PathIterator;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import net.ggtools.grand.ui.Application;
 import net.ggtools.grand.ui.graph.DotGraphAttributes;
+import net.ggtools.grand.ui.graph.LayoutRoute;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -44,7 +49,6 @@ import org.eclipse.draw2d.BendpointConnectionRouter;
 import org.eclipse.draw2d.ColorConstants;
 import org.eclipse.draw2d.ConnectionLocator;
 import org.eclipse.draw2d.Cursors;
-import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.Label;
 import org.eclipse.draw2d.LineBorder;
 import org.eclipse.draw2d.MarginBorder;
@@ -61,7 +65,6 @@ import org.eclipse.swt.graphics.Color;
 import sf.jzgraph.IDotGraph;
 import sf.jzgraph.IEdge;
 import sf.jzgraph.IVertex;
-import sf.jzgraph.dot.impl.DotRoute;
 
 /**
  * Renders a IDotGraph into draw2d objects.
@@ -94,7 +97,11 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
     }
 
     /**
-     * Fill an existing graph with a IDotGraph.
+     * Fill an existing graph with a IDotGraph. The figures already in the
+     * graph are reconciled with the new layout: nodes are matched by name
+     * and connections by their endpoints, surviving figures are moved and
+     * restyled, new ones are added and the others removed. As surviving
+     * nodes keep their figure, their selection state is preserved.
      *
      * @param contents Draw2dGraph
      * @param dotGraph IDotGraph
@@ -102,7 +109,6 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
      */
     public final Draw2dGraph render(final Draw2dGraph contents,
             final IDotGraph dotGraph) {
-        contents.removeAll();
         return createGraph(dotGraph, contents);
     }
 
@@ -113,12 +119,38 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
      */
     private Draw2dGraph createGraph(final IDotGraph dotGraph,
             final Draw2dGraph contents) {
+        final Set<Draw2dNode> staleNodes = new HashSet<Draw2dNode>(contents.getNodes());
+        final Set<String> staleConnections = contents.getConnectionKeys();
+
         for (final Object node : dotGraph.allVertices()) {
-            buildNodeFigure(contents, (IVertex) node);
+            final Draw2dNode figure = buildNodeFigure(contents, (IVertex) node, staleConnections);
+            staleNodes.remove(figure);
+        }
+
+        final Map<String, Integer> edgeKeyCounts = new HashMap<String, Integer>();
+        for (final Object obj : dotGraph.allEdges()) {
+            final IEdge edge = (IEdge) obj;
+            String key = "edge:" + edge.getTail().getName() + "->" + edge.getHead().getName()
+                    + "#" + edge.getName();
+            // Several edges may share the same endpoints & name.
+            final Integer count = edgeKeyCounts.get(key);
+            edgeKeyCounts.put(key, count == null ? 1 : count + 1);
+            if (count != null) {
+                key += "/" + count;
+            }
+            buildEdgeFigure(contents, edge, key);
+            staleConnections.remove(key);
         }
 
-        for (final Object edge : dotGraph.allEdges()) {
-            buildEdgeFigure(contents, (IEdge) edge);
+        for (final String key : staleConnections) {
+            contents.removeConnection(key);
+        }
+        for (final Draw2dNode node : staleNodes) {
+            contents.removeNode(node);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Removed " + staleNodes.size() + " nodes and " + staleConnections.size()
+                    + " connections");
         }
 
         return contents;
@@ -150,13 +182,15 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
     }
 
     /**
-     * @param contents IFigure
+     * Sets the route and the label of a new or existing connection.
+     *
+     * @param conn PolylineConnection
      * @param name String
-     * @param route DotRoute
-     * @return PolylineConnection
+     * @param route LayoutRoute
+     * @return the bounds of the connection.
      */
-    private PolylineConnection addConnectionFromRoute(final IFigure contents,
-            final String name, final DotRoute route) {
+    private Rectangle applyRoute(final PolylineConnection conn,
+            final String name, final LayoutRoute route) {
         final float[] coords = new float[6];
         final List<AbsoluteBendpoint> bends =
                 new ArrayList<AbsoluteBendpoint>();
@@ -190,7 +224,6 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
         }
 
         final Rectangle bounds = new Rectangle(min, max);
-        final PolylineConnection conn = new PolylineConnection();
 
         final Point sourcePoint = bends.remove(0);
         final Point targetPoint;
@@ -209,124 +242,161 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
             conn.setRoutingConstraint(bends);
         }
 
+        Label label = null;
+        for (final Object child : conn.getChildren()) {
+            if (child instanceof Label) {
+                label = (Label) child;
+                break;
+            }
+        }
+
         if (name != null) {
-            final Label label = new Label(name);
-            label.setOpaque(true);
-            label.setBackgroundColor(ColorConstants.buttonLightest);
-            label.setBorder(new LineBorder());
-            label.setFont(Application.getInstance().getFont(Application.LINK_FONT));
             final ConnectionLocator locator =
                     new MidpointLocator(conn, bends.size() / 2);
             locator.setRelativePosition(PositionConstants.CENTER);
+            if (label == null) {
+                label = new Label(name);
+                label.setOpaque(true);
+                label.setBackgroundColor(ColorConstants.buttonLightest);
+                label.setBorder(new LineBorder());
+                label.setFont(Application.getInstance().getFont(Application.LINK_FONT));
+                conn.add(label, locator);
+            } else {
+                label.setText(name);
+                conn.setConstraint(label, locator);
+            }
             // Includes the label in the connection bounds.
             // Worst case scenario, the label is on the connection edge.
             final Dimension labelSize = label.getPreferredSize();
             bounds.expand(labelSize.width, labelSize.height);
-            conn.add(label, locator);
+        } else if (label != null) {
+            conn.remove(label);
         }
 
-        contents.add(conn, bounds);
-
-        return conn;
+        return bounds;
     }
 
     /**
-     * Builds a figure for the given edge and adds it to contents.
+     * Builds or updates the figure for the given edge.
      *
      * @param contents
-     *            the parent figure to add the edge to
+     *            the graph to add the edge to
      * @param edge
      *            the edge
+     * @param key
+     *            the key identifying the edge across renderings
      */
-    private void buildEdgeFigure(final IFigure contents, final IEdge edge) {
+    private void buildEdgeFigure(final Draw2dGraph contents, final IEdge edge,
+            final String key) {
         if (LOG.isTraceEnabled()) {
             LOG.trace("Building edge from " + edge.getTail().getName() + " to "
                     + edge.getHead().getName());
         }
-        final DotRoute route = (DotRoute) edge.getAttr(POSITION_ATTR);
+        final LayoutRoute route = LayoutRoute.valueOf(edge.getAttr(POSITION_ATTR));
 
         String name = edge.getName();
         if ("".equals(name)) {
             name = null;
         }
 
-        final PolylineConnection conn =
-                addConnectionFromRoute(contents, name, route);
-
-        if (edge.getAttr(DRAW2DFGCOLOR_ATTR) != null) {
-            conn.setForegroundColor((Color) edge.getAttr(DRAW2DFGCOLOR_ATTR));
+        GraphConnection conn = (GraphConnection) contents.getConnection(key);
+        if (conn == null) {
+            conn = new GraphConnection();
+            final PolygonDecoration dec = new PolygonDecoration();
+            conn.setTargetDecoration(dec);
+            conn.setCursor(Cursors.HAND);
         }
+        final Rectangle bounds = applyRoute(conn, name, route);
+
+        // A null color means the one of the parent.
+        conn.setForegroundColor((Color) edge.getAttr(DRAW2DFGCOLOR_ATTR));
 
         if (edge.getAttr(DRAW2DLINEWIDTH_ATTR) != null) {
             conn.setLineWidth(edge.getAttrInt(DRAW2DLINEWIDTH_ATTR));
+        } else {
+            conn.setLineWidth(1);
         }
 
-        final PolygonDecoration dec = new PolygonDecoration();
-        conn.setTargetDecoration(dec);
-
-        conn.setToolTip(new LinkTooltip(edge));
-        conn.setCursor(Cursors.HAND);
+        conn.setEdge(edge);
+        contents.addConnection(key, conn, bounds);
     }
 
     /**
-     * Builds a Figure for the given node and adds it to contents.
+     * Builds or updates the figure for the given node.
      *
      * @param contents
-     *            the parent Figure to add the node to
+     *            the graph to add the node to
      * @param node
      *            the node to add
+     * @param staleConnections
+     *            the keys of the connections not reused yet, updated
+     *            with the bus connections of the node
+     * @return the node figure
      */
-    private void buildNodeFigure(final Draw2dGraph contents,
-            final IVertex node) {
+    private Draw2dNode buildNodeFigure(final Draw2dGraph contents,
+            final IVertex node, final Set<String> staleConnections) {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Building node " + node.getName());
         }
-        final Draw2dNode polygon = contents.createNode(node);
-        polygon.setToolTip(new NodeTooltip(node));
+        Draw2dNode polygon = contents.getNode(node.getAttrString(LABEL_ATTR));
+        if (polygon == null) {
+            polygon = contents.createNode(node);
+        } else {
+            polygon.update(node);
+            contents.setConstraint(polygon, polygon.getBounds());
+        }
 
         if (node.hasAttr("inbus")) {
-            final PolylineConnection conn = createBusConnexion(contents, node,
-                    ColorConstants.red, "inbus", "bus to");
-            conn.setLineWidth(2);
+            staleConnections.remove(createBusConnexion(contents, node,
+                    ColorConstants.red, "inbus", "bus to", 2, false));
         }
         if (node.hasAttr("outbus")) {
-            final PolylineConnection conn = createBusConnexion(contents, node,
-                    ColorConstants.blue, "outbus", "bus from");
-            conn.setLineWidth(2);
+            staleConnections.remove(createBusConnexion(contents, node,
+                    ColorConstants.blue, "outbus", "bus from", 2, false));
         }
         if (node.hasAttr("tobus")) {
-            @SuppressWarnings("unused")
-            final PolylineConnection conn = createBusConnexion(contents, node,
-                    ColorConstants.blue, "tobus", "bus from");
+            staleConnections.remove(createBusConnexion(contents, node,
+                    ColorConstants.blue, "tobus", "bus from", 1, false));
         }
         if (node.hasAttr("frombus")) {
-            final PolylineConnection conn = createBusConnexion(contents, node,
-                    ColorConstants.red, "frombus", "bus to");
-            final PolygonDecoration dec = new PolygonDecoration();
-            conn.setTargetDecoration(dec);
+            staleConnections.remove(createBusConnexion(contents, node,
+                    ColorConstants.red, "frombus", "bus to", 1, true));
         }
+        return polygon;
     }
 
     /**
+     * Builds or updates a bus connection.
+     *
      * @param contents Draw2dGraph
      * @param node IVertex
      * @param color Color
+     * @param busId String
      * @param busLabel String
-     * @param busId String String
-     * @return PolylineConnection
+     * @param lineWidth int
+     * @param decorated boolean
+     * @return the key of the connection
      */
-    private PolylineConnection createBusConnexion(final Draw2dGraph contents,
+    private String createBusConnexion(final Draw2dGraph contents,
             final IVertex node, final Color color,
-            final String busId, final String busLabel) {
-        final PolylineConnection conn = addConnectionFromRoute(contents, null,
-                (DotRoute) node.getAttr(busId));
+            final String busId, final String busLabel, final int lineWidth,
+            final boolean decorated) {
+        final String key = "bus:" + busId + ":" + node.getName();
+        GraphConnection conn = (GraphConnection) contents.getConnection(key);
+        if (conn == null) {
+            conn = new GraphConnection();
+            if (decorated) {
+                final PolygonDecoration dec = new PolygonDecoration();
+                conn.setTargetDecoration(dec);
+            }
+        }
+        final Rectangle bounds = applyRoute(conn, null,
+                LayoutRoute.valueOf(node.getAttr(busId)));
         conn.setForegroundColor(color);
-        contents.add(conn, conn.getBounds());
-        final Label label = new Label(busLabel + " " + node.getName(),
-                Application.getInstance().getImage(Application.LINK_ICON));
-        label.setFont(Application.getInstance().getBoldFont(Application.TOOLTIP_FONT));
-        conn.setToolTip(label);
-        return conn;
+        conn.setLineWidth(lineWidth);
+        conn.setBusLabel(busLabel + " " + node.getName());
+        contents.addConnection(key, conn, bounds);
+        return key;
     }
 
 }
@@ -28,10 +28,10 @@
 
 package net.ggtools.grand.ui.graph.draw2d;
 
+import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.FlatteningPathIterator;
 import java.awt.geom.PathIterator;
-import java.awt.geom.Rectangle2D;
 
 import net.ggtools.grand.graph.Node;
 import net.ggtools.grand.ui.graph.DotGraphAttributes;
@@ -40,20 +40,23 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eclipse.draw2d.BorderLayout;
 import org.eclipse.draw2d.FigureUtilities;
+import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.Label;
 import org.eclipse.draw2d.Polygon;
+import org.eclipse.draw2d.geometry.PointList;
 import org.eclipse.draw2d.geometry.PrecisionPoint;
+import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.swt.graphics.Color;
 
 import sf.jzgraph.IVertex;
-import sf.jzgraph.impl.GraphShape;
 
 /**
  * The graphical representation of a node.
  *
  * @author Christophe Labouisse
  */
-public class Draw2dNode extends Polygon implements DotGraphAttributes {
+public class Draw2dNode extends Polygon implements DotGraphAttributes, TooltipCache.Source {
     /**
      * Field log.
      */
@@ -62,7 +65,6 @@ public class Draw2dNode extends Polygon implements DotGraphAttributes {
     /**
      * Field graph.
      */
-    @SuppressWarnings("unused")
     private final Draw2dGraph graph;
 
     /**
@@ -78,12 +80,18 @@ public class Draw2dNode extends Polygon implements DotGraphAttributes {
     /**
      * Field nodeBgColor.
      */
-    private final Color nodeBgColor;
+    private Color nodeBgColor;
 
     /**
      * Field nodeFgColor.
      */
-    private final Color nodeFgColor;
+    private Color nodeFgColor;
+
+    /**
+     * Field repaintSuppressed, set while the selection state is changed as
+     * part of a batch repainted by the graph.
+     */
+    private boolean repaintSuppressed;
 
     /**
      * Field selected.
@@ -93,73 +101,40 @@ public class Draw2dNode extends Polygon implements DotGraphAttributes {
     /**
      * Field selectedBgColor.
      */
-    private final Color selectedBgColor;
+    private Color selectedBgColor;
 
     /**
      * Field vertex.
      */
-    private final IVertex vertex;
+    private IVertex vertex;
 
     /**
      * Constructor for Draw2dNode.
      * @param graph Draw2dGraph
      * @param vertex IVertex
      */
-    @SuppressWarnings("unused")
     public Draw2dNode(final Draw2dGraph graph, final IVertex vertex) {
         super();
 
-        this.vertex = vertex;
         selected = false;
         this.graph = graph;
-
-        nodeFgColor = (Color) vertex.getAttr(DRAW2DFGCOLOR_ATTR);
-        nodeBgColor = (Color) vertex.getAttr(DRAW2DFILLCOLOR_ATTR);
-        selectedBgColor = FigureUtilities.darker(nodeBgColor);
-
-        final Rectangle2D rect = (Rectangle2D) vertex.getAttr(_BOUNDS_ATTR);
-        final int x = (int) rect.getX();
-        final int y = (int) rect.getY();
-        final int width = (int) rect.getWidth();
-        final int height = (int) rect.getHeight();
-
-        setForegroundColor(nodeFgColor);
-        setBackgroundColor(nodeBgColor);
-        setLineWidth(vertex.getAttrInt(DRAW2DLINEWIDTH_ATTR));
+        name = vertex.getAttrString(LABEL_ATTR);
+        label = new Label();
+        setLayoutManager(new BorderLayout());
+        add(label, BorderLayout.CENTER);
         setOpaque(true);
         // Polygon extends Polyline that does setFill(false) since GEF 3.1
         setFill(true);
+        update(vertex);
+    }
 
-        final GraphShape shape = (GraphShape) vertex.getAttr(_SHAPE_ATTR);
-        final float[] coords = new float[6];
-        for (final PathIterator ite =
-                new FlatteningPathIterator(shape.getPathIterator(new AffineTransform()), PATH_ITERATOR_FLATNESS);
-                !ite.isDone(); ite.next()) {
-            final int segType = ite.currentSegment(coords);
-
-            switch (segType) {
-            case PathIterator.SEG_MOVETO:
-            case PathIterator.SEG_LINETO:
-                addPoint(new PrecisionPoint(coords[0], coords[1]));
-                break;
-
-            case PathIterator.SEG_CLOSE:
-                // Do nothing but no error
-                break;
-
-            default:
-                LOG.error("Unexpected segment type " + segType);
-                break;
-            }
-        }
-
-        label = new Label();
-
-        name = vertex.getAttrString(LABEL_ATTR);
-        label.setText(name);
-        label.setForegroundColor(nodeFgColor);
-        setLayoutManager(new BorderLayout());
-        add(label, BorderLayout.CENTER);
+    /**
+     * Creates the tooltip describing the node, called on first hover.
+     * @return IFigure
+     * @see net.ggtools.grand.ui.graph.draw2d.TooltipCache.Source#createToolTip()
+     */
+    public final IFigure createToolTip() {
+        return new NodeTooltip(vertex);
     }
 
     /**
@@ -178,6 +153,16 @@ public class Draw2dNode extends Polygon implements DotGraphAttributes {
         return (Node) vertex.getData();
     }
 
+    /**
+     * Method getToolTip.
+     * @return IFigure
+     * @see org.eclipse.draw2d.IFigure#getToolTip()
+     */
+    @Override
+    public final IFigure getToolTip() {
+        return graph.getTooltipCache().get(this);
+    }
+
     /**
      * @return Returns the vertex.
      */
@@ -192,6 +177,25 @@ public class Draw2dNode extends Polygon implements DotGraphAttributes {
         return selected;
     }
 
+    /**
+     * Discards the cached tiles covering the area before repainting it.
+     * @param x int
+     * @param y int
+     * @param w int
+     * @param h int
+     * @see org.eclipse.draw2d.IFigure#repaint(int, int, int, int)
+     */
+    @Override
+    public final void repaint(final int x, final int y, final int w, final int h) {
+        if (repaintSuppressed) {
+            return;
+        }
+        if (graph != null) {
+            graph.invalidateTiles(new Rectangle(x, y, w, h));
+        }
+        super.repaint(x, y, w, h);
+    }
+
     /**
      * @param selected
      *            The selected to set.
@@ -208,6 +212,98 @@ public class Draw2dNode extends Polygon implements DotGraphAttributes {
         }
     }
 
+    /**
+     * Changes the selection state without repainting, the caller being in
+     * charge of it.
+     *
+     * @param newSelected boolean
+     * @return <code>true</code> if the state changed.
+     */
+    final boolean setSelectedWithoutRepaint(final boolean newSelected) {
+        if (newSelected == selected) {
+            return false;
+        }
+        repaintSuppressed = true;
+        try {
+            setSelected(newSelected);
+        } finally {
+            repaintSuppressed = false;
+        }
+        return true;
+    }
+
+    /**
+     * Paints the node without its label, used when the graph is zoomed out
+     * too much for the details to be readable.
+     *
+     * @param graphics Graphics
+     * @param flat
+     *            if <code>true</code> the node is painted as a flat
+     *            rectangle rather than with its shape.
+     */
+    final void paintSimplified(final Graphics graphics, final boolean flat) {
+        graphics.pushState();
+        graphics.setForegroundColor(getForegroundColor());
+        graphics.setBackgroundColor(getBackgroundColor());
+        if (flat) {
+            graphics.fillRectangle(getBounds());
+        } else {
+            graphics.setLineWidth(getLineWidth());
+            fillShape(graphics);
+            outlineShape(graphics);
+        }
+        graphics.popState();
+    }
+
+    /**
+     * Updates the node from a newly laid out vertex having the same name:
+     * shape, position, colors and line width are taken from the vertex while
+     * the selection state is kept.
+     *
+     * @param newVertex IVertex
+     */
+    public final void update(final IVertex newVertex) {
+        vertex = newVertex;
+        graph.getTooltipCache().invalidate(this);
+
+        nodeFgColor = (Color) vertex.getAttr(DRAW2DFGCOLOR_ATTR);
+        nodeBgColor = (Color) vertex.getAttr(DRAW2DFILLCOLOR_ATTR);
+        selectedBgColor = FigureUtilities.darker(nodeBgColor);
+
+        setForegroundColor(nodeFgColor);
+        setBackgroundColor(selected ? selectedBgColor : nodeBgColor);
+        setLineWidth(vertex.getAttrInt(DRAW2DLINEWIDTH_ATTR));
+
+        // A GraphShape from Dot or a GeneralPath from the layout cache.
+        final Shape shape = (Shape) vertex.getAttr(_SHAPE_ATTR);
+        final PointList points = new PointList();
+        final float[] coords = new float[6];
+        for (final PathIterator ite =
+                new FlatteningPathIterator(shape.getPathIterator(new AffineTransform()), PATH_ITERATOR_FLATNESS);
+                !ite.isDone(); ite.next()) {
+            final int segType = ite.currentSegment(coords);
+
+            switch (segType) {
+            case PathIterator.SEG_MOVETO:
+            case PathIterator.SEG_LINETO:
+                points.addPoint(new PrecisionPoint(coords[0], coords[1]));
+                break;
+
+            case PathIterator.SEG_CLOSE:
+                // Do nothing but no error
+                break;
+
+            default:
+                LOG.error("Unexpected segment type " + segType);
+                break;
+            }
+        }
+        setPoints(points);
+
+        label.setText(name);
+        label.setForegroundColor(nodeFgColor);
+    }
+
     /**
      * Method toString.
      * @return String
@@ -0,0 +1,249 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph.draw2d;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * A uniform grid indexing figures by their bounds. A figure may be indexed
+ * with several rectangles, for instance one per segment of a connection, and
+ * is registered in all the cells these rectangles overlap. This allows to
+ * find the figures in an area or under a point without scanning all of them.
+ *
+ * @author Christophe Labouisse
+ */
+final class FigureGrid {
+
+    /**
+     * Field cells.
+     */
+    private final Map<Long, List<IFigure>> cells = new HashMap<Long, List<IFigure>>();
+
+    /**
+     * Field cellSize.
+     */
+    private final int cellSize;
+
+    /**
+     * Field figureCells, the keys of the cells each figure is registered in.
+     */
+    private final Map<IFigure, Set<Long>> figureCells = new HashMap<IFigure, Set<Long>>();
+
+    /**
+     * Field indexedBounds, the rectangles each figure was indexed with.
+     */
+    private final Map<IFigure, List<Rectangle>> indexedBounds =
+            new HashMap<IFigure, List<Rectangle>>();
+
+    /**
+     * Creates a new grid.
+     *
+     * @param cellSize
+     *            the width and height of the cells.
+     */
+    FigureGrid(final int cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Removes all the figures.
+     */
+    void clear() {
+        cells.clear();
+        figureCells.clear();
+        indexedBounds.clear();
+    }
+
+    /**
+     * Gets the rectangles a figure was indexed with.
+     *
+     * @param figure IFigure
+     * @return the rectangles or <code>null</code> if the figure is not
+     *         indexed.
+     */
+    List<Rectangle> getBounds(final IFigure figure) {
+        final List<Rectangle> bounds = indexedBounds.get(figure);
+        return (bounds == null) ? null : Collections.unmodifiableList(bounds);
+    }
+
+    /**
+     * Adds a figure or updates its bounds.
+     *
+     * @param figure IFigure
+     * @param bounds Rectangle
+     */
+    void put(final IFigure figure, final Rectangle bounds) {
+        put(figure, Collections.singletonList(bounds));
+    }
+
+    /**
+     * Adds a figure or updates its bounds.
+     *
+     * @param figure IFigure
+     * @param bounds
+     *            the rectangles covering the figure.
+     */
+    void put(final IFigure figure, final Collection<Rectangle> bounds) {
+        remove(figure);
+        final List<Rectangle> copies = new ArrayList<Rectangle>(bounds.size());
+        final Set<Long> keys = new HashSet<Long>();
+        for (final Rectangle rect : bounds) {
+            copies.add(rect.getCopy());
+            final int maxX = cellIndex(rect.right());
+            final int maxY = cellIndex(rect.bottom());
+            for (int x = cellIndex(rect.x); x <= maxX; x++) {
+                for (int y = cellIndex(rect.y); y <= maxY; y++) {
+                    keys.add(cellKey(x, y));
+                }
+            }
+        }
+        indexedBounds.put(figure, copies);
+        figureCells.put(figure, keys);
+        for (final Long key : keys) {
+            List<IFigure> cell = cells.get(key);
+            if (cell == null) {
+                cell = new ArrayList<IFigure>();
+                cells.put(key, cell);
+            }
+            cell.add(figure);
+        }
+    }
+
+    /**
+     * Gets the figures indexed with a rectangle containing a point. The
+     * figures are returned in no particular order.
+     *
+     * @param x int
+     * @param y int
+     * @return List&lt;IFigure&gt;
+     */
+    List<IFigure> query(final int x, final int y) {
+        final List<IFigure> cell = cells.get(cellKey(cellIndex(x), cellIndex(y)));
+        if (cell == null) {
+            return Collections.emptyList();
+        }
+        final List<IFigure> result = new ArrayList<IFigure>();
+        for (final IFigure figure : cell) {
+            for (final Rectangle rect : indexedBounds.get(figure)) {
+                if (rect.contains(x, y)) {
+                    result.add(figure);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the figures indexed with a rectangle intersecting an area. The
+     * figures are returned in no particular order, each one only once.
+     *
+     * @param area Rectangle
+     * @return List&lt;IFigure&gt;
+     */
+    List<IFigure> query(final Rectangle area) {
+        final Set<IFigure> found = new HashSet<IFigure>();
+        final List<IFigure> result = new ArrayList<IFigure>();
+        final int maxX = cellIndex(area.right());
+        final int maxY = cellIndex(area.bottom());
+        for (int x = cellIndex(area.x); x <= maxX; x++) {
+            for (int y = cellIndex(area.y); y <= maxY; y++) {
+                final List<IFigure> cell = cells.get(cellKey(x, y));
+                if (cell != null) {
+                    for (final IFigure figure : cell) {
+                        if (!found.contains(figure)) {
+                            for (final Rectangle rect : indexedBounds.get(figure)) {
+                                if (rect.intersects(area)) {
+                                    found.add(figure);
+                                    result.add(figure);
+                                    break;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes a figure.
+     *
+     * @param figure IFigure
+     */
+    void remove(final IFigure figure) {
+        indexedBounds.remove(figure);
+        final Set<Long> keys = figureCells.remove(figure);
+        if (keys != null) {
+            for (final Long key : keys) {
+                final List<IFigure> cell = cells.get(key);
+                if (cell != null) {
+                    cell.remove(figure);
+                    if (cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of indexed figures.
+     */
+    int size() {
+        return indexedBounds.size();
+    }
+
+    /**
+     * @param coord int
+     * @return the index of the cell containing the coordinate.
+     */
+    private int cellIndex(final int coord) {
+        return (int) Math.floor((double) coord / cellSize);
+    }
+
+    /**
+     * @param x int
+     * @param y int
+     * @return the key of a cell.
+     */
+    private static Long cellKey(final int x, final int y) {
+        return Long.valueOf(((long) x << 32) | (y & 0xffffffffL));
+    }
+}
@@ -0,0 +1,138 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph.draw2d;
+
+import net.ggtools.grand.ui.Application;
+
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.Label;
+import org.eclipse.draw2d.PolylineConnection;
+import org.eclipse.draw2d.geometry.Rectangle;
+
+import sf.jzgraph.IEdge;
+
+/**
+ * A connection of the graph, either a link between two nodes or a bus. Its
+ * tooltip is built on demand and kept in the graph's tooltip cache.
+ * Repainting the connection discards the graph's tiles it covers.
+ *
+ * @author Christophe Labouisse
+ */
+class GraphConnection extends PolylineConnection implements TooltipCache.Source {
+    /**
+     * Field busLabel.
+     */
+    private String busLabel;
+
+    /**
+     * Field edge.
+     */
+    private IEdge edge;
+
+    /**
+     * Method createToolTip.
+     * @return IFigure
+     * @see net.ggtools.grand.ui.graph.draw2d.TooltipCache.Source#createToolTip()
+     */
+    public final IFigure createToolTip() {
+        if (edge != null) {
+            return new LinkTooltip(edge);
+        }
+        if (busLabel != null) {
+            final Label label = new Label(busLabel,
+                    Application.getInstance().getImage(Application.LINK_ICON));
+            label.setFont(Application.getInstance().getBoldFont(Application.TOOLTIP_FONT));
+            return label;
+        }
+        return null;
+    }
+
+    /**
+     * Method getToolTip.
+     * @return IFigure
+     * @see org.eclipse.draw2d.IFigure#getToolTip()
+     */
+    @Override
+    public final IFigure getToolTip() {
+        if (getParent() instanceof Draw2dGraph) {
+            return ((Draw2dGraph) getParent()).getTooltipCache().get(this);
+        }
+        return null;
+    }
+
+    /**
+     * Discards the cached tiles covering the area before repainting it.
+     * @param x int
+     * @param y int
+     * @param w int
+     * @param h int
+     * @see org.eclipse.draw2d.IFigure#repaint(int, int, int, int)
+     */
+    @Override
+    public final void repaint(final int x, final int y, final int w, final int h) {
+        if (getParent() instanceof Draw2dGraph) {
+            ((Draw2dGraph) getParent()).invalidateTiles(new Rectangle(x, y, w, h));
+        }
+        super.repaint(x, y, w, h);
+    }
+
+    /**
+     * Sets the text of a bus connection's tooltip.
+     *
+     * @param busLabel String
+     */
+    public final void setBusLabel(final String busLabel) {
+        if (!busLabel.equals(this.busLabel)) {
+            this.busLabel = busLabel;
+            edge = null;
+            invalidateToolTip();
+        }
+    }
+
+    /**
+     * Sets the edge described by a link's tooltip.
+     *
+     * @param edge IEdge
+     */
+    public final void setEdge(final IEdge edge) {
+        if (edge != this.edge) {
+            this.edge = edge;
+            busLabel = null;
+            invalidateToolTip();
+        }
+    }
+
+    /**
+     * Discards the tooltip built for the previous edge or label.
+     */
+    private void invalidateToolTip() {
+        if (getParent() instanceof Draw2dGraph) {
+            ((Draw2dGraph) getParent()).getTooltipCache().invalidate(this);
+        }
+    }
+}
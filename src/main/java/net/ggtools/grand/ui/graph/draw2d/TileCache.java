@@ -0,0 +1,243 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph.draw2d;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.swt.graphics.Image;
+
+/**
+ * A least recently used cache of rendered tiles of a graph.
+ * <p>
+ * Tiles are square images of {@link #TILE_SIZE} pixels, identified by the
+ * zoom they were rendered at and their column and row in the zoomed graph.
+ * The cache keeps as many tiles as fit in its memory budget, disposing the
+ * least recently used ones. It must only be used from the display thread.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+final class TileCache {
+    /**
+     * Key of a tile.
+     */
+    private static final class TileKey {
+        /**
+         * Field column.
+         */
+        private final int column;
+
+        /**
+         * Field row.
+         */
+        private final int row;
+
+        /**
+         * Field zoom.
+         */
+        private final float zoom;
+
+        /**
+         * Constructor for TileKey.
+         * @param zoom float
+         * @param column int
+         * @param row int
+         */
+        private TileKey(final float zoom, final int column, final int row) {
+            this.zoom = zoom;
+            this.column = column;
+            this.row = row;
+        }
+
+        /**
+         * Method equals.
+         * @param obj Object
+         * @return boolean
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            final TileKey other = (TileKey) obj;
+            return column == other.column && row == other.row
+                    && Float.floatToIntBits(zoom) == Float.floatToIntBits(other.zoom);
+        }
+
+        /**
+         * Method hashCode.
+         * @return int
+         */
+        @Override
+        public int hashCode() {
+            return (Float.floatToIntBits(zoom) * 31 + column) * 31 + row;
+        }
+    }
+
+    /**
+     * Field BYTES_PER_PIXEL, a conservative estimate of the memory used by
+     * an image pixel.
+     * (value is {@value #BYTES_PER_PIXEL})
+     */
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(TileCache.class);
+
+    /**
+     * Field TILE_SIZE.
+     * (value is {@value #TILE_SIZE})
+     */
+    static final int TILE_SIZE = 256;
+
+    /**
+     * Field TILE_BYTES.
+     * (value is {@value #TILE_BYTES})
+     */
+    private static final long TILE_BYTES = (long) TILE_SIZE * TILE_SIZE * BYTES_PER_PIXEL;
+
+    /**
+     * Field maxTiles.
+     */
+    private int maxTiles;
+
+    /**
+     * Field tiles.
+     */
+    private final LinkedHashMap<TileKey, Image> tiles =
+            new LinkedHashMap<TileKey, Image>(16, 0.75f, true);
+
+    /**
+     * Creates a new cache.
+     *
+     * @param budget
+     *            the maximum memory used by the tiles, in bytes.
+     */
+    TileCache(final long budget) {
+        setBudget(budget);
+    }
+
+    /**
+     * Disposes all the tiles.
+     */
+    void clear() {
+        for (final Image image : tiles.values()) {
+            image.dispose();
+        }
+        tiles.clear();
+    }
+
+    /**
+     * Gets a tile.
+     *
+     * @param zoom float
+     * @param column int
+     * @param row int
+     * @return the tile image or <code>null</code> if not in the cache.
+     */
+    Image get(final float zoom, final int column, final int row) {
+        return tiles.get(new TileKey(zoom, column, row));
+    }
+
+    /**
+     * Disposes the tiles covering an area of the graph, at all zooms.
+     *
+     * @param area
+     *            the area in unzoomed graph coordinates.
+     */
+    void invalidate(final Rectangle area) {
+        for (final Iterator<Map.Entry<TileKey, Image>> iter = tiles.entrySet().iterator(); iter
+                .hasNext();) {
+            final Map.Entry<TileKey, Image> entry = iter.next();
+            final TileKey key = entry.getKey();
+            final Rectangle zoomed = area.getScaled(key.zoom).expand(1, 1);
+            if (zoomed.intersects(new Rectangle(key.column * TILE_SIZE, key.row * TILE_SIZE,
+                    TILE_SIZE, TILE_SIZE))) {
+                entry.getValue().dispose();
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the budget allows to keep at least a
+     *         tile.
+     */
+    boolean isEnabled() {
+        return maxTiles > 0;
+    }
+
+    /**
+     * Adds a tile, disposing the least recently used ones if the budget is
+     * exceeded.
+     *
+     * @param zoom float
+     * @param column int
+     * @param row int
+     * @param image Image
+     */
+    void put(final float zoom, final int column, final int row, final Image image) {
+        final Image previous = tiles.put(new TileKey(zoom, column, row), image);
+        if (previous != null && previous != image) {
+            previous.dispose();
+        }
+        trim();
+    }
+
+    /**
+     * Sets the memory budget.
+     *
+     * @param budget
+     *            the maximum memory used by the tiles, in bytes.
+     */
+    void setBudget(final long budget) {
+        maxTiles = (int) Math.min(Integer.MAX_VALUE, budget / TILE_BYTES);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Keeping up to " + maxTiles + " tiles");
+        }
+        trim();
+    }
+
+    /**
+     * Disposes the least recently used tiles until the budget is met.
+     */
+    private void trim() {
+        for (final Iterator<Image> iter = tiles.values().iterator(); tiles.size() > maxTiles
+                && iter.hasNext();) {
+            iter.next().dispose();
+            iter.remove();
+        }
+    }
+}
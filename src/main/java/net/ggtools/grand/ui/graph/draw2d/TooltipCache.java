@@ -0,0 +1,127 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph.draw2d;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.draw2d.IFigure;
+
+/**
+ * A small LRU of tooltip figures. Tooltips are only created when a figure is
+ * hovered for the first time rather than when the graph is rendered, and
+ * only the most recently used ones are kept.
+ *
+ * @author Christophe Labouisse
+ */
+final class TooltipCache {
+    /**
+     * A figure able to create its tooltip on demand.
+     *
+     * @author Christophe Labouisse
+     */
+    interface Source {
+        /**
+         * Creates the tooltip figure.
+         *
+         * @return IFigure
+         */
+        IFigure createToolTip();
+    }
+
+    /**
+     * Field DEFAULT_CAPACITY.
+     * (value is {@value #DEFAULT_CAPACITY})
+     */
+    static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * Field tooltips.
+     */
+    private final Map<Source, IFigure> tooltips;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param capacity
+     *            the maximum number of tooltips kept.
+     */
+    TooltipCache(final int capacity) {
+        tooltips = new LinkedHashMap<Source, IFigure>(capacity + 1, 1.0f, true) {
+            /**
+             * Field serialVersionUID.
+             * (value is {@value #serialVersionUID})
+             */
+            private static final long serialVersionUID = 1L;
+
+            /**
+             * @param eldest Map.Entry&lt;Source,IFigure&gt;
+             * @return boolean
+             * @see java.util.LinkedHashMap#removeEldestEntry(Map.Entry)
+             */
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Source, IFigure> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Removes all the tooltips.
+     */
+    void clear() {
+        tooltips.clear();
+    }
+
+    /**
+     * Gets the tooltip of a figure, creating it if needed.
+     *
+     * @param source Source
+     * @return IFigure
+     */
+    IFigure get(final Source source) {
+        IFigure tooltip = tooltips.get(source);
+        if (tooltip == null) {
+            tooltip = source.createToolTip();
+            if (tooltip != null) {
+                tooltips.put(source, tooltip);
+            }
+        }
+        return tooltip;
+    }
+
+    /**
+     * Discards the tooltip of a figure, for instance when the element it
+     * describes has changed.
+     *
+     * @param source Source
+     */
+    void invalidate(final Source source) {
+        tooltips.remove(source);
+    }
+}
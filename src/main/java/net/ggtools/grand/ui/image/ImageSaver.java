@@ -33,6 +33,9 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -51,27 +54,360 @@ import org.eclipse.swt.graphics.RGB;
 public class ImageSaver {
 
     /**
+     * A histogram of packed RGB colors using open addressing, avoiding
+     * an object per pixel.
+     *
      * @author Christophe Labouisse
      */
-    private static class ColorCounter implements Comparable<ColorCounter> {
+    private static final class ColorHistogram {
+
+        /**
+         * Field INITIAL_CAPACITY, must be a power of two.
+         * (value is {@value #INITIAL_CAPACITY})
+         */
+        private static final int INITIAL_CAPACITY = 1024;
+
+        /**
+         * Field colors.
+         */
+        private int[] colors;
+
+        /**
+         * Field counts, the number of pixels for a color or, once
+         * {@link #mapColors(int[], int)} has been called, the palette index.
+         */
+        private int[] counts;
+
+        /**
+         * Field size.
+         */
+        private int size = 0;
 
         /**
-         * Field count.
+         * Constructor for ColorHistogram.
          */
-        int count;
+        private ColorHistogram() {
+            colors = new int[INITIAL_CAPACITY];
+            counts = new int[INITIAL_CAPACITY];
+            Arrays.fill(colors, EMPTY_COLOR);
+        }
 
         /**
-         * Field rgb.
+         * Adds pixels of a color.
+         * @param color the packed RGB color.
+         * @param count int
          */
-        RGB rgb;
+        private void add(final int color, final int count) {
+            final int slot = slotOf(color);
+            if (colors[slot] == EMPTY_COLOR) {
+                colors[slot] = color;
+                counts[slot] = count;
+                size++;
+                if (size * 2 > colors.length) {
+                    grow();
+                }
+            } else {
+                counts[slot] += count;
+            }
+        }
 
         /**
-         * Method compareTo.
-         * @param o ColorCounter
+         * Adds all the colors of another histogram.
+         * @param other ColorHistogram
+         */
+        private void addAll(final ColorHistogram other) {
+            for (int i = 0; i < other.colors.length; i++) {
+                if (other.colors[i] != EMPTY_COLOR) {
+                    add(other.colors[i], other.counts[i]);
+                }
+            }
+        }
+
+        /**
+         * Gets the value associated to a color present in the histogram.
+         * @param color the packed RGB color.
          * @return int
          */
-        public int compareTo(final ColorCounter o) {
-            return o.count - count;
+        private int get(final int color) {
+            return counts[slotOf(color)];
+        }
+
+        /**
+         * Doubles the capacity.
+         */
+        private void grow() {
+            final int[] oldColors = colors;
+            final int[] oldCounts = counts;
+            colors = new int[oldColors.length * 2];
+            counts = new int[oldColors.length * 2];
+            Arrays.fill(colors, EMPTY_COLOR);
+            size = 0;
+            for (int i = 0; i < oldColors.length; i++) {
+                if (oldColors[i] != EMPTY_COLOR) {
+                    add(oldColors[i], oldCounts[i]);
+                }
+            }
+        }
+
+        /**
+         * Replaces the count of each color by the index of the closest
+         * palette entry, giving an inverse color map for all the colors
+         * of the image.
+         * @param palette the packed RGB colors of the palette.
+         * @param n the number of palette entries to consider.
+         */
+        private void mapColors(final int[] palette, final int n) {
+            for (int i = 0; i < colors.length; i++) {
+                if (colors[i] != EMPTY_COLOR) {
+                    counts[i] = closest(palette, n, colors[i]);
+                }
+            }
+        }
+
+        /**
+         * Returns the colors sorted by decreasing frequency.
+         * @return int[]
+         */
+        private int[] sortedColors() {
+            final long[] entries = new long[size];
+            int j = 0;
+            for (int i = 0; i < colors.length; i++) {
+                if (colors[i] != EMPTY_COLOR) {
+                    // Decreasing count, then increasing color.
+                    entries[j++] = ((long) (Integer.MAX_VALUE - counts[i]) << 24) | colors[i];
+                }
+            }
+            Arrays.sort(entries);
+            final int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = (int) (entries[i] & 0xffffff);
+            }
+            return result;
+        }
+
+        /**
+         * Finds the slot of a color, either the one holding it or the
+         * empty one where it should go.
+         * @param color int
+         * @return int
+         */
+        private int slotOf(final int color) {
+            final int mask = colors.length - 1;
+            final int hash = color * 0x9e3779b1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while ((colors[slot] != EMPTY_COLOR) && (colors[slot] != color)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Computes the histogram of a range of rows.
+     *
+     * @author Christophe Labouisse
+     */
+    private static final class HistogramTask extends RecursiveTask<ColorHistogram> {
+
+        /**
+         * Field serialVersionUID.
+         * (value is {@value #serialVersionUID})
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Field data.
+         */
+        private final ImageData data;
+
+        /**
+         * Field endRow, exclusive.
+         */
+        private final int endRow;
+
+        /**
+         * Field lut, the packed RGB color of each pixel value for
+         * indexed images.
+         */
+        private final int[] lut;
+
+        /**
+         * Field startRow.
+         */
+        private final int startRow;
+
+        /**
+         * Constructor for HistogramTask.
+         * @param data ImageData
+         * @param lut int[]
+         * @param startRow int
+         * @param endRow int
+         */
+        private HistogramTask(final ImageData data, final int[] lut, final int startRow,
+                final int endRow) {
+            this.data = data;
+            this.lut = lut;
+            this.startRow = startRow;
+            this.endRow = endRow;
+        }
+
+        /**
+         * Method compute.
+         * @return ColorHistogram
+         * @see java.util.concurrent.RecursiveTask#compute()
+         */
+        @Override
+        protected ColorHistogram compute() {
+            if (endRow - startRow > ROWS_PER_TASK) {
+                final int middle = (startRow + endRow) >>> 1;
+                final HistogramTask top = new HistogramTask(data, lut, startRow, middle);
+                top.fork();
+                final ColorHistogram result =
+                        new HistogramTask(data, lut, middle, endRow).compute();
+                result.addAll(top.join());
+                return result;
+            }
+
+            final ColorHistogram histogram = new ColorHistogram();
+            final int width = data.width;
+            final int[] pixels = new int[width];
+            for (int y = startRow; y < endRow; ++y) {
+                data.getPixels(0, y, width, pixels, 0);
+                toPackedColors(data.palette, lut, pixels);
+                // Count runs, graphs are mostly made of uniform areas.
+                int x = 0;
+                while (x < width) {
+                    final int color = pixels[x];
+                    final int start = x;
+                    while ((x < width) && (pixels[x] == color)) {
+                        x++;
+                    }
+                    histogram.add(color, x - start);
+                }
+            }
+            return histogram;
+        }
+    }
+
+    /**
+     * Maps the pixels of a range of rows to the new palette.
+     *
+     * @author Christophe Labouisse
+     */
+    private static final class MappingTask extends RecursiveAction {
+
+        /**
+         * Field serialVersionUID.
+         * (value is {@value #serialVersionUID})
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Field data.
+         */
+        private final ImageData data;
+
+        /**
+         * Field endRow, exclusive.
+         */
+        private final int endRow;
+
+        /**
+         * Field inverseMap.
+         */
+        private final ColorHistogram inverseMap;
+
+        /**
+         * Field lut, the packed RGB color of each pixel value for
+         * indexed images.
+         */
+        private final int[] lut;
+
+        /**
+         * Field mask.
+         */
+        private final ImageData mask;
+
+        /**
+         * Field newData.
+         */
+        private final ImageData newData;
+
+        /**
+         * Field startRow.
+         */
+        private final int startRow;
+
+        /**
+         * Field transparentIndex.
+         */
+        private final int transparentIndex;
+
+        /**
+         * Constructor for MappingTask.
+         * @param data ImageData
+         * @param lut int[]
+         * @param mask ImageData
+         * @param inverseMap ColorHistogram
+         * @param newData ImageData
+         * @param transparentIndex int
+         * @param startRow int
+         * @param endRow int
+         */
+        private MappingTask(final ImageData data, final int[] lut, final ImageData mask,
+                final ColorHistogram inverseMap, final ImageData newData,
+                final int transparentIndex, final int startRow, final int endRow) {
+            this.data = data;
+            this.lut = lut;
+            this.mask = mask;
+            this.inverseMap = inverseMap;
+            this.newData = newData;
+            this.transparentIndex = transparentIndex;
+            this.startRow = startRow;
+            this.endRow = endRow;
+        }
+
+        /**
+         * Method compute.
+         * @see java.util.concurrent.RecursiveAction#compute()
+         */
+        @Override
+        protected void compute() {
+            if (endRow - startRow > ROWS_PER_TASK) {
+                final int middle = (startRow + endRow) >>> 1;
+                invokeAll(new MappingTask(data, lut, mask, inverseMap, newData,
+                        transparentIndex, startRow, middle), new MappingTask(data, lut, mask,
+                        inverseMap, newData, transparentIndex, middle, endRow));
+                return;
+            }
+
+            final int width = data.width;
+            final int[] pixels = new int[width];
+            final int[] maskPixels = new int[width];
+            final byte[] target = newData.data;
+            for (int y = startRow; y < endRow; ++y) {
+                data.getPixels(0, y, width, pixels, 0);
+                toPackedColors(data.palette, lut, pixels);
+                if (mask != null) {
+                    mask.getPixels(0, y, width, maskPixels, 0);
+                }
+                // Each task writes its own rows of the 8 bits image.
+                final int offset = y * newData.bytesPerLine;
+                int previousColor = EMPTY_COLOR;
+                int index = 0;
+                for (int x = 0; x < width; ++x) {
+                    if ((mask != null) && (maskPixels[x] == 0)) {
+                        target[offset + x] = (byte) transparentIndex;
+                    } else {
+                        final int color = pixels[x];
+                        if (color != previousColor) {
+                            index = inverseMap.get(color);
+                            previousColor = color;
+                        }
+                        target[offset + x] = (byte) index;
+                    }
+                }
+            }
         }
     }
 
@@ -109,6 +445,19 @@ public class ImageSaver {
         }
     }
 
+    /**
+     * Field EMPTY_COLOR, a value which is not a packed RGB color.
+     * (value is {@value #EMPTY_COLOR})
+     */
+    private static final int EMPTY_COLOR = -1;
+
+    /**
+     * Field ROWS_PER_TASK, the number of rows below which a task is not
+     * split.
+     * (value is {@value #ROWS_PER_TASK})
+     */
+    private static final int ROWS_PER_TASK = 64;
+
     /**
      * Field formatInitDone.
      */
@@ -132,19 +481,22 @@ public class ImageSaver {
 
     /**
      * Method closest.
-     * @param rgbs RGB[]
+     * @param rgbs the packed RGB colors of the palette.
      * @param n int
-     * @param rgb RGB
+     * @param rgb the packed RGB color to look for.
      * @return int
      */
-    private static int closest(final RGB[] rgbs, final int n, final RGB rgb) {
+    private static int closest(final int[] rgbs, final int n, final int rgb) {
+        final int red = (rgb >> 16) & 0xff;
+        final int green = (rgb >> 8) & 0xff;
+        final int blue = rgb & 0xff;
         int minDist = 256 * 256 * 3;
         int minIndex = 0;
         for (int i = 0; i < n; ++i) {
-            final RGB rgb2 = rgbs[i];
-            final int da = rgb2.red - rgb.red;
-            final int dg = rgb2.green - rgb.green;
-            final int db = rgb2.blue - rgb.blue;
+            final int rgb2 = rgbs[i];
+            final int da = ((rgb2 >> 16) & 0xff) - red;
+            final int dg = ((rgb2 >> 8) & 0xff) - green;
+            final int db = (rgb2 & 0xff) - blue;
             final int dist = da * da + dg * dg + db * db;
             if (dist < minDist) {
                 minDist = dist;
@@ -155,79 +507,115 @@ public class ImageSaver {
     }
 
     /**
-     * Method downSample.
-     * @param image Image
+     * Method downSample. The palette is made of the 256 (or fewer) most
+     * frequently used colors, with an extra entry for transparency.
+     * @param data ImageData
      * @return ImageData
      */
-    private static ImageData downSample(final Image image) {
-        final ImageData data = image.getImageData();
+    private static ImageData downSample(final ImageData data) {
         if (!data.palette.isDirect && (data.depth <= 8)) {
             return data;
         }
 
-        // compute a histogram of color frequencies
-        final Map<RGB, ColorCounter> freq = new HashMap<RGB, ColorCounter>();
-        final int width = data.width;
-        final int[] pixels = new int[width];
-        final int[] maskPixels = new int[width];
-        for (int y = 0, height = data.height; y < height; ++y) {
-            data.getPixels(0, y, width, pixels, 0);
-            for (int x = 0; x < width; ++x) {
-                final RGB rgb = data.palette.getRGB(pixels[x]);
-                ColorCounter counter = freq.get(rgb);
-                if (counter == null) {
-                    counter = new ColorCounter();
-                    counter.rgb = rgb;
-                    freq.put(rgb, counter);
-                }
-                counter.count++;
-            }
-        }
+        final int[] lut = data.palette.isDirect ? null : toPackedColors(data.palette.colors);
+        final ForkJoinPool pool = new ForkJoinPool();
+        try {
+            // compute a histogram of color frequencies
+            final ColorHistogram histogram =
+                    pool.invoke(new HistogramTask(data, lut, 0, data.height));
 
-        // sort colors by most frequently used
-        final ColorCounter[] counters = new ColorCounter[freq.size()];
-        freq.values().toArray(counters);
-        Arrays.sort(counters);
+            // pick the most frequently used 256 (or fewer), and make a palette
+            final int[] counters = histogram.sortedColors();
+            ImageData mask = null;
+            if ((data.transparentPixel != -1) || (data.maskData != null)) {
+                mask = data.getTransparencyMask();
+            }
+            final int n = Math.min(256, counters.length);
+            final RGB[] rgbs = new RGB[n + ((mask != null) ? 1 : 0)];
+            for (int i = 0; i < n; ++i) {
+                rgbs[i] = toRGB(counters[i]);
+            }
+            if (mask != null) {
+                rgbs[rgbs.length - 1] = (data.transparentPixel != -1) ? data.palette
+                        .getRGB(data.transparentPixel) : new RGB(255, 255, 255);
+            }
+            final PaletteData palette = new PaletteData(rgbs);
 
-        // pick the most frequently used 256 (or fewer), and make a palette
-        ImageData mask = null;
-        if ((data.transparentPixel != -1) || (data.maskData != null)) {
-            mask = data.getTransparencyMask();
-        }
-        final int n = Math.min(256, freq.size());
-        final RGB[] rgbs = new RGB[n + ((mask != null) ? 1 : 0)];
-        for (int i = 0; i < n; ++i) {
-            rgbs[i] = counters[i].rgb;
-        }
-        if (mask != null) {
-            rgbs[rgbs.length - 1] = (data.transparentPixel != -1) ? data.palette
-                    .getRGB(data.transparentPixel) : new RGB(255, 255, 255);
-        }
-        final PaletteData palette = new PaletteData(rgbs);
-
-        // create a new image using the new palette:
-        // for each pixel in the old image, look up the best matching
-        // index in the new palette
-        final ImageData newData = new ImageData(width, data.height, 8, palette);
-        if (mask != null) {
-            newData.transparentPixel = rgbs.length - 1;
-        }
-        for (int y = 0, height = data.height; y < height; ++y) {
-            data.getPixels(0, y, width, pixels, 0);
+            // create a new image using the new palette: the best matching
+            // index is computed once for each color of the old image.
+            histogram.mapColors(counters, n);
+            final ImageData newData = new ImageData(data.width, data.height, 8, palette);
             if (mask != null) {
-                mask.getPixels(0, y, width, maskPixels, 0);
+                newData.transparentPixel = rgbs.length - 1;
             }
-            for (int x = 0; x < width; ++x) {
-                if ((mask != null) && (maskPixels[x] == 0)) {
-                    pixels[x] = rgbs.length - 1;
-                } else {
-                    final RGB rgb = data.palette.getRGB(pixels[x]);
-                    pixels[x] = closest(rgbs, n, rgb);
-                }
+            pool.invoke(new MappingTask(data, lut, mask, histogram, newData, rgbs.length - 1, 0,
+                    data.height));
+            return newData;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Converts pixel values to packed RGB colors in place.
+     * @param palette the palette of the pixels.
+     * @param lut the packed colors of an indexed palette, <code>null</code>
+     *            for a direct one.
+     * @param pixels int[]
+     */
+    private static void toPackedColors(final PaletteData palette, final int[] lut,
+            final int[] pixels) {
+        if (lut != null) {
+            for (int x = 0; x < pixels.length; ++x) {
+                pixels[x] = lut[pixels[x]];
             }
-            newData.setPixels(0, y, width, pixels, 0);
+            return;
         }
-        return newData;
+        final int redMask = palette.redMask;
+        final int greenMask = palette.greenMask;
+        final int blueMask = palette.blueMask;
+        final int redShift = palette.redShift;
+        final int greenShift = palette.greenShift;
+        final int blueShift = palette.blueShift;
+        for (int x = 0; x < pixels.length; ++x) {
+            final int pixel = pixels[x];
+            pixels[x] = (shift(pixel & redMask, redShift) << 16)
+                    | (shift(pixel & greenMask, greenShift) << 8)
+                    | shift(pixel & blueMask, blueShift);
+        }
+    }
+
+    /**
+     * Converts the colors of an indexed palette to packed RGB colors.
+     * @param colors RGB[]
+     * @return int[]
+     */
+    private static int[] toPackedColors(final RGB[] colors) {
+        final int[] lut = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            lut[i] = (colors[i].red << 16) | (colors[i].green << 8) | colors[i].blue;
+        }
+        return lut;
+    }
+
+    /**
+     * Shifts a masked color component the way
+     * {@link PaletteData#getRGB(int)} does.
+     * @param value int
+     * @param shift int
+     * @return int
+     */
+    private static int shift(final int value, final int shift) {
+        return (shift < 0) ? value >>> -shift : value << shift;
+    }
+
+    /**
+     * Converts a packed color to a RGB.
+     * @param color int
+     * @return RGB
+     */
+    private static RGB toRGB(final int color) {
+        return new RGB((color >> 16) & 0xff, (color >> 8) & 0xff, color & 0xff);
     }
 
     /**
@@ -300,7 +688,7 @@ public class ImageSaver {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Downsampling image");
                 }
-                imageData = downSample(image);
+                imageData = downSample(imageData);
             }
 
             final ImageLoader imageLoader = new ImageLoader();
@@ -0,0 +1,428 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.image;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.graphics.RGB;
+
+/**
+ * A PNG encoder receiving the image by horizontal stripes. Each stripe is
+ * compressed and written as soon as it is received so the whole image
+ * never needs to be in memory.
+ * <p>
+ * The image is written as 8 bits RGB. The caller must supply exactly
+ * <code>height</code> rows and then call {@link #close()}.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+public class PngStreamWriter implements Closeable {
+
+    /**
+     * An output stream cutting the compressed data in IDAT chunks.
+     */
+    private static final class ChunkOutputStream extends OutputStream {
+        /**
+         * Field buffer.
+         */
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+
+        /**
+         * Field count.
+         */
+        private int count = 0;
+
+        /**
+         * Field out.
+         */
+        private final DataOutputStream out;
+
+        /**
+         * Constructor for ChunkOutputStream.
+         * @param out DataOutputStream
+         */
+        private ChunkOutputStream(final DataOutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Method close. Writes the last chunk, the underlying stream is
+         * left open.
+         * @throws IOException if the chunk cannot be written.
+         * @see java.io.OutputStream#close()
+         */
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        /**
+         * Method flush.
+         * @throws IOException if the chunk cannot be written.
+         * @see java.io.OutputStream#flush()
+         */
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                writeChunk(out, IDAT, buffer, count);
+                count = 0;
+            }
+        }
+
+        /**
+         * Method write.
+         * @param b byte[]
+         * @param off int
+         * @param len int
+         * @throws IOException if a chunk cannot be written.
+         * @see java.io.OutputStream#write(byte[], int, int)
+         */
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            int offset = off;
+            int remaining = len;
+            while (remaining > 0) {
+                final int length = Math.min(remaining, buffer.length - count);
+                System.arraycopy(b, offset, buffer, count, length);
+                count += length;
+                offset += length;
+                remaining -= length;
+                if (count == buffer.length) {
+                    flush();
+                }
+            }
+        }
+
+        /**
+         * Method write.
+         * @param b int
+         * @throws IOException if a chunk cannot be written.
+         * @see java.io.OutputStream#write(int)
+         */
+        @Override
+        public void write(final int b) throws IOException {
+            buffer[count++] = (byte) b;
+            if (count == buffer.length) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Field BYTES_PER_PIXEL.
+     * (value is {@value #BYTES_PER_PIXEL})
+     */
+    private static final int BYTES_PER_PIXEL = 3;
+
+    /**
+     * Field CHUNK_SIZE, the maximum size of an IDAT chunk.
+     * (value is {@value #CHUNK_SIZE})
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Field FILTER_UP.
+     * (value is {@value #FILTER_UP})
+     */
+    private static final int FILTER_UP = 2;
+
+    /**
+     * Field IDAT.
+     */
+    private static final byte[] IDAT = {'I', 'D', 'A', 'T'};
+
+    /**
+     * Field IEND.
+     */
+    private static final byte[] IEND = {'I', 'E', 'N', 'D'};
+
+    /**
+     * Field IHDR.
+     */
+    private static final byte[] IHDR = {'I', 'H', 'D', 'R'};
+
+    /**
+     * Field SIGNATURE.
+     */
+    private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+
+    /**
+     * Field closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Field compressed.
+     */
+    private final DeflaterOutputStream compressed;
+
+    /**
+     * Field deflater.
+     */
+    private final Deflater deflater;
+
+    /**
+     * Field height.
+     */
+    private final int height;
+
+    /**
+     * Field out.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Field pixels.
+     */
+    private final int[] pixels;
+
+    /**
+     * Field previousRow, the unfiltered previous row.
+     */
+    private byte[] previousRow;
+
+    /**
+     * Field row, the unfiltered current row.
+     */
+    private byte[] row;
+
+    /**
+     * Field rowsWritten.
+     */
+    private int rowsWritten = 0;
+
+    /**
+     * Field scanLine, the filtered row with its filter type.
+     */
+    private final byte[] scanLine;
+
+    /**
+     * Field width.
+     */
+    private final int width;
+
+    /**
+     * Creates a writer and writes the PNG header.
+     *
+     * @param out
+     *            the stream to write to, it is not closed by the writer.
+     * @param width
+     *            the width of the image.
+     * @param height
+     *            the height of the image.
+     * @throws IOException
+     *             if the header cannot be written.
+     */
+    public PngStreamWriter(final OutputStream out, final int width, final int height)
+            throws IOException {
+        if ((width <= 0) || (height <= 0)) {
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        }
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        pixels = new int[width];
+        row = new byte[width * BYTES_PER_PIXEL];
+        previousRow = new byte[width * BYTES_PER_PIXEL];
+        scanLine = new byte[width * BYTES_PER_PIXEL + 1];
+
+        this.out.write(SIGNATURE);
+        final byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8; // Bit depth
+        header[9] = 2; // Color type: RGB
+        writeChunk(this.out, IHDR, header, header.length);
+
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        compressed = new DeflaterOutputStream(new ChunkOutputStream(this.out), deflater,
+                CHUNK_SIZE);
+    }
+
+    /**
+     * Writes a 32 bits big endian integer into an array.
+     *
+     * @param array byte[]
+     * @param offset int
+     * @param value int
+     */
+    private static void putInt(final byte[] array, final int offset, final int value) {
+        array[offset] = (byte) (value >>> 24);
+        array[offset + 1] = (byte) (value >>> 16);
+        array[offset + 2] = (byte) (value >>> 8);
+        array[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Writes a PNG chunk.
+     *
+     * @param out DataOutputStream
+     * @param type the chunk type.
+     * @param data the chunk data.
+     * @param length the length of the data.
+     * @throws IOException if the chunk cannot be written.
+     */
+    private static void writeChunk(final DataOutputStream out, final byte[] type,
+            final byte[] data, final int length) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(type);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Finishes the image. The underlying stream is flushed but not
+     * closed.
+     *
+     * @throws IOException
+     *             if the image cannot be written or if some rows are
+     *             missing.
+     */
+    public final void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            compressed.close();
+            writeChunk(out, IEND, new byte[0], 0);
+            out.flush();
+        } finally {
+            deflater.end();
+        }
+        if (rowsWritten != height) {
+            throw new IOException("Incomplete image: " + rowsWritten + " rows written out of "
+                    + height);
+        }
+    }
+
+    /**
+     * Writes the first rows of a stripe.
+     *
+     * @param stripe
+     *            the stripe, it must be as wide as the image.
+     * @param rows
+     *            the number of rows to write.
+     * @throws IOException
+     *             if the rows cannot be written.
+     */
+    public final void writeRows(final ImageData stripe, final int rows) throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed");
+        }
+        if (stripe.width != width) {
+            throw new IllegalArgumentException("Stripe width " + stripe.width
+                    + " does not match image width " + width);
+        }
+        if ((rows > stripe.height) || (rowsWritten + rows > height)) {
+            throw new IllegalArgumentException("Too many rows: " + rows);
+        }
+        final PaletteData palette = stripe.palette;
+        for (int y = 0; y < rows; y++) {
+            stripe.getPixels(0, y, width, pixels, 0);
+            if (palette.isDirect) {
+                convertDirect(palette);
+            } else {
+                convertIndexed(palette);
+            }
+            writeRow();
+        }
+    }
+
+    /**
+     * Converts the current pixels using a direct palette.
+     *
+     * @param palette PaletteData
+     */
+    private void convertDirect(final PaletteData palette) {
+        for (int x = 0, i = 0; x < width; x++) {
+            final int pixel = pixels[x];
+            row[i++] = (byte) shift(pixel & palette.redMask, palette.redShift);
+            row[i++] = (byte) shift(pixel & palette.greenMask, palette.greenShift);
+            row[i++] = (byte) shift(pixel & palette.blueMask, palette.blueShift);
+        }
+    }
+
+    /**
+     * Converts the current pixels using an indexed palette.
+     *
+     * @param palette PaletteData
+     */
+    private void convertIndexed(final PaletteData palette) {
+        final RGB[] colors = palette.colors;
+        for (int x = 0, i = 0; x < width; x++) {
+            final RGB rgb = colors[pixels[x]];
+            row[i++] = (byte) rgb.red;
+            row[i++] = (byte) rgb.green;
+            row[i++] = (byte) rgb.blue;
+        }
+    }
+
+    /**
+     * Shifts a masked component the way {@link PaletteData#getRGB(int)}
+     * does.
+     *
+     * @param value int
+     * @param shift int
+     * @return int
+     */
+    private static int shift(final int value, final int shift) {
+        return (shift < 0) ? value >>> -shift : value << shift;
+    }
+
+    /**
+     * Filters the current row against the previous one and compresses it.
+     * Graphs have large uniform areas which the Up filter turns into runs
+     * of zeroes.
+     *
+     * @throws IOException if the row cannot be written.
+     */
+    private void writeRow() throws IOException {
+        scanLine[0] = FILTER_UP;
+        for (int i = 0; i < row.length; i++) {
+            scanLine[i + 1] = (byte) (row[i] - previousRow[i]);
+        }
+        compressed.write(scanLine, 0, scanLine.length);
+        final byte[] tmp = previousRow;
+        previousRow = row;
+        row = tmp;
+        rowsWritten++;
+    }
+}
@@ -28,6 +28,7 @@
 package net.ggtools.grand.ui.log;
 
 import java.io.Serializable;
+import java.util.Date;
 
 /**
  * A class storing all data related to a log event.
@@ -103,6 +104,11 @@ public class LogEvent implements Serializable {
      */
     private static final long serialVersionUID = 3545794399121453874L;
 
+    /**
+     * Field dateText, lazily computed from the time.
+     */
+    private transient String dateText;
+
     /**
      * Field exception.
      */
@@ -144,6 +150,21 @@ public class LogEvent implements Serializable {
         time = System.currentTimeMillis();
     }
 
+    /**
+     * Returns the time of the event formatted as a date. The text is computed
+     * once for each event.
+     *
+     * @return Returns the formatted date.
+     */
+    public final String getDateText() {
+        String text = dateText;
+        if (text == null) {
+            text = new Date(time).toString();
+            dateText = text;
+        }
+        return text;
+    }
+
     /**
      * @return Returns the exception
      */
@@ -217,5 +238,6 @@ public class LogEvent implements Serializable {
      */
     final void setTime(final long time) {
         this.time = time;
+        dateText = null;
     }
 }
@@ -42,6 +42,15 @@ public interface LogEventBuffer extends Serializable {
      */
     void addListener(final LogEventListener newListener);
 
+    /**
+     * Add a new listener interested only in events at or above a minimum
+     * level. Adding an already registered listener changes its level.
+     *
+     * @param newListener LogEventListener
+     * @param minLevel int the minimum level value.
+     */
+    void addListener(final LogEventListener newListener, final int minLevel);
+
     /**
      * Removed all events from the current buffer.
      *
@@ -49,12 +58,49 @@ public interface LogEventBuffer extends Serializable {
     void clearLogEvents();
 
     /**
-     * Return an unmodifiable list of events.
+     * Return an unmodifiable list of events. The list is a view over the
+     * buffer: its size is fixed when it is created but an event evicted
+     * afterwards by a new one is returned as <code>null</code> by
+     * {@link List#get(int)} and by the list's iterator. Callers must skip the
+     * <code>null</code> elements.
      *
      * @return the list of events.
      */
     List<LogEvent> getEventList();
 
+    /**
+     * Return an unmodifiable list of the events whose level is greater or
+     * equal to a minimum level. Getting the list does not scan the whole
+     * buffer. As for {@link #getEventList()}, the elements evicted after the
+     * creation of the list are <code>null</code>.
+     *
+     * @param minLevel int the minimum level value.
+     * @return the list of events.
+     */
+    List<LogEvent> getEventList(final int minLevel);
+
+    /**
+     * Return the maximum number of events kept for each level.
+     *
+     * @return the capacity.
+     */
+    int getCapacity();
+
+    /**
+     * Return the number of events discarded because the buffer was full.
+     *
+     * @return the overflow count.
+     */
+    long getOverflowCount();
+
+    /**
+     * Return the lowest level value the buffer or one of its listeners is
+     * interested in. Events below this level need not be added.
+     *
+     * @return the minimum level value.
+     */
+    int getMinLevel();
+
     /**
      * Remove a specific listener.
      *
@@ -27,7 +27,13 @@
  */
 package net.ggtools.grand.ui.log;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -36,21 +42,152 @@ import net.ggtools.grand.ui.log.LogEvent.Level;
 /**
  * A singleton class used to store the log events generated from the start of
  * the application.
+ * <p>
+ * Events are kept in fixed capacity rings, one per minimum level: the ring
+ * for a level holds the events of this level and above. Getting the events
+ * for a minimum level is then a view over one ring and a burst of low level
+ * events does not evict the warnings or errors. The capacity of each ring is
+ * read from the {@value #CAPACITY_PROPERTY} system property and defaults to
+ * {@value #DEFAULT_CAPACITY}.
+ * </p>
+ * <p>
+ * The buffer publishes the lowest level needed by itself or any of its
+ * listeners so that loggers can skip creating events nobody will look at.
+ * The level stored by the buffer itself is read from the
+ * {@value #STORED_LEVEL_PROPERTY} system property as a level name and
+ * defaults to <code>INFO</code>.
+ * </p>
  *
  * @author Christophe Labouisse
  */
 public final class LogEventBufferImpl implements LogEventBuffer {
 
+    /**
+     * A listener along with the minimum level it is interested in.
+     *
+     * @author Christophe Labouisse
+     */
+    private static final class Registration {
+        /**
+         * Field listener.
+         */
+        private final LogEventListener listener;
+
+        /**
+         * Field minLevel.
+         */
+        private final int minLevel;
+
+        /**
+         * Constructor for Registration.
+         * @param listener LogEventListener
+         * @param minLevel int
+         */
+        private Registration(final LogEventListener listener, final int minLevel) {
+            this.listener = listener;
+            this.minLevel = minLevel;
+        }
+    }
+
+    /**
+     * The serialized form of a buffer: its capacity and its events.
+     *
+     * @author Christophe Labouisse
+     */
+    private static final class SerializedForm implements Serializable {
+
+        /**
+         * Comment for <code>serialVersionUID</code>.
+         */
+        private static final long serialVersionUID = -4353019787946393346L;
+
+        /**
+         * Field capacity.
+         */
+        private final int capacity;
+
+        /**
+         * Field events.
+         */
+        private final ArrayList<LogEvent> events;
+
+        /**
+         * Constructor for SerializedForm.
+         * @param capacity int
+         * @param events ArrayList&lt;LogEvent&gt;
+         */
+        private SerializedForm(final int capacity, final ArrayList<LogEvent> events) {
+            this.capacity = capacity;
+            this.events = events;
+        }
+
+        /**
+         * Method readResolve.
+         * @return Object
+         */
+        private Object readResolve() {
+            final LogEventBufferImpl buffer = new LogEventBufferImpl(capacity);
+            for (final LogEvent event : events) {
+                buffer.storeLogEvent(event);
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Field CAPACITY_PROPERTY.
+     * (value is {@value #CAPACITY_PROPERTY})
+     */
+    public static final String CAPACITY_PROPERTY = "net.ggtools.grand.ui.log.capacity";
+
+    /**
+     * Field DEFAULT_CAPACITY.
+     * (value is {@value #DEFAULT_CAPACITY})
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
     /**
      * Field instance.
      */
     private static volatile LogEventBufferImpl instance;
 
+    /**
+     * Field LEVELS.
+     */
+    private static final Level[] LEVELS = new Level[]{LogEvent.TRACE, LogEvent.DEBUG,
+            LogEvent.INFO, LogEvent.WARNING, LogEvent.ERROR, LogEvent.FATAL};
+
+    /**
+     * Field NO_REGISTRATIONS.
+     */
+    private static final Registration[] NO_REGISTRATIONS = new Registration[0];
+
+    /**
+     * Field NUM_LEVELS.
+     * (value is {@value #NUM_LEVELS})
+     */
+    private static final int NUM_LEVELS = LogEvent.FATAL.value - LogEvent.TRACE.value + 1;
+
     /**
      * Comment for <code>serialVersionUID</code>.
      */
     private static final long serialVersionUID = 3760564170055364917L;
 
+    /**
+     * Field serialPersistentFields, the legacy serialized form holding all
+     * the events in a single list. Buffers are now written through
+     * {@link SerializedForm} but logs saved in the legacy form can still be
+     * read.
+     */
+    private static final ObjectStreamField[] serialPersistentFields =
+            new ObjectStreamField[]{new ObjectStreamField("eventList", LinkedList.class)};
+
+    /**
+     * Field STORED_LEVEL_PROPERTY.
+     * (value is {@value #STORED_LEVEL_PROPERTY})
+     */
+    public static final String STORED_LEVEL_PROPERTY = "net.ggtools.grand.ui.log.level";
+
 
     /**
      * Get the singleton instance.
@@ -60,27 +197,73 @@ public final class LogEventBufferImpl implements LogEventBuffer {
     public static LogEventBufferImpl getInstance() {
         synchronized (LogEventBufferImpl.class) {
             if (instance == null) {
-                instance = new LogEventBufferImpl();
+                instance = new LogEventBufferImpl(Integer.getInteger(CAPACITY_PROPERTY,
+                        DEFAULT_CAPACITY));
+                instance.setStoredLevel(levelValue(System.getProperty(STORED_LEVEL_PROPERTY),
+                        LogEvent.INFO.value));
             }
         }
         return instance;
     }
 
     /**
-     * Field eventList.
+     * Get the value of a level from its name.
+     *
+     * @param name String
+     * @param defaultValue int
+     * @return the value or <code>defaultValue</code> if no level has this
+     * name.
+     */
+    private static int levelValue(final String name, final int defaultValue) {
+        if (name != null) {
+            for (final Level level : LEVELS) {
+                if (level.name.equalsIgnoreCase(name.trim())) {
+                    return level.value;
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Get the index of the ring holding the events of a minimum level.
+     *
+     * @param levelValue int
+     * @return int
+     */
+    private static int ringIndex(final int levelValue) {
+        return Math.max(0, Math.min(NUM_LEVELS - 1, levelValue - LogEvent.TRACE.value));
+    }
+
+    /**
+     * Field minLevel.
      */
-    private final LinkedList<LogEvent> eventList = new LinkedList<LogEvent>();
+    private transient volatile int minLevel = LogEvent.TRACE.value;
 
     /**
-     * Field listener.
+     * Field registrations, replaced as a whole when a listener is added or
+     * removed.
      */
-    private transient LogEventListener listener;
+    private transient volatile Registration[] registrations = NO_REGISTRATIONS;
+
+    /**
+     * Field rings, replaced as a whole when clearing the buffer.
+     */
+    private transient volatile LogEventRing[] rings;
+
+    /**
+     * Field storedLevel.
+     */
+    private transient int storedLevel = LogEvent.TRACE.value;
 
     /**
      * Creates a new buffer.
+     *
+     * @param capacity int
      */
-    private LogEventBufferImpl() {
+    private LogEventBufferImpl(final int capacity) {
         super();
+        rings = createRings(capacity);
     }
 
     /**
@@ -89,7 +272,26 @@ public final class LogEventBufferImpl implements LogEventBuffer {
      * @see net.ggtools.grand.ui.log.LogEventBuffer#addListener(LogEventListener)
      */
     public void addListener(final LogEventListener newListener) {
-        listener = newListener;
+        addListener(newListener, LogEvent.TRACE.value);
+    }
+
+    /**
+     * Method addListener.
+     * @param newListener LogEventListener
+     * @param listenerLevel int
+     * @see net.ggtools.grand.ui.log.LogEventBuffer#addListener(LogEventListener, int)
+     */
+    public synchronized void addListener(final LogEventListener newListener,
+            final int listenerLevel) {
+        final List<Registration> newRegistrations = new ArrayList<Registration>();
+        for (final Registration registration : registrations) {
+            if (registration.listener != newListener) {
+                newRegistrations.add(registration);
+            }
+        }
+        newRegistrations.add(new Registration(newListener, listenerLevel));
+        registrations = newRegistrations.toArray(new Registration[newRegistrations.size()]);
+        updateMinLevel();
     }
 
     /**
@@ -97,7 +299,16 @@ public final class LogEventBufferImpl implements LogEventBuffer {
      * @see net.ggtools.grand.ui.log.LogEventBuffer#clearLogEvents()
      */
     public synchronized void clearLogEvents() {
-        eventList.clear();
+        rings = createRings(getCapacity());
+    }
+
+    /**
+     * Method getCapacity.
+     * @return int
+     * @see net.ggtools.grand.ui.log.LogEventBuffer#getCapacity()
+     */
+    public int getCapacity() {
+        return rings[0].getCapacity();
     }
 
     /**
@@ -107,7 +318,46 @@ public final class LogEventBufferImpl implements LogEventBuffer {
      * @see net.ggtools.grand.ui.log.LogEventBuffer#getEventList()
      */
     public List<LogEvent> getEventList() {
-        return Collections.unmodifiableList(eventList);
+        return rings[0].snapshot();
+    }
+
+    /**
+     * Method getEventList.
+     * @param minLevel int
+     * @return List&lt;LogEvent&gt;
+     * @see net.ggtools.grand.ui.log.LogEventBuffer#getEventList(int)
+     */
+    public List<LogEvent> getEventList(final int minLevel) {
+        return rings[ringIndex(minLevel)].snapshot();
+    }
+
+    /**
+     * Method getMinLevel.
+     * @return int
+     * @see net.ggtools.grand.ui.log.LogEventBuffer#getMinLevel()
+     */
+    public int getMinLevel() {
+        return minLevel;
+    }
+
+    /**
+     * Method getOverflowCount.
+     * @return long
+     * @see net.ggtools.grand.ui.log.LogEventBuffer#getOverflowCount()
+     */
+    public long getOverflowCount() {
+        return rings[0].getOverflowCount();
+    }
+
+    /**
+     * Return the number of events of a minimum level discarded because the
+     * buffer was full.
+     *
+     * @param minLevel int
+     * @return long
+     */
+    public long getOverflowCount(final int minLevel) {
+        return rings[ringIndex(minLevel)].getOverflowCount();
     }
 
     /**
@@ -115,10 +365,140 @@ public final class LogEventBufferImpl implements LogEventBuffer {
      * @param toRemove LogEventListener
      * @see net.ggtools.grand.ui.log.LogEventBuffer#removeListener(LogEventListener)
      */
-    public void removeListener(final LogEventListener toRemove) {
-        if (listener == toRemove) {
-            listener = null;
+    public synchronized void removeListener(final LogEventListener toRemove) {
+        final List<Registration> newRegistrations = new ArrayList<Registration>();
+        for (final Registration registration : registrations) {
+            if (registration.listener != toRemove) {
+                newRegistrations.add(registration);
+            }
+        }
+        registrations = newRegistrations.toArray(new Registration[newRegistrations.size()]);
+        updateMinLevel();
+    }
+
+    /**
+     * Tell whether events of a specific level should be added to the
+     * buffer. This costs a single volatile read.
+     *
+     * @param level Level
+     * @return <code>true</code> if the buffer or one of its listeners is
+     * interested in the level.
+     */
+    public boolean isLevelEnabled(final Level level) {
+        return level.value >= minLevel;
+    }
+
+    /**
+     * Change the capacity of the buffer, keeping the most recent events.
+     * Events logged while the buffer is resized may be lost.
+     *
+     * @param capacity int
+     */
+    public synchronized void setCapacity(final int capacity) {
+        final LogEventRing[] oldRings = rings;
+        final LogEventRing[] newRings = createRings(capacity);
+        for (int i = 0; i < NUM_LEVELS; i++) {
+            for (final LogEvent event : oldRings[i].snapshot()) {
+                if (event != null) {
+                    newRings[i].add(event);
+                }
+            }
         }
+        rings = newRings;
+    }
+
+    /**
+     * Set the minimum level of the events stored regardless of the
+     * listeners.
+     *
+     * @param level int
+     */
+    public synchronized void setStoredLevel(final int level) {
+        storedLevel = level;
+        updateMinLevel();
+    }
+
+    /**
+     * Creates the rings for all the levels.
+     *
+     * @param capacity int
+     * @return LogEventRing[]
+     */
+    private LogEventRing[] createRings(final int capacity) {
+        final LogEventRing[] newRings = new LogEventRing[NUM_LEVELS];
+        for (int i = 0; i < NUM_LEVELS; i++) {
+            newRings[i] = new LogEventRing(capacity);
+        }
+        return newRings;
+    }
+
+    /**
+     * Reads a buffer saved in the legacy form. The capacity is large enough
+     * to keep all the saved events.
+     *
+     * @param ois ObjectInputStream
+     * @throws IOException if the stream cannot be read or if it does not
+     *             hold an event list.
+     * @throws ClassNotFoundException if a class of the saved events cannot
+     *             be found.
+     */
+    private void readObject(final ObjectInputStream ois) throws IOException,
+            ClassNotFoundException {
+        final Object eventList = ois.readFields().get("eventList", null);
+        if (!(eventList instanceof List)) {
+            throw new InvalidObjectException("No event list in legacy buffer");
+        }
+        final List<?> events = (List<?>) eventList;
+        minLevel = LogEvent.TRACE.value;
+        registrations = NO_REGISTRATIONS;
+        storedLevel = LogEvent.TRACE.value;
+        rings = createRings(Math.max(DEFAULT_CAPACITY, events.size()));
+        for (final Object event : events) {
+            if (event instanceof LogEvent) {
+                storeLogEvent((LogEvent) event);
+            }
+        }
+    }
+
+    /**
+     * Store an event in the rings of all levels less or equal to the
+     * event's one.
+     *
+     * @param logEvent LogEvent
+     */
+    private void storeLogEvent(final LogEvent logEvent) {
+        final LogEventRing[] currentRings = rings;
+        final int maxIndex = ringIndex(logEvent.getLevel().value);
+        for (int i = 0; i <= maxIndex; i++) {
+            currentRings[i].add(logEvent);
+        }
+    }
+
+    /**
+     * Compute the level published by {@link #getMinLevel()}. Should be
+     * called while holding the buffer's lock.
+     */
+    private void updateMinLevel() {
+        int newMinLevel = storedLevel;
+        for (final Registration registration : registrations) {
+            newMinLevel = Math.min(newMinLevel, registration.minLevel);
+        }
+        minLevel = newMinLevel;
+    }
+
+    /**
+     * Method writeReplace.
+     * @return Object
+     * @throws ObjectStreamException never.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        final ArrayList<LogEvent> events = new ArrayList<LogEvent>();
+        for (final LogEvent event : getEventList()) {
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        return new SerializedForm(getCapacity(), events);
     }
 
     /**
@@ -143,9 +523,11 @@ public final class LogEventBufferImpl implements LogEventBuffer {
             final Object message, final Throwable exception) {
         final LogEvent logEvent =
                 new LogEvent(level, originator, message, exception);
-        eventList.addLast(logEvent);
-        if (listener != null) {
-            listener.logEventReceived(logEvent);
+        storeLogEvent(logEvent);
+        for (final Registration registration : registrations) {
+            if (level.value >= registration.minLevel) {
+                registration.listener.logEventReceived(logEvent);
+            }
         }
     }
 }
@@ -29,7 +29,6 @@ package net.ggtools.grand.ui.log;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.util.Date;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -283,7 +282,7 @@ public class LogEventDetailDialog extends Dialog {
         icon.setImage(display.getSystemImage(ICONS_FOR_LEVELS[event.getLevel().value]));
         addKeyValue(composite, "Level:", event.getLevel().name);
         addKeyValue(composite, "Class:", event.getClass().getName());
-        addKeyValue(composite, "Date:", new Date(event.getTime()).toString());
+        addKeyValue(composite, "Date:", event.getDateText());
         addKeyValue(composite, "Message:", event.getMessage().toString(), 2);
 
         final Throwable exception = event.getException();
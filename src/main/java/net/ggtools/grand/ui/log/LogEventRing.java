@@ -0,0 +1,285 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.log;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed capacity ring of log events. Writers claim a sequence number with
+ * a single atomic increment and publish the event in the matching slot, so
+ * adding an event never blocks. Once the ring is full the oldest events are
+ * overwritten.
+ *
+ * @author Christophe Labouisse
+ */
+final class LogEventRing {
+
+    /**
+     * An event stored in a slot along with its sequence number, allowing
+     * readers to detect slots overwritten by a later event.
+     *
+     * @author Christophe Labouisse
+     */
+    private static final class Slot {
+        /**
+         * Field event.
+         */
+        private final LogEvent event;
+
+        /**
+         * Field sequence.
+         */
+        private final long sequence;
+
+        /**
+         * Constructor for Slot.
+         * @param sequence long
+         * @param event LogEvent
+         */
+        private Slot(final long sequence, final LogEvent event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+
+    /**
+     * A read only view of the events present in the ring when the view was
+     * created. Its size is fixed, so events overwritten after the creation of
+     * the view are returned as <code>null</code> by {@link #get(int)} and the
+     * iterator; they are only skipped by {@link #toArray()}.
+     *
+     * @author Christophe Labouisse
+     */
+    final class Snapshot extends AbstractList<LogEvent> implements RandomAccess {
+
+        /**
+         * Field first.
+         */
+        private final long first;
+
+        /**
+         * Field size.
+         */
+        private final int size;
+
+        /**
+         * Constructor for Snapshot.
+         * @param first long
+         * @param size int
+         */
+        private Snapshot(final long first, final int size) {
+            this.first = first;
+            this.size = size;
+        }
+
+        /**
+         * Method get.
+         * @param index int
+         * @return the event or <code>null</code> if it was overwritten.
+         * @see java.util.List#get(int)
+         */
+        @Override
+        public LogEvent get(final int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return getEvent(first + index);
+        }
+
+        /**
+         * Counts the events of an older view which are no longer in this
+         * one because they were overwritten.
+         *
+         * @param previous
+         *            a view created before this one.
+         * @return the number of events at the start of <code>previous</code>
+         *         missing from this view, or -1 if this view does not
+         *         continue <code>previous</code>, e.g. if it is a view of
+         *         another ring.
+         */
+        int getEvictedCount(final Snapshot previous) {
+            if ((previous.getRing() != LogEventRing.this) || (first < previous.first)
+                    || (first + size < previous.first + previous.size)) {
+                return -1;
+            }
+            return (int) Math.min(first - previous.first, previous.size);
+        }
+
+        /**
+         * @return the ring this view was created from.
+         */
+        private LogEventRing getRing() {
+            return LogEventRing.this;
+        }
+
+        /**
+         * Method size.
+         * @return int
+         * @see java.util.List#size()
+         */
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Method toArray.
+         * @return Object[]
+         * @see java.util.List#toArray()
+         */
+        @Override
+        public Object[] toArray() {
+            final List<LogEvent> events = new ArrayList<LogEvent>(size);
+            for (int i = 0; i < size; i++) {
+                final LogEvent event = getEvent(first + i);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+            return events.toArray();
+        }
+    }
+
+    /**
+     * Field MAX_CAPACITY.
+     * (value is {@value #MAX_CAPACITY})
+     */
+    static final int MAX_CAPACITY = 1 << 24;
+
+    /**
+     * Field MIN_CAPACITY.
+     * (value is {@value #MIN_CAPACITY})
+     */
+    static final int MIN_CAPACITY = 16;
+
+    /**
+     * Round a requested capacity to the power of two used by the ring.
+     *
+     * @param requested int
+     * @return the actual capacity.
+     */
+    static int roundCapacity(final int requested) {
+        if (requested <= MIN_CAPACITY) {
+            return MIN_CAPACITY;
+        }
+        if (requested >= MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return Integer.highestOneBit(requested - 1) << 1;
+    }
+
+    /**
+     * Field mask.
+     */
+    private final int mask;
+
+    /**
+     * Field nextSequence.
+     */
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    /**
+     * Field slots.
+     */
+    private final AtomicReferenceArray<Slot> slots;
+
+    /**
+     * Creates a new ring.
+     *
+     * @param capacity int the requested capacity, rounded to the next power
+     * of two.
+     */
+    LogEventRing(final int capacity) {
+        final int actualCapacity = roundCapacity(capacity);
+        mask = actualCapacity - 1;
+        slots = new AtomicReferenceArray<Slot>(actualCapacity);
+    }
+
+    /**
+     * Add an event, overwriting the oldest one if the ring is full.
+     *
+     * @param event LogEvent
+     */
+    void add(final LogEvent event) {
+        final long sequence = nextSequence.getAndIncrement();
+        slots.set((int) (sequence & mask), new Slot(sequence, event));
+    }
+
+    /**
+     * @return the number of slots.
+     */
+    int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the number of events added since the ring creation.
+     */
+    long getEventCount() {
+        return nextSequence.get();
+    }
+
+    /**
+     * @return the number of events overwritten because the ring was full.
+     */
+    long getOverflowCount() {
+        return Math.max(0L, nextSequence.get() - getCapacity());
+    }
+
+    /**
+     * Creates a view of the events currently in the ring, from the oldest to
+     * the newest. Creating the view does not copy the events.
+     *
+     * @return List&lt;LogEvent&gt;
+     */
+    List<LogEvent> snapshot() {
+        final long end = nextSequence.get();
+        final long first = Math.max(0L, end - getCapacity());
+        return new Snapshot(first, (int) (end - first));
+    }
+
+    /**
+     * Get the event having a specific sequence number.
+     *
+     * @param sequence long
+     * @return the event or <code>null</code> if it was overwritten or not
+     * yet published.
+     */
+    private LogEvent getEvent(final long sequence) {
+        final Slot slot = slots.get((int) (sequence & mask));
+        if (slot == null || slot.sequence != sequence) {
+            return null;
+        }
+        return slot.event;
+    }
+}
@@ -27,7 +27,6 @@
  */
 package net.ggtools.grand.ui.log;
 
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -122,6 +121,7 @@ class LogLabelProvider implements ITableLabelProvider, ITableColorProvider {
                             + eventLevel.name.toLowerCase() + ".gif";
                     rc = new Image(Display.getCurrent(),
                             this.getClass().getResourceAsStream(resourceName));
+                    logLevelIcons.put(eventLevel, rc);
                 }
             }
         }
@@ -146,7 +146,7 @@ class LogLabelProvider implements ITableLabelProvider, ITableColorProvider {
                 break;
 
             case LogViewer.CI_DATE:
-                rc = new Date(event.getTime()).toString();
+                rc = event.getDateText();
                 break;
 
             case LogViewer.CI_CLASS:
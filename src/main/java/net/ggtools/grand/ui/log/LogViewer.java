@@ -30,19 +30,20 @@ package net.ggtools.grand.ui.log;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.DoubleClickEvent;
 import org.eclipse.jface.viewers.IDoubleClickListener;
+import org.eclipse.jface.viewers.ILazyContentProvider;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.Viewer;
-import org.eclipse.jface.viewers.ViewerFilter;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
@@ -68,20 +69,45 @@ import org.eclipse.swt.widgets.TableItem;
 public class LogViewer extends Composite {
 
     /**
+     * A content provider for the virtual table, handing out the events of the
+     * last snapshot taken from the log buffer only when a row becomes visible.
+     *
      * @author Christophe Labouisse
      */
-    private final class LogEventFilter extends ViewerFilter {
+    private final class LazyLogContentProvider implements ILazyContentProvider {
         /**
-         * Method select.
+         * Method dispose.
+         * @see org.eclipse.jface.viewers.IContentProvider#dispose()
+         */
+        public void dispose() {
+            events = Collections.emptyList();
+        }
+
+        /**
+         * Method inputChanged.
          * @param v Viewer
-         * @param parentElement Object
-         * @param element Object
-         * @return boolean
+         * @param oldInput Object
+         * @param newInput Object
+         * @see org.eclipse.jface.viewers.IContentProvider#inputChanged(Viewer, Object, Object)
          */
-        @Override
-        public boolean select(final Viewer v, final Object parentElement, final Object element) {
-            return element instanceof LogEvent
-                    && ((LogEvent) element).getLevel().value >= minLogLevel;
+        public void inputChanged(final Viewer v, final Object oldInput, final Object newInput) {
+            events = Collections.emptyList();
+        }
+
+        /**
+         * Method updateElement.
+         * @param index int
+         * @see org.eclipse.jface.viewers.ILazyContentProvider#updateElement(int)
+         */
+        public void updateElement(final int index) {
+            if (index < events.size()) {
+                final LogEvent event = events.get(index);
+                // The event may have been evicted from the buffer since
+                // the snapshot was taken.
+                if (event != null) {
+                    viewer.replace(event, index);
+                }
+            }
         }
     }
 
@@ -322,9 +348,9 @@ public class LogViewer extends Composite {
             new String[]{"Lvl", "Date", "Class", "Message"};
 
     /**
-     * Field eventLevelFilter.
+     * Field events, the snapshot of the buffer displayed in the table.
      */
-    private LogEventFilter eventLevelFilter;
+    private List<LogEvent> events = Collections.emptyList();
 
     /**
      * Field logBuffer.
@@ -405,8 +431,9 @@ public class LogViewer extends Composite {
         }
 
         logBuffer = newLogBuffer;
-        logBuffer.addListener(refreshListener);
-        viewer.setInput(logBuffer.getEventList());
+        logBuffer.addListener(refreshListener, minLogLevel);
+        viewer.setInput(logBuffer);
+        reloadEvents(true);
     }
 
     /**
@@ -433,7 +460,8 @@ public class LogViewer extends Composite {
                 if (e.widget instanceof Combo) {
                     final Combo selectedCombo = (Combo) e.widget;
                     minLogLevel = comboIndexToLogLevel(selectedCombo.getSelectionIndex());
-                    viewer.refresh(false);
+                    logBuffer.addListener(refreshListener, minLogLevel);
+                    reloadEvents(true);
                 }
             }
 
@@ -485,7 +513,7 @@ public class LogViewer extends Composite {
             public void widgetSelected(final SelectionEvent e) {
                 if (e.widget instanceof Button) {
                     logBuffer.clearLogEvents();
-                    viewer.refresh();
+                    reloadEvents(true);
                 }
             }
         });
@@ -511,12 +539,10 @@ public class LogViewer extends Composite {
      */
     private void createViewer(final Composite parent) {
         viewer = new TableViewer(parent, SWT.READ_ONLY | SWT.H_SCROLL
-                | SWT.V_SCROLL | SWT.HIDE_SELECTION);
+                | SWT.V_SCROLL | SWT.HIDE_SELECTION | SWT.VIRTUAL);
         final LogLabelProvider logLabelProvider = new LogLabelProvider();
-        viewer.setContentProvider(new ArrayContentProvider());
+        viewer.setContentProvider(new LazyLogContentProvider());
         viewer.setLabelProvider(logLabelProvider);
-        eventLevelFilter = new LogEventFilter();
-        viewer.addFilter(eventLevelFilter);
 
         table = viewer.getTable();
         table.setHeaderVisible(true);
@@ -570,6 +596,9 @@ public class LogViewer extends Composite {
                 if (LOG.isTraceEnabled()) {
                     LOG.trace("Table disposed");
                 }
+                if (logBuffer != null) {
+                    logBuffer.removeListener(refreshListener);
+                }
                 stopRefreshThread();
             }
         });
@@ -593,17 +622,65 @@ public class LogViewer extends Composite {
     }
 
     /**
-     *
+     * Reload the events at or above the minimum level from the buffer.
      */
     private void refreshViewer() {
         if (!table.isDisposed()) {
-            viewer.refresh(false);
-            table.showItem(table.getItem(table.getItemCount() - 1));
+            reloadEvents(false);
+            final int itemCount = table.getItemCount();
+            if (itemCount > 0) {
+                table.showItem(table.getItem(itemCount - 1));
+            }
         } else {
             LOG.warn("Table is disposed");
         }
     }
 
+    /**
+     * Take a new snapshot of the events at or above the minimum level. When
+     * the new snapshot continues the previous one, the rows of the events
+     * evicted since are removed from the top of the table and rows are
+     * added at the bottom for the new events; the other rows are kept.
+     * Otherwise all the rows are cleared and the visible ones are populated
+     * again.
+     *
+     * @param reset boolean <code>true</code> to clear all the rows.
+     */
+    private void reloadEvents(final boolean reset) {
+        final List<LogEvent> newEvents = logBuffer.getEventList(minLogLevel);
+        final int evicted = reset ? -1 : getEvictedCount(events, newEvents);
+        events = newEvents;
+        if (evicted > 0) {
+            table.remove(0, evicted - 1);
+        }
+        viewer.setItemCount(newEvents.size());
+        if (evicted < 0) {
+            table.clearAll();
+        }
+    }
+
+    /**
+     * Counts the events displayed from an old snapshot which are not in a
+     * new one.
+     *
+     * @param oldEvents List&lt;LogEvent&gt;
+     * @param newEvents List&lt;LogEvent&gt;
+     * @return the number of events to remove from the start of the old
+     *         snapshot or -1 if the new snapshot does not continue it.
+     */
+    private static int getEvictedCount(final List<LogEvent> oldEvents,
+            final List<LogEvent> newEvents) {
+        if (oldEvents.isEmpty()) {
+            return 0;
+        }
+        if ((oldEvents instanceof LogEventRing.Snapshot)
+                && (newEvents instanceof LogEventRing.Snapshot)) {
+            return ((LogEventRing.Snapshot) newEvents)
+                    .getEvictedCount((LogEventRing.Snapshot) oldEvents);
+        }
+        return -1;
+    }
+
     /**
      *
      */
@@ -30,6 +30,14 @@ package net.ggtools.grand.ui.log;
 import org.apache.commons.logging.Log;
 
 /**
+ * A logger forwarding to an underlying logger and to the log event buffer.
+ * <p>
+ * The level checks read the buffer's minimum level first, a single volatile
+ * read, and only ask the underlying logger when the buffer does not need
+ * the level. The level of the underlying logger is not cached, so changing
+ * it at runtime is taken into account.
+ * </p>
+ *
  * @author Christophe Labouisse
  */
 final class UILogger implements Log {
@@ -66,7 +74,9 @@ final class UILogger implements Log {
      */
     public void debug(final Object message) {
         underlying.debug(message);
-        logBuffer.addLogEvent(LogEvent.DEBUG, name, message);
+        if (logBuffer.isLevelEnabled(LogEvent.DEBUG)) {
+            logBuffer.addLogEvent(LogEvent.DEBUG, name, message);
+        }
     }
 
     /**
@@ -76,7 +86,9 @@ final class UILogger implements Log {
      */
     public void debug(final Object message, final Throwable t) {
         underlying.debug(message, t);
-        logBuffer.addLogEvent(LogEvent.DEBUG, name, message, t);
+        if (logBuffer.isLevelEnabled(LogEvent.DEBUG)) {
+            logBuffer.addLogEvent(LogEvent.DEBUG, name, message, t);
+        }
     }
 
     /**
@@ -85,7 +97,9 @@ final class UILogger implements Log {
      */
     public void error(final Object message) {
         underlying.error(message);
-        logBuffer.addLogEvent(LogEvent.ERROR, name, message);
+        if (logBuffer.isLevelEnabled(LogEvent.ERROR)) {
+            logBuffer.addLogEvent(LogEvent.ERROR, name, message);
+        }
     }
 
     /**
@@ -95,7 +109,9 @@ final class UILogger implements Log {
      */
     public void error(final Object message, final Throwable t) {
         underlying.error(message, t);
-        logBuffer.addLogEvent(LogEvent.ERROR, name, message, t);
+        if (logBuffer.isLevelEnabled(LogEvent.ERROR)) {
+            logBuffer.addLogEvent(LogEvent.ERROR, name, message, t);
+        }
     }
 
     /**
@@ -104,7 +120,9 @@ final class UILogger implements Log {
      */
     public void fatal(final Object message) {
         underlying.fatal(message);
-        logBuffer.addLogEvent(LogEvent.FATAL, name, message);
+        if (logBuffer.isLevelEnabled(LogEvent.FATAL)) {
+            logBuffer.addLogEvent(LogEvent.FATAL, name, message);
+        }
     }
 
     /**
@@ -114,7 +132,9 @@ final class UILogger implements Log {
      */
     public void fatal(final Object message, final Throwable t) {
         underlying.fatal(message, t);
-        logBuffer.addLogEvent(LogEvent.FATAL, name, message, t);
+        if (logBuffer.isLevelEnabled(LogEvent.FATAL)) {
+            logBuffer.addLogEvent(LogEvent.FATAL, name, message, t);
+        }
     }
 
     /**
@@ -123,7 +143,9 @@ final class UILogger implements Log {
      */
     public void info(final Object message) {
         underlying.info(message);
-        logBuffer.addLogEvent(LogEvent.INFO, name, message);
+        if (logBuffer.isLevelEnabled(LogEvent.INFO)) {
+            logBuffer.addLogEvent(LogEvent.INFO, name, message);
+        }
     }
 
     /**
@@ -133,7 +155,9 @@ final class UILogger implements Log {
      */
     public void info(final Object message, final Throwable t) {
         underlying.info(message, t);
-        logBuffer.addLogEvent(LogEvent.INFO, name, message, t);
+        if (logBuffer.isLevelEnabled(LogEvent.INFO)) {
+            logBuffer.addLogEvent(LogEvent.INFO, name, message, t);
+        }
     }
 
     /**
@@ -141,7 +165,7 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#isDebugEnabled()
      */
     public boolean isDebugEnabled() {
-        return underlying.isDebugEnabled();
+        return logBuffer.isLevelEnabled(LogEvent.DEBUG) || underlying.isDebugEnabled();
     }
 
     /**
@@ -149,7 +173,7 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#isErrorEnabled()
      */
     public boolean isErrorEnabled() {
-        return underlying.isErrorEnabled();
+        return logBuffer.isLevelEnabled(LogEvent.ERROR) || underlying.isErrorEnabled();
     }
 
     /**
@@ -157,7 +181,7 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#isFatalEnabled()
      */
     public boolean isFatalEnabled() {
-        return underlying.isFatalEnabled();
+        return logBuffer.isLevelEnabled(LogEvent.FATAL) || underlying.isFatalEnabled();
     }
 
     /**
@@ -165,7 +189,7 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#isInfoEnabled()
      */
     public boolean isInfoEnabled() {
-        return underlying.isInfoEnabled();
+        return logBuffer.isLevelEnabled(LogEvent.INFO) || underlying.isInfoEnabled();
     }
 
     /**
@@ -173,7 +197,7 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#isTraceEnabled()
      */
     public boolean isTraceEnabled() {
-        return underlying.isTraceEnabled();
+        return logBuffer.isLevelEnabled(LogEvent.TRACE) || underlying.isTraceEnabled();
     }
 
     /**
@@ -181,7 +205,7 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#isWarnEnabled()
      */
     public boolean isWarnEnabled() {
-        return underlying.isWarnEnabled();
+        return logBuffer.isLevelEnabled(LogEvent.WARNING) || underlying.isWarnEnabled();
     }
 
     /**
@@ -190,7 +214,9 @@ final class UILogger implements Log {
      */
     public void trace(final Object message) {
         underlying.trace(message);
-        logBuffer.addLogEvent(LogEvent.TRACE, name, message);
+        if (logBuffer.isLevelEnabled(LogEvent.TRACE)) {
+            logBuffer.addLogEvent(LogEvent.TRACE, name, message);
+        }
     }
 
     /**
@@ -200,7 +226,9 @@ final class UILogger implements Log {
      */
     public void trace(final Object message, final Throwable t) {
         underlying.trace(message, t);
-        logBuffer.addLogEvent(LogEvent.TRACE, name, message, t);
+        if (logBuffer.isLevelEnabled(LogEvent.TRACE)) {
+            logBuffer.addLogEvent(LogEvent.TRACE, name, message, t);
+        }
     }
 
     /**
@@ -209,7 +237,9 @@ final class UILogger implements Log {
      */
     public void warn(final Object message) {
         underlying.warn(message);
-        logBuffer.addLogEvent(LogEvent.WARNING, name, message);
+        if (logBuffer.isLevelEnabled(LogEvent.WARNING)) {
+            logBuffer.addLogEvent(LogEvent.WARNING, name, message);
+        }
     }
 
     /**
@@ -219,6 +249,8 @@ final class UILogger implements Log {
      */
     public void warn(final Object message, final Throwable t) {
         underlying.warn(message, t);
-        logBuffer.addLogEvent(LogEvent.WARNING, name, message, t);
+        if (logBuffer.isLevelEnabled(LogEvent.WARNING)) {
+            logBuffer.addLogEvent(LogEvent.WARNING, name, message, t);
+        }
     }
 }
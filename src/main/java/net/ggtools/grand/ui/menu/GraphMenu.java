@@ -42,6 +42,7 @@ import net.ggtools.grand.ui.actions.FilterPrefixedNodesAction;
 import net.ggtools.grand.ui.actions.FilterSelectedNodesAction;
 import net.ggtools.grand.ui.actions.FilterToNodeAction;
 import net.ggtools.grand.ui.actions.ReloadGraphAction;
+import net.ggtools.grand.ui.actions.RemoveLastFilterAction;
 import net.ggtools.grand.ui.graph.GraphControllerProvider;
 
 import org.eclipse.jface.action.MenuManager;
@@ -73,6 +74,7 @@ public class GraphMenu extends MenuManager {
         add(new FilterFromNodeAction(controllerProvider));
         add(new FilterToNodeAction(controllerProvider));
         add(new Separator("clear filters"));
+        add(new RemoveLastFilterAction(controllerProvider));
         add(new ClearFiltersAction(controllerProvider));
     }
 }
@@ -31,15 +31,21 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -72,6 +78,13 @@ import org.xml.sax.SAXException;
 /**
  * A {@link org.eclipse.jface.preference.PreferenceStore} featuring higher level
  * functionalities like save properties or list.
+ * <p>
+ * Colors, fonts, integers and collections are parsed once and cached by key.
+ * A cached value is discarded when the store fires a property change event
+ * for its key or when the key is changed without event (loading, defaults).
+ * Each invalidation increments a generation; a value read while the
+ * generation changed may be stale and is not kept in the cache.
+ * </p>
  *
  * @author Christophe Labouisse
  */
@@ -206,16 +219,46 @@ public class ComplexPreferenceStore extends PreferenceStore {
         return item.replaceAll("%,", ",").replaceAll("%%", "%");
     }
 
+    /**
+     * Field cacheGeneration, incremented each time cached values are
+     * discarded.
+     */
+    private final AtomicLong cacheGeneration = new AtomicLong();
+
+    /**
+     * Field collectionValues.
+     */
+    private final ConcurrentMap<String, List<String>> collectionValues =
+            new ConcurrentHashMap<String, List<String>>();
+
     /**
      * Field colorRegistry.
      */
     private final ColorRegistry colorRegistry = new ColorRegistry();
 
+    /**
+     * Field colorValues, the colors already put in the registry.
+     */
+    private final ConcurrentMap<String, RGB> colorValues =
+            new ConcurrentHashMap<String, RGB>();
+
     /**
      * Field fontRegistry.
      */
     private final FontRegistry fontRegistry = new FontRegistry();
 
+    /**
+     * Field fontValues, the fonts already put in the registry.
+     */
+    private final ConcurrentMap<String, FontData[]> fontValues =
+            new ConcurrentHashMap<String, FontData[]>();
+
+    /**
+     * Field intValues.
+     */
+    private final ConcurrentMap<String, Integer> intValues =
+            new ConcurrentHashMap<String, Integer>();
+
     /**
      * Field prefFile.
      */
@@ -250,14 +293,21 @@ public class ComplexPreferenceStore extends PreferenceStore {
      */
     public final Collection<String> getCollection(final String key,
             final int limit) {
-        final LinkedList<String> list = new LinkedList<String>();
-        final StringTokenizer tokenizer =
-                new StringTokenizer(getString(key), ",");
-        final int lim = (limit == COLLECTION_NO_LIMIT) ? tokenizer.countTokens() : limit;
-        for (int i = 0; (i < lim) && tokenizer.hasMoreTokens(); i++) {
-            list.addLast(unEscapeString(tokenizer.nextToken()));
+        List<String> values = collectionValues.get(key);
+        if (values == null) {
+            final long generation = cacheGeneration.get();
+            final List<String> parsed = new ArrayList<String>();
+            final StringTokenizer tokenizer =
+                    new StringTokenizer(getString(key), ",");
+            while (tokenizer.hasMoreTokens()) {
+                parsed.add(unEscapeString(tokenizer.nextToken()));
+            }
+            values = Collections.unmodifiableList(parsed);
+            cacheValue(collectionValues, key, values, generation);
         }
-        return list;
+        final int lim = (limit == COLLECTION_NO_LIMIT) ? values.size()
+                : Math.min(limit, values.size());
+        return new LinkedList<String>(values.subList(0, lim));
     }
 
     /**
@@ -266,10 +316,14 @@ public class ComplexPreferenceStore extends PreferenceStore {
      * @return Color
      */
     public final Color getColor(final String key) {
-        final RGB newRGBColor = PreferenceConverter.getColor(this, key);
-        final RGB currentRGBColor = colorRegistry.getRGB(key);
-        if (!newRGBColor.equals(currentRGBColor)) {
-            colorRegistry.put(key, newRGBColor);
+        if (!colorValues.containsKey(key)) {
+            final long generation = cacheGeneration.get();
+            final RGB newRGBColor = PreferenceConverter.getColor(this, key);
+            final RGB currentRGBColor = colorRegistry.getRGB(key);
+            if (!newRGBColor.equals(currentRGBColor)) {
+                colorRegistry.put(key, newRGBColor);
+            }
+            cacheValue(colorValues, key, newRGBColor, generation);
         }
         return colorRegistry.get(key);
     }
@@ -280,15 +334,52 @@ public class ComplexPreferenceStore extends PreferenceStore {
      * @return Font
      */
     public final Font getFont(final String key) {
-        final FontData[] newFontDataArray =
-                PreferenceConverter.getFontDataArray(this, key);
-        final FontData[] currentFontDataArray = fontRegistry.getFontData(key);
-        if (!Arrays.equals(currentFontDataArray, newFontDataArray)) {
-            fontRegistry.put(key, newFontDataArray);
+        if (!fontValues.containsKey(key)) {
+            final long generation = cacheGeneration.get();
+            final FontData[] newFontDataArray =
+                    PreferenceConverter.getFontDataArray(this, key);
+            final FontData[] currentFontDataArray = fontRegistry.getFontData(key);
+            if (!Arrays.equals(currentFontDataArray, newFontDataArray)) {
+                fontRegistry.put(key, newFontDataArray);
+            }
+            cacheValue(fontValues, key, newFontDataArray, generation);
         }
         return fontRegistry.get(key);
     }
 
+    /**
+     * Method getInt.
+     * @param key String
+     * @return int
+     * @see org.eclipse.jface.preference.IPreferenceStore#getInt(String)
+     */
+    @Override
+    public final int getInt(final String key) {
+        Integer value = intValues.get(key);
+        if (value == null) {
+            final long generation = cacheGeneration.get();
+            value = super.getInt(key);
+            cacheValue(intValues, key, value, generation);
+        }
+        return value;
+    }
+
+    /**
+     * Discards the cached value of a preference before notifying the
+     * listeners, so they read the new value.
+     *
+     * @param name String
+     * @param oldValue Object
+     * @param newValue Object
+     * @see org.eclipse.jface.preference.IPreferenceStore#firePropertyChangeEvent(String, Object, Object)
+     */
+    @Override
+    public final void firePropertyChangeEvent(final String name, final Object oldValue,
+            final Object newValue) {
+        invalidateCachedValue(name);
+        super.firePropertyChangeEvent(name, oldValue, newValue);
+    }
+
     /**
      * Retrieve a Properties object stored by
      * {@link #setValue(String, Properties)}.
@@ -312,6 +403,7 @@ public class ComplexPreferenceStore extends PreferenceStore {
      */
     @Override
     public void load() throws IOException {
+        clearCachedValues();
         FileInputStream is = null;
         try {
             is = new FileInputStream(prefFile);
@@ -474,6 +566,90 @@ public class ComplexPreferenceStore extends PreferenceStore {
         }
     }
 
+    /**
+     * Method putValue.
+     * @param name String
+     * @param value String
+     * @see org.eclipse.jface.preference.PreferenceStore#putValue(String, String)
+     */
+    @Override
+    public final void putValue(final String name, final String value) {
+        super.putValue(name, value);
+        invalidateCachedValue(name);
+    }
+
+    /**
+     * Method setDefault.
+     * @param name String
+     * @param value boolean
+     * @see org.eclipse.jface.preference.IPreferenceStore#setDefault(String, boolean)
+     */
+    @Override
+    public final void setDefault(final String name, final boolean value) {
+        super.setDefault(name, value);
+        invalidateCachedValue(name);
+    }
+
+    /**
+     * Method setDefault.
+     * @param name String
+     * @param value double
+     * @see org.eclipse.jface.preference.IPreferenceStore#setDefault(String, double)
+     */
+    @Override
+    public final void setDefault(final String name, final double value) {
+        super.setDefault(name, value);
+        invalidateCachedValue(name);
+    }
+
+    /**
+     * Method setDefault.
+     * @param name String
+     * @param value float
+     * @see org.eclipse.jface.preference.IPreferenceStore#setDefault(String, float)
+     */
+    @Override
+    public final void setDefault(final String name, final float value) {
+        super.setDefault(name, value);
+        invalidateCachedValue(name);
+    }
+
+    /**
+     * Method setDefault.
+     * @param name String
+     * @param value int
+     * @see org.eclipse.jface.preference.IPreferenceStore#setDefault(String, int)
+     */
+    @Override
+    public final void setDefault(final String name, final int value) {
+        super.setDefault(name, value);
+        invalidateCachedValue(name);
+    }
+
+    /**
+     * Method setDefault.
+     * @param name String
+     * @param value long
+     * @see org.eclipse.jface.preference.IPreferenceStore#setDefault(String, long)
+     */
+    @Override
+    public final void setDefault(final String name, final long value) {
+        super.setDefault(name, value);
+        invalidateCachedValue(name);
+    }
+
+    /**
+     * Method setDefault.
+     * @param name String
+     * @param defaultObject String
+     * @see org.eclipse.jface.preference.IPreferenceStore#setDefault(String, String)
+     */
+    @Override
+    public final void setDefault(final String name, final String defaultObject) {
+        super.setDefault(name, defaultObject);
+        invalidateCachedValue(name);
+    }
+
     /**
      * Method setPrefFile.
      * @param prefFile File
@@ -527,6 +703,54 @@ public class ComplexPreferenceStore extends PreferenceStore {
         // TODO fire listeners
     }
 
+    /**
+     * Caches a value unless the cached values were discarded since it was
+     * read. The generation is checked after storing the value so a value
+     * stored while an invalidation is running is removed by one or the
+     * other.
+     *
+     * @param <T>
+     *            the type of the cached values.
+     * @param cache
+     *            the cache to store the value in.
+     * @param key String
+     * @param value
+     *            the value read from the store.
+     * @param generation
+     *            the generation read before the value.
+     */
+    private <T> void cacheValue(final ConcurrentMap<String, T> cache, final String key,
+            final T value, final long generation) {
+        cache.put(key, value);
+        if (cacheGeneration.get() != generation) {
+            cache.remove(key, value);
+        }
+    }
+
+    /**
+     * Discards all the cached values.
+     */
+    private void clearCachedValues() {
+        cacheGeneration.incrementAndGet();
+        collectionValues.clear();
+        colorValues.clear();
+        fontValues.clear();
+        intValues.clear();
+    }
+
+    /**
+     * Discards the cached value of a preference.
+     *
+     * @param key String
+     */
+    private void invalidateCachedValue(final String key) {
+        cacheGeneration.incrementAndGet();
+        collectionValues.remove(key);
+        colorValues.remove(key);
+        fontValues.remove(key);
+        intValues.remove(key);
+    }
+
     /**
      * @param propElement Element
      * @param loader PropertyLoader
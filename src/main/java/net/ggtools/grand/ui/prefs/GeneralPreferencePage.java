@@ -27,6 +27,7 @@
  */
 package net.ggtools.grand.ui.prefs;
 
+import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.swt.widgets.Composite;
 
@@ -53,6 +54,13 @@ public class GeneralPreferencePage extends FieldEditorPreferencePage
                 "Max Recent Files", parent);
         maxFiles.setValidRange(1, 9);
         addField(maxFiles);
+        final BooleanFieldEditor autoReload = new BooleanFieldEditor(AUTO_RELOAD_PREFS_KEY,
+                "Reload graphs when build files change", parent);
+        addField(autoReload);
+        final BooleanFieldEditor keepLayout = new BooleanFieldEditor(
+                AUTO_RELOAD_KEEP_LAYOUT_PREFS_KEY,
+                "Keep the layout if targets and links are unchanged", parent);
+        addField(keepLayout);
     }
 
 }
@@ -27,6 +27,8 @@
  */
 package net.ggtools.grand.ui.prefs;
 
+import net.ggtools.grand.ui.graph.GraphStyleDefaults;
+
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.IPreferenceStore;
@@ -43,8 +45,12 @@ public class GraphPreferencePage extends FieldEditorPreferencePage
      */
     public static void setDefaults(final IPreferenceStore prefs) {
         prefs.setDefault(GRAPH_BUS_ENABLED_DEFAULT, false);
-        prefs.setDefault(GRAPH_BUS_IN_THRESHOLD, 5);
-        prefs.setDefault(GRAPH_BUS_OUT_THRESHOLD, 5);
+        prefs.setDefault(GRAPH_BUS_IN_THRESHOLD, GraphStyleDefaults.BUS_IN_THRESHOLD);
+        prefs.setDefault(GRAPH_BUS_OUT_THRESHOLD, GraphStyleDefaults.BUS_OUT_THRESHOLD);
+        prefs.setDefault(GRAPH_LAYOUT_COMPONENTS, false);
+        prefs.setDefault(GRAPH_LOD_DETAIL_ZOOM, 50);
+        prefs.setDefault(GRAPH_LOD_SHAPE_ZOOM, 25);
+        prefs.setDefault(GRAPH_TILE_CACHE_SIZE, 32);
     }
 
     /**
@@ -75,6 +81,25 @@ public class GraphPreferencePage extends FieldEditorPreferencePage
                         "Bus routing out threshold", parent);
         outThreshold.setValidRange(1, 99);
         addField(outThreshold);
+        final BooleanFieldEditor layoutComponents =
+                new BooleanFieldEditor(GRAPH_LAYOUT_COMPONENTS,
+                        "Lay out disconnected parts in parallel", parent);
+        addField(layoutComponents);
+        final SpinnerFieldEditor detailZoom =
+                new SpinnerFieldEditor(GRAPH_LOD_DETAIL_ZOOM,
+                        "Hide labels below zoom (%)", parent);
+        detailZoom.setValidRange(0, 100);
+        addField(detailZoom);
+        final SpinnerFieldEditor shapeZoom =
+                new SpinnerFieldEditor(GRAPH_LOD_SHAPE_ZOOM,
+                        "Draw nodes as boxes below zoom (%)", parent);
+        shapeZoom.setValidRange(0, 100);
+        addField(shapeZoom);
+        final SpinnerFieldEditor tileCacheSize =
+                new SpinnerFieldEditor(GRAPH_TILE_CACHE_SIZE,
+                        "Rendering cache size (MB, 0 to disable)", parent);
+        tileCacheSize.setValidRange(0, 512);
+        addField(tileCacheSize);
     }
 
 }
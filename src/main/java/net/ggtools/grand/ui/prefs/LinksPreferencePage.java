@@ -27,7 +27,8 @@
  */
 package net.ggtools.grand.ui.prefs;
 
-import org.eclipse.draw2d.ColorConstants;
+import net.ggtools.grand.ui.graph.GraphStyleDefaults;
+
 import org.eclipse.jface.preference.ColorFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.IPreferenceStore;
@@ -44,15 +45,26 @@ public class LinksPreferencePage extends FieldEditorPreferencePage
      * @param prefs IPreferenceStore
      */
     public static void setDefaults(final IPreferenceStore prefs) {
-        PreferenceConverter.setDefault(prefs, LINK_DEFAULT_COLOR,
-                ColorConstants.black.getRGB());
-        prefs.setDefault(LINK_DEFAULT_LINEWIDTH, 1);
-        PreferenceConverter.setDefault(prefs, LINK_WEAK_COLOR,
-                ColorConstants.lightGray.getRGB());
-        prefs.setDefault(LINK_WEAK_LINEWIDTH, 1);
-        PreferenceConverter.setDefault(prefs, LINK_SUBANT_COLOR,
-                ColorConstants.lightGray.getRGB());
-        prefs.setDefault(LINK_SUBANT_LINEWIDTH, 2);
+        setDefaults(prefs, GraphStyleDefaults.LINK_DEFAULT, LINK_DEFAULT_COLOR,
+                LINK_DEFAULT_LINEWIDTH);
+        setDefaults(prefs, GraphStyleDefaults.LINK_WEAK, LINK_WEAK_COLOR, LINK_WEAK_LINEWIDTH);
+        setDefaults(prefs, GraphStyleDefaults.LINK_SUBANT, LINK_SUBANT_COLOR,
+                LINK_SUBANT_LINEWIDTH);
+    }
+
+    /**
+     * Sets the defaults of a link type.
+     * @param prefs IPreferenceStore
+     * @param linkType
+     *            one of the <code>GraphStyleDefaults.LINK_*</code> constants.
+     * @param colorKey String
+     * @param lineWidthKey String
+     */
+    private static void setDefaults(final IPreferenceStore prefs, final int linkType,
+            final String colorKey, final String lineWidthKey) {
+        PreferenceConverter.setDefault(prefs, colorKey,
+                NodesPreferencePage.toRGB(GraphStyleDefaults.getLinkColor(linkType)));
+        prefs.setDefault(lineWidthKey, GraphStyleDefaults.getLinkLineWidth(linkType));
     }
 
     /**
@@ -31,7 +31,8 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
-import org.eclipse.draw2d.ColorConstants;
+import net.ggtools.grand.ui.graph.GraphStyleDefaults;
+
 import org.eclipse.jface.preference.ColorFieldEditor;
 import org.eclipse.jface.preference.FieldEditor;
 import org.eclipse.jface.preference.IPreferenceStore;
@@ -39,6 +40,7 @@ import org.eclipse.jface.preference.PreferenceConverter;
 import org.eclipse.jface.preference.PreferencePage;
 import org.eclipse.jface.preference.RadioGroupFieldEditor;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
@@ -66,38 +68,25 @@ public class NodesPreferencePage extends PreferencePage
      * @param prefs IPreferenceStore
      */
     public static void setDefaults(final IPreferenceStore prefs) {
-        PreferenceConverter.setDefault(prefs, NODE_PREFIX + "default.fgcolor",
-                ColorConstants.black.getRGB());
-        PreferenceConverter.setDefault(prefs, NODE_PREFIX + "default.fillcolor",
-                ColorConstants.white.getRGB());
-        //prefs.setDefault("nodes.default.font",4);
-        prefs.setDefault(NODE_PREFIX + "default.shape", "oval");
-        prefs.setDefault(NODE_PREFIX + "default.linewidth", 1);
-
-        PreferenceConverter.setDefault(prefs, NODE_PREFIX + "main.fgcolor",
-                ColorConstants.black.getRGB());
-        PreferenceConverter.setDefault(prefs, NODE_PREFIX + "main.fillcolor",
-                ColorConstants.green.getRGB());
-        //prefs.setDefault(NODE_PREFIX + "main.font",4);
-        prefs.setDefault(NODE_PREFIX + "main.shape", "box");
-        prefs.setDefault(NODE_PREFIX + "main.linewidth", 1);
-
-        PreferenceConverter.setDefault(prefs, NODE_PREFIX + "start.fgcolor",
-                ColorConstants.black.getRGB());
-        PreferenceConverter.setDefault(prefs, NODE_PREFIX + "start.fillcolor",
-                ColorConstants.yellow.getRGB());
-        //prefs.setDefault(NODE_PREFIX + "default.font",4);
-        prefs.setDefault(NODE_PREFIX + "start.shape", "octagon");
-        prefs.setDefault(NODE_PREFIX + "start.linewidth", 2);
-
-        PreferenceConverter.setDefault(prefs, NODE_PREFIX + "missing.fgcolor",
-                ColorConstants.gray.getRGB());
-        PreferenceConverter.setDefault(prefs, NODE_PREFIX + "missing.fillcolor",
-                ColorConstants.lightGray.getRGB());
-        //prefs.setDefault(NODE_PREFIX + "default.font",4);
-        prefs.setDefault(NODE_PREFIX + "missing.shape", "oval");
-        prefs.setDefault(NODE_PREFIX + "missing.linewidth", 1);
+        for (int type = 0; type < GraphStyleDefaults.NODE_TYPE_COUNT; type++) {
+            final String keyPrefix = NODE_PREFIX + GraphStyleDefaults.getNodeTypeName(type);
+            PreferenceConverter.setDefault(prefs, keyPrefix + ".fgcolor",
+                    toRGB(GraphStyleDefaults.getNodeFgColor(type)));
+            PreferenceConverter.setDefault(prefs, keyPrefix + ".fillcolor",
+                    toRGB(GraphStyleDefaults.getNodeFillColor(type)));
+            prefs.setDefault(keyPrefix + ".shape", GraphStyleDefaults.getNodeShape(type));
+            prefs.setDefault(keyPrefix + ".linewidth", GraphStyleDefaults.getNodeLineWidth(type));
+        }
+    }
 
+    /**
+     * Converts a default color to a RGB.
+     * @param color
+     *            a <code>0xRRGGBB</code> color.
+     * @return RGB
+     */
+    static RGB toRGB(final int color) {
+        return new RGB((color >> 16) & 0xff, (color >> 8) & 0xff, color & 0xff);
     }
 
     /**
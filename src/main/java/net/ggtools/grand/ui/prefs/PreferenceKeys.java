@@ -43,6 +43,18 @@ public interface PreferenceKeys {
      */
     String RECENT_FILES_PREFS_KEY = "recent files";
 
+    /**
+     * Field AUTO_RELOAD_PREFS_KEY.
+     * (value is {@value #AUTO_RELOAD_PREFS_KEY})
+     */
+    String AUTO_RELOAD_PREFS_KEY = "auto reload";
+
+    /**
+     * Field AUTO_RELOAD_KEEP_LAYOUT_PREFS_KEY.
+     * (value is {@value #AUTO_RELOAD_KEEP_LAYOUT_PREFS_KEY})
+     */
+    String AUTO_RELOAD_KEEP_LAYOUT_PREFS_KEY = "auto reload keep layout";
+
     /**
      * Field GRAPH_PREFIX.
      * (value is {@value #GRAPH_PREFIX})
@@ -73,6 +85,30 @@ public interface PreferenceKeys {
      */
     String GRAPH_BUS_IN_THRESHOLD = GRAPH_PREFIX + "bus.in.threshold";
 
+    /**
+     * Field GRAPH_LAYOUT_COMPONENTS.
+     * (value is {@value #GRAPH_LAYOUT_COMPONENTS})
+     */
+    String GRAPH_LAYOUT_COMPONENTS = GRAPH_PREFIX + "layout.components";
+
+    /**
+     * Field GRAPH_LOD_DETAIL_ZOOM.
+     * (value is {@value #GRAPH_LOD_DETAIL_ZOOM})
+     */
+    String GRAPH_LOD_DETAIL_ZOOM = GRAPH_PREFIX + "lod.detail.zoom";
+
+    /**
+     * Field GRAPH_LOD_SHAPE_ZOOM.
+     * (value is {@value #GRAPH_LOD_SHAPE_ZOOM})
+     */
+    String GRAPH_LOD_SHAPE_ZOOM = GRAPH_PREFIX + "lod.shape.zoom";
+
+    /**
+     * Field GRAPH_TILE_CACHE_SIZE, in megabytes.
+     * (value is {@value #GRAPH_TILE_CACHE_SIZE})
+     */
+    String GRAPH_TILE_CACHE_SIZE = GRAPH_PREFIX + "tile.cache.size";
+
     /**
      * Field LINK_SUBANT_COLOR.
      * (value is {@value #LINK_SUBANT_COLOR})
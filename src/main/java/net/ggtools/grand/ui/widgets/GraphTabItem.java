@@ -68,6 +68,8 @@ import org.eclipse.swt.custom.SashForm;
 import org.eclipse.swt.custom.ScrolledComposite;
 import org.eclipse.swt.custom.StyleRange;
 import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.GestureEvent;
 import org.eclipse.swt.events.GestureListener;
 import org.eclipse.swt.events.MouseEvent;
@@ -322,7 +324,7 @@ public class GraphTabItem extends CTabItem
         outlineSashForm = new SashForm(sourceSashForm, SWT.HORIZONTAL | SWT.BORDER);
         setControl(sourceSashForm);
 
-        outlineViewer = new TableViewer(outlineSashForm, SWT.READ_ONLY
+        outlineViewer = new TableViewer(outlineSashForm, SWT.READ_ONLY | SWT.MULTI
                 | SWT.H_SCROLL | SWT.V_SCROLL);
         outlineViewer.setContentProvider(controller.getNodeContentProvider());
         outlineViewer.setLabelProvider(controller.getNodeLabelProvider());
@@ -339,9 +341,14 @@ public class GraphTabItem extends CTabItem
                             if (!skipJumpToNode) {
                                 jumpToNode(nodeName);
                             }
-                            skipJumpToNode = false;
-                            getController().selectNodeByName(nodeName, false);
                         }
+                        skipJumpToNode = false;
+                        final List<String> nodeNames =
+                                new ArrayList<String>(structuredSelection.size());
+                        for (final Object element : structuredSelection.toList()) {
+                            nodeNames.add(element.toString());
+                        }
+                        getController().selectNodesByName(nodeNames, false);
                     }
                 }
             }
@@ -414,6 +421,11 @@ public class GraphTabItem extends CTabItem
         sourceSashForm.setWeights(new int[]{5, 1});
 
         controller.addListener(this);
+        addDisposeListener(new DisposeListener() {
+            public void widgetDisposed(final DisposeEvent e) {
+                controller.dispose();
+            }
+        });
     }
 
     /**
@@ -520,8 +532,17 @@ public class GraphTabItem extends CTabItem
         Display.getDefault().asyncExec(new Runnable() {
 
             public void run() {
-                // Do something for the previous graph.
-                canvas.setContents(graph);
+                // The tab may have been closed while the graph was loading.
+                if (isDisposed()) {
+                    return;
+                }
+                // Keep the scroll position when the graph has been updated in
+                // place.
+                if (canvas.getContents() != graph) {
+                    canvas.setContents(graph);
+                } else {
+                    graph.revalidate();
+                }
                 setText(name);
                 setToolTipText(toolTip);
                 graph.setScroller(canvasScroller);
@@ -29,8 +29,12 @@
 package net.ggtools.grand.ui.widgets;
 
 import java.io.File;
-import java.lang.reflect.InvocationTargetException;
 import java.util.Properties;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.ggtools.grand.ui.actions.AboutAction;
 import net.ggtools.grand.ui.actions.PreferenceAction;
@@ -49,8 +53,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.action.MenuManager;
-import org.eclipse.jface.dialogs.ProgressMonitorDialog;
-import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.jface.window.ApplicationWindow;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.CTabFolder;
@@ -80,6 +82,19 @@ public class GraphWindow extends ApplicationWindow
      */
     private static final Log LOG = LogFactory.getLog(GraphWindow.class);
 
+    /**
+     * Field KEEP_ALIVE_SECONDS.
+     * (value is {@value #KEEP_ALIVE_SECONDS})
+     */
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    /**
+     * Field MAX_CONCURRENT_LOADS, the maximum number of graphs loaded at
+     * the same time.
+     */
+    private static final int MAX_CONCURRENT_LOADS =
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
     /**
      * Field controllerAvailableDispatcher.
      */
@@ -100,6 +115,11 @@ public class GraphWindow extends ApplicationWindow
      */
     private Display display;
 
+    /**
+     * Field loaderPool, the threads opening graphs.
+     */
+    private final ThreadPoolExecutor loaderPool;
+
     /**
      * Field manager.
      */
@@ -153,6 +173,19 @@ public class GraphWindow extends ApplicationWindow
             throw new RuntimeException("Cannot instantiate GraphController", e);
         }
 
+        final AtomicInteger loaderCount = new AtomicInteger();
+        loaderPool = new ThreadPoolExecutor(MAX_CONCURRENT_LOADS, MAX_CONCURRENT_LOADS,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    public Thread newThread(final Runnable r) {
+                        final Thread thread =
+                                new Thread(r, "Graph loader " + loaderCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        loaderPool.allowCoreThreadTimeOut(true);
+
         addStatusLine();
         addMenuBar();
         if (SWT.getPlatform().equals("cocoa")) {
@@ -231,8 +264,7 @@ public class GraphWindow extends ApplicationWindow
         graphTabItem.setOutlinePanelVisible(outlinePanelVisible);
         tabFolder.setSelection(graphTabItem);
         controllerAvailableDispatcher.dispatch(controller);
-        controller.setProgressMonitor(new SafeProgressMonitor(getStatusLineManager()
-                .getProgressMonitor(), display));
+        controller.setProgressMonitor(createStatusLineMonitor());
         return graphTabItem;
     }
 
@@ -249,7 +281,11 @@ public class GraphWindow extends ApplicationWindow
     }
 
     /**
-     * Open an ant file in a new window, focusing on a specific target.
+     * Open an ant file in a new window, focusing on a specific target. The
+     * method returns at once: the tab is created right away and shows the
+     * loading progress while the file is parsed and laid out in the
+     * background, several files being loaded concurrently. Closing the tab
+     * cancels the loading.
      * @param buildFile File
      * @param targetName
      *            the target to scroll to or <code>null</code> not to focus on
@@ -261,24 +297,38 @@ public class GraphWindow extends ApplicationWindow
     public final void openGraphInNewDisplayer(final File buildFile,
             final String targetName, final Properties properties) {
         final GraphController controller = new GraphController(this);
-        try {
-            new ProgressMonitorDialog(getShell()).run(true, false,
-                    new IRunnableWithProgress() {
-                            public void run(final IProgressMonitor monitor)
-                                    throws InvocationTargetException,
-                                            InterruptedException {
-                    controller.setProgressMonitor(monitor);
-                    controller.openFile(buildFile, properties);
+        // Creates the tab right away to show the progress in it.
+        final GraphTabItem tab = (GraphTabItem) controller.getDisplayer();
+        final IProgressMonitor statusLineMonitor = controller.getProgressMonitor();
+        controller.setProgressMonitor(new SafeProgressMonitor(new TabProgressMonitor(tab,
+                buildFile.getName()), display));
+
+        loaderPool.execute(new Runnable() {
+            public void run() {
+                if (tab.isDisposed()) {
+                    LOG.info("Loading of " + buildFile + " cancelled");
+                    controller.dispose();
+                    return;
+                }
+                final boolean opened = controller.openFile(buildFile, properties);
+                if (tab.isDisposed()) {
+                    // The loading was abandoned when the tab was closed.
+                    LOG.info("Loading of " + buildFile + " cancelled");
+                    controller.dispose();
+                } else if (opened) {
+                    controller.setProgressMonitor(statusLineMonitor);
                     if (targetName != null) {
                         controller.focusOn(targetName);
                     }
+                } else {
+                    display.asyncExec(new Runnable() {
+                        public void run() {
+                            closeTab(tab);
+                        }
+                    });
                 }
-            });
-        } catch (final InvocationTargetException e) {
-            LOG.error("Caught exception opening file", e);
-        } catch (final InterruptedException e) {
-            LOG.info("Loading cancelled", e);
-        }
+            }
+        });
     }
 
     /**
@@ -322,6 +372,27 @@ public class GraphWindow extends ApplicationWindow
         }
     }
 
+    /**
+     * Closes a tab as if the user did.
+     *
+     * @param tab GraphTabItem
+     */
+    private void closeTab(final GraphTabItem tab) {
+        if (!tab.isDisposed()) {
+            controllerRemovedDispatcher.dispatch(tab.getController());
+            tab.dispose();
+        }
+    }
+
+    /**
+     * Creates a progress monitor reporting to the status line.
+     *
+     * @return IProgressMonitor
+     */
+    private IProgressMonitor createStatusLineMonitor() {
+        return new SafeProgressMonitor(getStatusLineManager().getProgressMonitor(), display);
+    }
+
     /**
      * Method configureShell.
      * @param shell Shell
@@ -0,0 +1,229 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.widgets;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.swt.custom.CTabItem;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
+
+/**
+ * A progress monitor displaying the progress of a graph loading in the
+ * text of its tab. As soon as the tab text is set by someone else, i.e.
+ * when the graph is displayed, the monitor stops updating it.
+ * <p>
+ * Apart from {@link #isCanceled()}, the methods must be called from the
+ * display thread, for instance through a {@link SafeProgressMonitor}. The
+ * monitor is canceled when the tab is closed.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+final class TabProgressMonitor implements IProgressMonitor {
+
+    /**
+     * Field canceled.
+     */
+    private volatile boolean canceled = false;
+
+    /**
+     * Field detached, set when the tab text has been changed by someone
+     * else.
+     */
+    private boolean detached = false;
+
+    /**
+     * Field lastText, the last text set on the tab.
+     */
+    private String lastText;
+
+    /**
+     * Field name.
+     */
+    private final String name;
+
+    /**
+     * Field subTaskName.
+     */
+    private String subTaskName = "";
+
+    /**
+     * Field tab.
+     */
+    private final CTabItem tab;
+
+    /**
+     * Field taskName.
+     */
+    private String taskName = "";
+
+    /**
+     * Field totalWork.
+     */
+    private double totalWork = 0;
+
+    /**
+     * Field worked.
+     */
+    private double worked = 0;
+
+    /**
+     * Creates a monitor for a tab. Must be called from the display thread.
+     *
+     * @param tab
+     *            the tab displaying the progress.
+     * @param name
+     *            the name of the loaded file.
+     */
+    TabProgressMonitor(final CTabItem tab, final String name) {
+        this.tab = tab;
+        this.name = name;
+        tab.addDisposeListener(new DisposeListener() {
+            public void widgetDisposed(final DisposeEvent e) {
+                canceled = true;
+            }
+        });
+        setText(name + " (waiting)", "Waiting to be loaded");
+    }
+
+    /**
+     * Method beginTask.
+     * @param name String
+     * @param totalWork int
+     * @see org.eclipse.core.runtime.IProgressMonitor#beginTask(java.lang.String, int)
+     */
+    public void beginTask(final String name, final int totalWork) {
+        taskName = name;
+        subTaskName = "";
+        this.totalWork = totalWork;
+        worked = 0;
+        update();
+    }
+
+    /**
+     * Method done.
+     * @see org.eclipse.core.runtime.IProgressMonitor#done()
+     */
+    public void done() {
+        worked = totalWork;
+        update();
+    }
+
+    /**
+     * Method internalWorked.
+     * @param work double
+     * @see org.eclipse.core.runtime.IProgressMonitor#internalWorked(double)
+     */
+    public void internalWorked(final double work) {
+        worked += work;
+        update();
+    }
+
+    /**
+     * Method isCanceled.
+     * @return boolean
+     * @see org.eclipse.core.runtime.IProgressMonitor#isCanceled()
+     */
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Method setCanceled.
+     * @param value boolean
+     * @see org.eclipse.core.runtime.IProgressMonitor#setCanceled(boolean)
+     */
+    public void setCanceled(final boolean value) {
+        canceled = value;
+    }
+
+    /**
+     * Method setTaskName.
+     * @param name String
+     * @see org.eclipse.core.runtime.IProgressMonitor#setTaskName(java.lang.String)
+     */
+    public void setTaskName(final String name) {
+        taskName = name;
+        update();
+    }
+
+    /**
+     * Method subTask.
+     * @param name String
+     * @see org.eclipse.core.runtime.IProgressMonitor#subTask(java.lang.String)
+     */
+    public void subTask(final String name) {
+        subTaskName = name;
+        update();
+    }
+
+    /**
+     * Method worked.
+     * @param work int
+     * @see org.eclipse.core.runtime.IProgressMonitor#worked(int)
+     */
+    public void worked(final int work) {
+        internalWorked(work);
+    }
+
+    /**
+     * Sets the tab text and tool tip unless the tab has been closed or its
+     * text changed by someone else.
+     *
+     * @param text String
+     * @param toolTip String
+     */
+    private void setText(final String text, final String toolTip) {
+        if (detached || tab.isDisposed()) {
+            return;
+        }
+        if ((lastText != null) && !lastText.equals(tab.getText())) {
+            detached = true;
+            return;
+        }
+        lastText = text;
+        tab.setText(text);
+        tab.setToolTipText(toolTip);
+    }
+
+    /**
+     * Displays the current progress.
+     */
+    private void update() {
+        String toolTip = taskName;
+        if ((subTaskName != null) && (subTaskName.length() > 0)) {
+            toolTip = taskName + ": " + subTaskName;
+        }
+        if (totalWork > 0) {
+            final int percent = (int) Math.min(100, Math.round(worked * 100 / totalWork));
+            setText(name + " (" + percent + "%)", toolTip);
+        } else {
+            setText(name + " (loading)", toolTip);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+#!/bin/sh
+
+## resolve links - $0 may be a link
+PRG="$0"
+
+# need this for relative symlinks
+while [ -h "$PRG" ]; do
+    ls=`ls -ld "$PRG"`
+    link=`expr "$ls" : '.*-> \(.*\)$'`
+    if expr "$link" : '/.*' > /dev/null; then
+        PRG="$link"
+    else
+        PRG=`dirname "$PRG"`"/$link"
+    fi
+done
+
+BASEDIR=`dirname "$PRG"`
+
+# The export does not use SWT: only the platform independent jars are needed.
+java -Djava.awt.headless=true -cp "$BASEDIR/lib/*" \
+    net.ggtools.grand.ui.export.SvgExporter "$@"
@@ -0,0 +1,210 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.Collections;
+
+import net.ggtools.grand.exceptions.GrandException;
+import net.ggtools.grand.filters.GraphFilter;
+import net.ggtools.grand.filters.NodeRemoverFilter;
+import net.ggtools.grand.graph.Graph;
+import net.ggtools.grand.graph.GraphProducer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the reuse of the stage snapshots by the {@link FilterChainModel}.
+ *
+ * @author Christophe Labouisse
+ */
+public class FilterChainModelTest {
+
+    /**
+     * A filter removing a single node and counting its runs.
+     */
+    private static final class CountingFilter implements GraphFilter {
+        /**
+         * Field delegate.
+         */
+        private final GraphFilter delegate;
+
+        /**
+         * Field runs.
+         */
+        private int runs = 0;
+
+        /**
+         * Constructor for CountingFilter.
+         * @param nodeName the node to remove.
+         */
+        private CountingFilter(final String nodeName) {
+            delegate = new NodeRemoverFilter(Collections.singletonList(nodeName));
+        }
+
+        /**
+         * Method getGraph.
+         * @return Graph
+         * @throws GrandException if the filtering fails.
+         * @see net.ggtools.grand.graph.GraphProducer#getGraph()
+         */
+        public Graph getGraph() throws GrandException {
+            runs++;
+            return delegate.getGraph();
+        }
+
+        /**
+         * Method getName.
+         * @return String
+         * @see net.ggtools.grand.filters.GraphFilter#getName()
+         */
+        public String getName() {
+            return delegate.getName();
+        }
+
+        /**
+         * Method setProducer.
+         * @param producer GraphProducer
+         * @see net.ggtools.grand.graph.GraphConsumer#setProducer(GraphProducer)
+         */
+        public void setProducer(final GraphProducer producer) {
+            delegate.setProducer(producer);
+        }
+    }
+
+    /**
+     * Field chain.
+     */
+    private FilterChainModel chain;
+
+    /**
+     * Creates a chain over a test build file.
+     * @throws GrandException if the build file cannot be loaded.
+     * @throws URISyntaxException should not happen.
+     */
+    @Before
+    public final void setUp() throws GrandException, URISyntaxException {
+        final GraphModel graphModel = new GraphModel();
+        graphModel.openFile(new File(getClass().getResource("/build-complex.xml").toURI()),
+                null);
+        chain = new FilterChainModel(graphModel);
+        chain.filterGraph();
+    }
+
+    /**
+     * Appending filters only runs the new stages.
+     */
+    @Test
+    public final void testAddFilterLast() {
+        final CountingFilter first = new CountingFilter("clean");
+        final CountingFilter second = new CountingFilter("jar");
+        chain.addFilterLast(first);
+        chain.addFilterLast(second);
+        assertEquals(1, first.runs);
+        assertEquals(1, second.runs);
+        assertNull(chain.getGraph().getNode("clean"));
+        assertNull(chain.getGraph().getNode("jar"));
+        assertNotNull(chain.getGraph().getNode("compile"));
+    }
+
+    /**
+     * Removing the last filter restores the previous stage from its
+     * snapshot without running the remaining filters again.
+     */
+    @Test
+    public final void testRemoveLastFilter() {
+        final CountingFilter first = new CountingFilter("clean");
+        final CountingFilter second = new CountingFilter("jar");
+        chain.addFilterLast(first);
+        chain.addFilterLast(second);
+
+        chain.removeLastFilter();
+        assertEquals(1, chain.getFilterList().size());
+        assertEquals(1, first.runs);
+        assertEquals(1, second.runs);
+        assertNull(chain.getGraph().getNode("clean"));
+        assertNotNull(chain.getGraph().getNode("jar"));
+
+        final CountingFilter third = new CountingFilter("init");
+        chain.addFilterLast(third);
+        assertEquals(1, first.runs);
+        assertEquals(1, third.runs);
+        assertNull(chain.getGraph().getNode("init"));
+
+        chain.removeLastFilter();
+        chain.removeLastFilter();
+        assertEquals(0, chain.getFilterList().size());
+        assertEquals(1, first.runs);
+        assertNotNull(chain.getGraph().getNode("clean"));
+    }
+
+    /**
+     * Without snapshots the chain is replayed from the producer's graph.
+     */
+    @Test
+    public final void testNoSnapshot() {
+        chain.setMaxSnapshots(0);
+        final CountingFilter first = new CountingFilter("clean");
+        final CountingFilter second = new CountingFilter("jar");
+        chain.addFilterLast(first);
+        chain.addFilterLast(second);
+        assertEquals(2, first.runs);
+
+        chain.removeLastFilter();
+        assertEquals(3, first.runs);
+        assertNull(chain.getGraph().getNode("clean"));
+        assertNotNull(chain.getGraph().getNode("jar"));
+    }
+
+    /**
+     * Adding a filter at the head of the chain or filtering a new graph
+     * runs all the stages again.
+     */
+    @Test
+    public final void testReplay() {
+        final CountingFilter first = new CountingFilter("clean");
+        final CountingFilter second = new CountingFilter("jar");
+        chain.addFilterLast(first);
+        chain.addFilterFirst(second);
+        assertEquals(2, first.runs);
+        assertEquals(1, second.runs);
+
+        chain.filterGraph();
+        assertEquals(3, first.runs);
+        assertEquals(2, second.runs);
+        assertNull(chain.getGraph().getNode("clean"));
+        assertNull(chain.getGraph().getNode("jar"));
+    }
+}
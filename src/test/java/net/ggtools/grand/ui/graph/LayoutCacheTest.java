@@ -0,0 +1,250 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sf.jzgraph.IDotGraph;
+import sf.jzgraph.IEdge;
+import sf.jzgraph.IGraph;
+import sf.jzgraph.IVertex;
+import sf.jzgraph.dot.impl.DotGraph;
+
+/**
+ * Tests the persistence and the eviction of the {@link LayoutCache}.
+ *
+ * @author Christophe Labouisse
+ */
+public class LayoutCacheTest implements DotGraphAttributes {
+
+    /**
+     * Field cacheDir.
+     */
+    private File cacheDir;
+
+    /**
+     * Creates an empty cache directory.
+     * @throws IOException if the directory cannot be created.
+     */
+    @Before
+    public final void setUp() throws IOException {
+        cacheDir = File.createTempFile("layouts", "");
+        assertTrue(cacheDir.delete());
+        assertTrue(cacheDir.mkdir());
+    }
+
+    /**
+     * Removes the cache directory.
+     */
+    @After
+    public final void tearDown() {
+        final File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        cacheDir.delete();
+    }
+
+    /**
+     * A layout read back from the cache must match the one computed by
+     * Dot, including after a restart of the application.
+     */
+    @Test
+    public final void testRoundTrip() {
+        final LayoutCache cache = new LayoutCache(cacheDir);
+        final IDotGraph computed = createGraph("init", "compile", "jar");
+        cache.layout(computed);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getEntryCount());
+
+        final IDotGraph restored = createGraph("init", "compile", "jar");
+        cache.layout(restored);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertSameLayout(computed, restored);
+
+        final LayoutCache restarted = new LayoutCache(cacheDir);
+        assertEquals(1, restarted.getEntryCount());
+        assertEquals(cache.getTotalSize(), restarted.getTotalSize());
+        final IDotGraph reloaded = createGraph("init", "compile", "jar");
+        restarted.layout(reloaded);
+        assertEquals(1, restarted.getHitCount());
+        assertSameLayout(computed, reloaded);
+    }
+
+    /**
+     * A graph whose structure changed must not get a cached layout.
+     */
+    @Test
+    public final void testChangedGraph() {
+        final LayoutCache cache = new LayoutCache(cacheDir);
+        cache.layout(createGraph("init", "compile"));
+        final IDotGraph changed = createGraph("init", "compile");
+        ((IVertex) changed.allVertices().iterator().next()).setAttr(MINWIDTH_ATTR, 120);
+        cache.layout(changed);
+        cache.layout(createGraph("init", "compile", "jar"));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(3, cache.getEntryCount());
+    }
+
+    /**
+     * Lowering the maximum size evicts the least recently used layouts.
+     */
+    @Test
+    public final void testEviction() {
+        final LayoutCache cache = new LayoutCache(cacheDir);
+        cache.layout(createGraph("a1", "a2"));
+        cache.layout(createGraph("b1", "b2"));
+        cache.layout(createGraph("c1", "c2"));
+        // Makes b the least recently used layout.
+        cache.layout(createGraph("a1", "a2"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getEntryCount());
+
+        cache.setMaxSize(cache.getTotalSize() - 1);
+        assertEquals(2, cache.getEntryCount());
+        assertTrue(cache.getTotalSize() <= cache.getMaxSize());
+        assertEquals(2, cacheDir.listFiles().length);
+
+        cache.layout(createGraph("c1", "c2"));
+        assertEquals(2, cache.getHitCount());
+        cache.layout(createGraph("b1", "b2"));
+        assertEquals(4, cache.getMissCount());
+
+        cache.clear();
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getTotalSize());
+        assertEquals(0, cacheDir.listFiles().length);
+    }
+
+    /**
+     * Checks that two graphs have the same layout.
+     * @param expected IDotGraph
+     * @param actual IDotGraph
+     */
+    private static void assertSameLayout(final IDotGraph expected, final IDotGraph actual) {
+        final List<IVertex> expectedVertices = getVertices(expected);
+        final List<IVertex> actualVertices = getVertices(actual);
+        assertEquals(expectedVertices.size(), actualVertices.size());
+        for (int i = 0; i < expectedVertices.size(); i++) {
+            final IVertex expectedVertex = expectedVertices.get(i);
+            final IVertex actualVertex = actualVertices.get(i);
+            assertEquals(expectedVertex.getAttrString(LABEL_ATTR),
+                    actualVertex.getAttrString(LABEL_ATTR));
+            final Rectangle2D expectedBounds = (Rectangle2D) expectedVertex.getAttr(_BOUNDS_ATTR);
+            final Rectangle2D actualBounds = (Rectangle2D) actualVertex.getAttr(_BOUNDS_ATTR);
+            assertEquals(expectedBounds.getX(), actualBounds.getX(), 0.01);
+            assertEquals(expectedBounds.getY(), actualBounds.getY(), 0.01);
+            assertEquals(expectedBounds.getWidth(), actualBounds.getWidth(), 0.01);
+            assertEquals(expectedBounds.getHeight(), actualBounds.getHeight(), 0.01);
+            assertTrue(actualVertex.getAttr(_SHAPE_ATTR) != null);
+        }
+
+        final List<IEdge> expectedEdges = getEdges(expected);
+        final List<IEdge> actualEdges = getEdges(actual);
+        assertEquals(expectedEdges.size(), actualEdges.size());
+        for (int i = 0; i < expectedEdges.size(); i++) {
+            final LayoutRoute expectedRoute =
+                    LayoutRoute.valueOf(expectedEdges.get(i).getAttr(POSITION_ATTR));
+            final LayoutRoute actualRoute =
+                    LayoutRoute.valueOf(actualEdges.get(i).getAttr(POSITION_ATTR));
+            assertEquals(expectedRoute.getPath().getBounds2D(),
+                    actualRoute.getPath().getBounds2D());
+            final Point2D expectedEnd = expectedRoute.getEndPt();
+            final Point2D actualEnd = actualRoute.getEndPt();
+            assertFalse((expectedEnd == null) != (actualEnd == null));
+            if (expectedEnd != null) {
+                assertEquals(expectedEnd.getX(), actualEnd.getX(), 0.01);
+                assertEquals(expectedEnd.getY(), actualEnd.getY(), 0.01);
+            }
+        }
+    }
+
+    /**
+     * Creates a graph chaining some vertices.
+     * @param names the names of the vertices.
+     * @return IDotGraph
+     */
+    private static IDotGraph createGraph(final String... names) {
+        final IDotGraph graph = new DotGraph(IGraph.GRAPH, "test");
+        IVertex previous = null;
+        for (final String name : names) {
+            final IVertex vertex = graph.newVertex(name, null);
+            vertex.setAttr(SHAPE_ATTR, "box");
+            vertex.setAttr(MINWIDTH_ATTR, 60);
+            vertex.setAttr(MINHEIGHT_ATTR, 30);
+            if (previous != null) {
+                graph.newEdge(previous, vertex, previous.getName() + "-" + name, null);
+            }
+            previous = vertex;
+        }
+        return graph;
+    }
+
+    /**
+     * @param graph IDotGraph
+     * @return the edges of the graph.
+     */
+    private static List<IEdge> getEdges(final IDotGraph graph) {
+        final List<IEdge> edges = new ArrayList<IEdge>();
+        for (final Object edge : graph.allEdges()) {
+            edges.add((IEdge) edge);
+        }
+        return edges;
+    }
+
+    /**
+     * @param graph IDotGraph
+     * @return the vertices of the graph.
+     */
+    private static List<IVertex> getVertices(final IDotGraph graph) {
+        final List<IVertex> vertices = new ArrayList<IVertex>();
+        for (final Object vertex : graph.allVertices()) {
+            vertices.add((IVertex) vertex);
+        }
+        return vertices;
+    }
+}
@@ -0,0 +1,167 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph.draw2d;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the queries of the {@link FigureGrid}.
+ *
+ * @author Christophe Labouisse
+ */
+public class FigureGridTest {
+
+    /**
+     * Field CELL_SIZE.
+     * (value is {@value #CELL_SIZE})
+     */
+    private static final int CELL_SIZE = 64;
+
+    /**
+     * Field grid.
+     */
+    private FigureGrid grid;
+
+    /**
+     * Field node, a figure inside a single cell.
+     */
+    private IFigure node;
+
+    /**
+     * Field wideNode, a figure covering several cells.
+     */
+    private IFigure wideNode;
+
+    /**
+     * Creates a grid with a couple of figures.
+     */
+    @Before
+    public final void setUp() {
+        grid = new FigureGrid(CELL_SIZE);
+        node = new Figure();
+        grid.put(node, new Rectangle(10, 10, 40, 20));
+        wideNode = new Figure();
+        grid.put(wideNode, new Rectangle(100, 100, 200, 150));
+    }
+
+    /**
+     * Only the figures containing a point are returned.
+     */
+    @Test
+    public final void testQueryPoint() {
+        assertEquals(Collections.singletonList(node), grid.query(20, 20));
+        assertEquals(Collections.singletonList(wideNode), grid.query(110, 110));
+        assertEquals(Collections.singletonList(wideNode), grid.query(290, 240));
+        // In the same cell as node but outside of its bounds.
+        assertTrue(grid.query(55, 55).isEmpty());
+        assertTrue(grid.query(500, 500).isEmpty());
+    }
+
+    /**
+     * The figures intersecting an area are returned only once.
+     */
+    @Test
+    public final void testQueryArea() {
+        assertEquals(Collections.singletonList(node), grid.query(new Rectangle(0, 0, 30, 30)));
+        assertEquals(Collections.singletonList(wideNode),
+                grid.query(new Rectangle(150, 150, 400, 400)));
+        assertEquals(new HashSet<IFigure>(Arrays.asList(node, wideNode)),
+                new HashSet<IFigure>(grid.query(new Rectangle(0, 0, 1000, 1000))));
+        assertEquals(2, grid.query(new Rectangle(0, 0, 1000, 1000)).size());
+        assertTrue(grid.query(new Rectangle(60, 60, 20, 20)).isEmpty());
+    }
+
+    /**
+     * A figure indexed with several rectangles is only found in these
+     * rectangles.
+     */
+    @Test
+    public final void testSeveralRectangles() {
+        final IFigure connection = new Figure();
+        grid.put(connection,
+                Arrays.asList(new Rectangle(0, 400, 10, 100), new Rectangle(0, 490, 300, 10)));
+        assertEquals(Collections.singletonList(connection), grid.query(5, 420));
+        assertEquals(Collections.singletonList(connection), grid.query(250, 495));
+        // Inside the bounding box of the connection but not on it.
+        assertTrue(grid.query(250, 420).isEmpty());
+        assertEquals(Collections.singletonList(connection),
+                grid.query(new Rectangle(-10, 380, 400, 200)));
+        assertEquals(2, grid.getBounds(connection).size());
+    }
+
+    /**
+     * Figures having negative coordinates are indexed in their own cells.
+     */
+    @Test
+    public final void testNegativeCoordinates() {
+        final IFigure negative = new Figure();
+        grid.put(negative, new Rectangle(-100, -100, 30, 30));
+        assertEquals(Collections.singletonList(negative), grid.query(-90, -90));
+        assertTrue(grid.query(-10, -10).isEmpty());
+        assertEquals(Collections.singletonList(negative),
+                grid.query(new Rectangle(-200, -200, 150, 150)));
+    }
+
+    /**
+     * Putting a figure again replaces its bounds, removing it drops it from
+     * all the cells.
+     */
+    @Test
+    public final void testUpdateAndRemove() {
+        grid.put(node, new Rectangle(600, 600, 40, 20));
+        assertEquals(2, grid.size());
+        assertTrue(grid.query(20, 20).isEmpty());
+        assertEquals(Collections.singletonList(node), grid.query(610, 610));
+        final List<Rectangle> bounds = grid.getBounds(node);
+        assertEquals(Collections.singletonList(new Rectangle(600, 600, 40, 20)), bounds);
+
+        grid.remove(node);
+        assertEquals(1, grid.size());
+        assertNull(grid.getBounds(node));
+        assertTrue(grid.query(610, 610).isEmpty());
+        assertTrue(grid.query(new Rectangle(0, 0, 1000, 1000)).contains(wideNode));
+
+        grid.clear();
+        assertEquals(0, grid.size());
+        assertTrue(grid.query(new Rectangle(0, 0, 1000, 1000)).isEmpty());
+    }
+}
@@ -0,0 +1,192 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.graphics.RGB;
+import org.junit.Test;
+
+/**
+ * Decodes the images written by {@link PngStreamWriter} with ImageIO.
+ *
+ * @author Christophe Labouisse
+ */
+public class PngStreamWriterTest {
+
+    /**
+     * Sets a pixel of the current stripe.
+     */
+    private interface PixelSource {
+        /**
+         * Sets the pixel of the stripe matching a pixel of the image.
+         * @param x int
+         * @param y int the row in the image.
+         */
+        void setPixel(int x, int y);
+    }
+
+    /**
+     * Field HEIGHT.
+     * (value is {@value #HEIGHT})
+     */
+    private static final int HEIGHT = 37;
+
+    /**
+     * Field STRIPE_HEIGHT.
+     * (value is {@value #STRIPE_HEIGHT})
+     */
+    private static final int STRIPE_HEIGHT = 10;
+
+    /**
+     * Field WIDTH.
+     * (value is {@value #WIDTH})
+     */
+    private static final int WIDTH = 23;
+
+    /**
+     * An image written in stripes from a direct palette decodes to the
+     * same pixels.
+     * @throws IOException if the image cannot be written or read.
+     */
+    @Test
+    public final void testDirectPalette() throws IOException {
+        final PaletteData palette = new PaletteData(0xff0000, 0xff00, 0xff);
+        final ImageData stripe = new ImageData(WIDTH, STRIPE_HEIGHT, 24, palette);
+        final BufferedImage image = writeAndRead(stripe, new PixelSource() {
+            public void setPixel(final int x, final int y) {
+                stripe.setPixel(x, y % STRIPE_HEIGHT, palette.getPixel(getColor(x, y)));
+            }
+        });
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(toInt(getColor(x, y)), image.getRGB(x, y) & 0xffffff);
+            }
+        }
+    }
+
+    /**
+     * An image written from an indexed palette decodes to the palette's
+     * colors.
+     * @throws IOException if the image cannot be written or read.
+     */
+    @Test
+    public final void testIndexedPalette() throws IOException {
+        final RGB[] colors = {new RGB(255, 255, 255), new RGB(0, 0, 0), new RGB(12, 200, 99)};
+        final ImageData stripe = new ImageData(WIDTH, STRIPE_HEIGHT, 8, new PaletteData(colors));
+        final BufferedImage image = writeAndRead(stripe, new PixelSource() {
+            public void setPixel(final int x, final int y) {
+                stripe.setPixel(x, y % STRIPE_HEIGHT, (x + y) % colors.length);
+            }
+        });
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(toInt(colors[(x + y) % colors.length]), image.getRGB(x, y) & 0xffffff);
+            }
+        }
+    }
+
+    /**
+     * Closing the writer before all the rows are written fails.
+     * @throws IOException if the header cannot be written.
+     */
+    @Test
+    public final void testIncompleteImage() throws IOException {
+        final ImageData stripe =
+                new ImageData(WIDTH, STRIPE_HEIGHT, 24, new PaletteData(0xff0000, 0xff00, 0xff));
+        final PngStreamWriter writer = new PngStreamWriter(new ByteArrayOutputStream(), WIDTH,
+                HEIGHT);
+        writer.writeRows(stripe, STRIPE_HEIGHT);
+        try {
+            writer.close();
+            fail("An incomplete image should not be closed silently");
+        } catch (final IOException e) {
+            // Expected.
+        }
+    }
+
+    /**
+     * @param x int
+     * @param y int
+     * @return the color of a pixel of the test image.
+     */
+    private static RGB getColor(final int x, final int y) {
+        return new RGB((x * 11) & 0xff, (y * 7) & 0xff, ((x + y) * 5) & 0xff);
+    }
+
+    /**
+     * @param rgb RGB
+     * @return the color as an 0xRRGGBB integer.
+     */
+    private static int toInt(final RGB rgb) {
+        return (rgb.red << 16) | (rgb.green << 8) | rgb.blue;
+    }
+
+    /**
+     * Writes an image stripe by stripe and decodes it.
+     *
+     * @param stripe
+     *            the stripe to fill.
+     * @param source
+     *            sets the pixels of the stripe.
+     * @return the decoded image.
+     * @throws IOException
+     *             if the image cannot be written or read.
+     */
+    private static BufferedImage writeAndRead(final ImageData stripe, final PixelSource source)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PngStreamWriter writer = new PngStreamWriter(out, WIDTH, HEIGHT);
+        for (int top = 0; top < HEIGHT; top += STRIPE_HEIGHT) {
+            final int rows = Math.min(STRIPE_HEIGHT, HEIGHT - top);
+            for (int y = top; y < top + rows; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    source.setPixel(x, y);
+                }
+            }
+            writer.writeRows(stripe, rows);
+        }
+        writer.close();
+
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(WIDTH, image.getWidth());
+        assertEquals(HEIGHT, image.getHeight());
+        return image;
+    }
+}
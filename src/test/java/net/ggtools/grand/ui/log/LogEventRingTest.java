@@ -0,0 +1,153 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2004, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.log;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the wrap around of the {@link LogEventRing} and its snapshots.
+ *
+ * @author Christophe Labouisse
+ */
+public class LogEventRingTest {
+
+    /**
+     * The capacity is rounded to a power of two within the bounds.
+     */
+    @Test
+    public final void testCapacity() {
+        assertEquals(LogEventRing.MIN_CAPACITY, new LogEventRing(1).getCapacity());
+        assertEquals(LogEventRing.MIN_CAPACITY,
+                new LogEventRing(LogEventRing.MIN_CAPACITY).getCapacity());
+        assertEquals(64, new LogEventRing(33).getCapacity());
+        assertEquals(64, new LogEventRing(64).getCapacity());
+        assertEquals(LogEventRing.MAX_CAPACITY, LogEventRing.roundCapacity(Integer.MAX_VALUE));
+    }
+
+    /**
+     * A ring which is not full keeps all its events in order.
+     */
+    @Test
+    public final void testPartialRing() {
+        final LogEventRing ring = new LogEventRing(16);
+        final List<LogEvent> events = addEvents(ring, 5);
+        assertEquals(5, ring.getEventCount());
+        assertEquals(0, ring.getOverflowCount());
+        assertEquals(events, ring.snapshot());
+    }
+
+    /**
+     * Once the ring is full the oldest events are overwritten.
+     */
+    @Test
+    public final void testWrapAround() {
+        final LogEventRing ring = new LogEventRing(16);
+        final List<LogEvent> events = addEvents(ring, 40);
+        assertEquals(40, ring.getEventCount());
+        assertEquals(24, ring.getOverflowCount());
+        final List<LogEvent> snapshot = ring.snapshot();
+        assertEquals(16, snapshot.size());
+        assertEquals(events.subList(24, 40), snapshot);
+    }
+
+    /**
+     * A snapshot keeps its size, the events overwritten after its creation
+     * being returned as <code>null</code> and skipped by toArray.
+     */
+    @Test
+    public final void testSnapshotOverwritten() {
+        final LogEventRing ring = new LogEventRing(16);
+        final List<LogEvent> events = addEvents(ring, 16);
+        final List<LogEvent> snapshot = ring.snapshot();
+        final List<LogEvent> newEvents = addEvents(ring, 4);
+
+        assertEquals(16, snapshot.size());
+        for (int i = 0; i < 4; i++) {
+            assertNull(snapshot.get(i));
+        }
+        for (int i = 4; i < 16; i++) {
+            assertSame(events.get(i), snapshot.get(i));
+        }
+        assertArrayEquals(events.subList(4, 16).toArray(), snapshot.toArray());
+
+        final List<LogEvent> expected = new ArrayList<LogEvent>(events.subList(4, 16));
+        expected.addAll(newEvents);
+        assertEquals(expected, ring.snapshot());
+    }
+
+    /**
+     * Checks the number of events evicted between two snapshots.
+     */
+    @Test
+    public final void testEvictedCount() {
+        final LogEventRing ring = new LogEventRing(16);
+        addEvents(ring, 10);
+        final LogEventRing.Snapshot first = (LogEventRing.Snapshot) ring.snapshot();
+        addEvents(ring, 4);
+        final LogEventRing.Snapshot second = (LogEventRing.Snapshot) ring.snapshot();
+        assertEquals(0, second.getEvictedCount(first));
+
+        addEvents(ring, 5);
+        final LogEventRing.Snapshot third = (LogEventRing.Snapshot) ring.snapshot();
+        assertEquals(3, third.getEvictedCount(second));
+        assertEquals(3, third.getEvictedCount(first));
+
+        addEvents(ring, 40);
+        final LogEventRing.Snapshot fourth = (LogEventRing.Snapshot) ring.snapshot();
+        assertEquals(16, fourth.getEvictedCount(third));
+
+        assertEquals(-1, first.getEvictedCount(second));
+        final LogEventRing other = new LogEventRing(16);
+        assertEquals(-1, ((LogEventRing.Snapshot) other.snapshot()).getEvictedCount(first));
+    }
+
+    /**
+     * Adds some events to a ring.
+     * @param ring LogEventRing
+     * @param count int
+     * @return the events added.
+     */
+    private static List<LogEvent> addEvents(final LogEventRing ring, final int count) {
+        final List<LogEvent> events = new ArrayList<LogEvent>(count);
+        for (int i = 0; i < count; i++) {
+            final LogEvent event = new LogEvent(LogEvent.INFO, "test", "event " + i, null);
+            ring.add(event);
+            events.add(event);
+        }
+        return events;
+    }
+}